@@ -0,0 +1,90 @@
+package com.tiendario.config;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * sale_items, purchase_items, customers, products, catalog_products and
+ * search_index_outbox used IDENTITY ids before moving to pooled sequences.
+ * Schema update creates the sequences starting at 1, which would collide
+ * with existing rows, so each sequence is moved past the highest id once,
+ * right after the schema update and before the application takes traffic
+ * or runs its startup data loaders.
+ * <p>
+ * Alignment only ever moves a sequence forward: a running instance may hold
+ * a pooled block above the highest stored id, and restarting the sequence
+ * below it would hand that block out again. Each alignment is recorded in
+ * sequence_alignments, so later boots leave the sequences alone.
+ */
+@Component
+public class ItemSequenceInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSequenceInitializer.class);
+
+    // Must match allocationSize on the entities' @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PostConstruct
+    public void alignSequences() {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        align(transactionTemplate, dialect, "sale_items", "sale_items_seq");
+        align(transactionTemplate, dialect, "purchase_items", "purchase_items_seq");
+        align(transactionTemplate, dialect, "customers", "customers_seq");
+        align(transactionTemplate, dialect, "products", "products_seq");
+        align(transactionTemplate, dialect, "catalog_products", "catalog_products_seq");
+        align(transactionTemplate, dialect, "search_index_outbox", "search_index_outbox_seq");
+    }
+
+    private void align(TransactionTemplate transactionTemplate, Dialect dialect, String table, String sequence) {
+        Integer done = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sequence_alignments WHERE sequence_name = ?", Integer.class, sequence);
+        if (done != null && done > 0) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+                // Claimed first: an instance booting at the same time blocks here, then fails on the key
+                jdbcTemplate.update("INSERT INTO sequence_alignments (sequence_name, max_id_at_alignment, aligned_at)"
+                        + " VALUES (?, ?, ?)", sequence, maxId, Timestamp.valueOf(LocalDateTime.now()));
+                if (maxId == null) {
+                    return;
+                }
+                // Pooled ids: a value of n hands out n - 49 .. n, and every block already taken is at or below n
+                Long current = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(sequence), Long.class);
+                if (current != null && current >= maxId) {
+                    return;
+                }
+                long restartWith = maxId + ALLOCATION_SIZE + 1;
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restartWith);
+                log.info("Sequence {} moved from {} to {} (max {} id is {})", sequence, current, restartWith, table,
+                        maxId);
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Sequence {} was aligned by another instance", sequence);
+        }
+    }
+}
@@ -9,8 +9,10 @@ import javax.persistence.*;
         @UniqueConstraint(columnNames = { "sku" })
 })
 public class CatalogProduct {
+    // Pooled sequence, like Product, so imported catalog entries are batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalog_products_seq")
+    @SequenceGenerator(name = "catalog_products_seq", sequenceName = "catalog_products_seq", allocationSize = 50)
     private Long id;
 
     private String name;
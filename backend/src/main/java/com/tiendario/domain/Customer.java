@@ -4,18 +4,29 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.Data;
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Data
 @Entity
-@Table(name = "customers")
+@Table(name = "customers", indexes = {
+        @Index(name = "idx_customers_normalized_email", columnList = "normalized_email")
+})
 @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class Customer {
+    // Pooled sequence so the customer rows of a multi-seller checkout are
+    // inserted in one JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customers_seq")
+    @SequenceGenerator(name = "customers_seq", sequenceName = "customers_seq", allocationSize = 50)
     private Long id;
 
     private String name;
     private String email;
+
+    // Trimmed, lower-cased email; the same shopper across every store
+    @Column(name = "normalized_email")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String normalizedEmail;
     private String phone;
     private String address;
 
@@ -29,5 +40,15 @@ public class Customer {
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        normalizedEmail = normalizeEmail(email);
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        normalizedEmail = normalizeEmail(email);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,42 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Sales totals for one company, day and status, maintained incrementally by
+ * SalesRollupService as sales are created or change status. Analytics read
+ * these rows instead of scanning sales. companyId is a plain column (no
+ * foreign key) so a missing row can be created in its own transaction.
+ */
+@Data
+@Entity
+@Table(name = "daily_sales_rollup", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_sales_rollup", columnNames = { "company_id", "sales_day", "status" })
+})
+public class DailySalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "sales_day", nullable = false)
+    private LocalDate day;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SaleStatus status;
+
+    @Column(nullable = false)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long units;
+}
@@ -0,0 +1,45 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Pending search-index update for a product, written in the same transaction
+ * as the product change and drained by ProductIndexOutboxWorker. The worker
+ * indexes the product's current state, or removes it from the index if the
+ * product no longer exists, so the entry only needs the product id.
+ */
+@Data
+@Entity
+@Table(name = "search_index_outbox", indexes = {
+        @Index(name = "idx_search_index_outbox_due", columnList = "next_attempt_at, id")
+})
+public class IndexOutboxEntry {
+    // Pooled sequence so a bulk import queues its products in JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "search_index_outbox_seq")
+    @SequenceGenerator(name = "search_index_outbox_seq", sequenceName = "search_index_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.tiendario.domain;
+
+public enum LoyaltyEntryType {
+    EARN,
+    REDEEM
+}
@@ -0,0 +1,48 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One immutable change to a customer's loyalty points: positive when earned
+ * on an order, negative when redeemed. Orders only insert entries, so
+ * concurrent orders from the same customer never update a shared counter.
+ * LoyaltyService periodically folds entries into Customer.loyaltyPoints and
+ * flags them compacted; the balance is always loyaltyPoints plus the
+ * entries not compacted yet.
+ */
+@Data
+@Entity
+@Table(name = "loyalty_ledger", indexes = {
+        @Index(name = "idx_loyalty_ledger_customer", columnList = "customer_id, compacted")
+})
+public class LoyaltyLedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LoyaltyEntryType type;
+
+    @Column(nullable = false)
+    private int points;
+
+    private Long saleId;
+
+    private String reason;
+
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private boolean compacted;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
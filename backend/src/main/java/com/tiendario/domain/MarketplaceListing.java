@@ -0,0 +1,34 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Precomputed "best offer per product name" row for the public marketplace.
+ * One row per normalized name, pointing at the cheapest product of the group.
+ * Maintained by MarketplaceListingService.
+ */
+@Data
+@Entity
+@Table(name = "marketplace_listings", indexes = {
+        @Index(name = "idx_marketplace_listing_product", columnList = "product_id")
+})
+public class MarketplaceListing {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String normalizedName;
+
+    // No FK: a product delete must not be blocked by its listing, the group is
+    // refreshed right after the delete commits
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private Product product;
+
+    private Integer sellerCount;
+
+    private LocalDateTime updatedAt;
+}
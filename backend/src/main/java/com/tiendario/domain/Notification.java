@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        @Index(name = "idx_notifications_company_read", columnList = "company_id, read_status"),
+        @Index(name = "idx_notifications_read_created", columnList = "read_status, created_at")
+})
+@EntityListeners(com.tiendario.service.NotificationListener.class)
 public class Notification {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,40 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An order side effect (seller notification, loyalty accrual, search
+ * reindex) that kept failing after its retries. Kept so it can be replayed
+ * once the cause is fixed; handlers reload the sale, so the id is enough.
+ */
+@Data
+@Entity
+@Table(name = "order_event_dead_letters")
+public class OrderEventDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String handler;
+
+    @Column(nullable = false)
+    private Long saleId;
+
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+
+    // Set while a replay is running; the letter is only deleted once the handler succeeds
+    private LocalDateTime replayingSince;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
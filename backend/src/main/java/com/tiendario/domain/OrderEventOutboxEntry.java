@@ -0,0 +1,45 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * An order side effect that has not completed yet, written in the same
+ * transaction as the order and deleted in the same transaction as the
+ * handler run that completes it (or the dead letter that replaces it), so a
+ * committed order keeps its side effects through a crash or redeploy.
+ * claimedAt is when a process last took the entry; entries claimed long ago
+ * were lost with their process and are dispatched again.
+ */
+@Data
+@Entity
+@Table(name = "order_event_outbox", indexes = {
+        @Index(name = "idx_order_event_outbox_claimed", columnList = "claimed_at, id")
+})
+public class OrderEventOutboxEntry {
+    // Pooled sequence so the entries of a multi-seller checkout are inserted in JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_event_outbox_seq")
+    @SequenceGenerator(name = "order_event_outbox_seq", sequenceName = "order_event_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String handler;
+
+    @Column(nullable = false)
+    private Long saleId;
+
+    private LocalDateTime createdAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (claimedAt == null) {
+            claimedAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tiendario.domain;
+
+/**
+ * Published from the transaction that places an order. Listeners run after
+ * it commits and reload the sale, so the event only needs its id.
+ */
+public class OrderPlacedEvent {
+    private final Long saleId;
+    private final Long companyId;
+
+    public OrderPlacedEvent(Long saleId, Long companyId) {
+        this.saleId = saleId;
+        this.companyId = companyId;
+    }
+
+    public Long getSaleId() {
+        return saleId;
+    }
+
+    public Long getCompanyId() {
+        return companyId;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderPlacedEvent{saleId=" + saleId + ", companyId=" + companyId + "}";
+    }
+}
@@ -5,28 +5,55 @@ import lombok.Data;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Setting;
 
 @Data
 @Entity
 @Table(name = "products", uniqueConstraints = {
         @UniqueConstraint(columnNames = { "sku", "company_id" })
+}, indexes = {
+        @Index(name = "idx_products_company_id", columnList = "company_id, id"),
+        @Index(name = "idx_products_category", columnList = "category"),
+        @Index(name = "idx_products_normalized_name", columnList = "normalized_name, price")
 })
 @Document(indexName = "products")
+@Setting(settingPath = "/elasticsearch/product-settings.json")
+@EntityListeners({ com.tiendario.service.MarketplaceListingListener.class,
+        com.tiendario.service.DashboardCacheListener.class })
 @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
 public class Product {
+    // Pooled sequence so bulk imports insert products in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long id;
 
-    @Field(type = FieldType.Text, analyzer = "standard")
+    // Spanish stemming with accent folding: "azucar" finds "azúcar"
+    @Field(type = FieldType.Text, analyzer = "spanish_folded")
     private String name;
 
-    @Field(type = FieldType.Text, analyzer = "standard")
+    @Field(type = FieldType.Text, analyzer = "spanish_folded")
     private String description;
 
+    // Trimmed, lower-cased name; groups the same product across sellers
+    @Column(name = "normalized_name")
+    @Field(type = FieldType.Keyword)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String normalizedName;
+
+    // Set on every entity save; lets the search index snapshot notice rows edited in place
+    @Column(name = "updated_at")
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private LocalDateTime updatedAt;
+
     @Column
     @Field(type = FieldType.Keyword)
     private String sku; // Barcode
@@ -61,4 +88,17 @@ public class Product {
     public String getDisplayName() {
         return catalogProduct != null ? catalogProduct.getName() : name;
     }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        normalizedName = normalizeName(name);
+        // Millisecond precision survives every database, so the value read back equals the one indexed
+        updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    // Key used to unify offers of the same product across sellers; independent of the server locale
+    public static String normalizeName(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -8,8 +8,10 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "purchase_items")
 public class PurchaseItem {
+    // Pooled sequence for batched inserts, like SaleItem
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_items_seq")
+    @SequenceGenerator(name = "purchase_items_seq", sequenceName = "purchase_items_seq", allocationSize = 50)
     private Long id;
 
     private Integer quantity;
@@ -0,0 +1,39 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a full rebuild of the products search index. lastProductId is
+ * the checkpoint a failed or interrupted job resumes from.
+ */
+@Data
+@Entity
+@Table(name = "search_reindex_jobs")
+public class ReindexJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Versioned index being filled, e.g. products_v1760695200000
+    private String indexName;
+
+    @Enumerated(EnumType.STRING)
+    private ReindexStatus status;
+
+    private Long lastProductId;
+    private long indexedCount;
+    private long totalCount;
+
+    private LocalDateTime startedAt;
+
+    // Throughput is measured from the last (re)start
+    private LocalDateTime resumedAt;
+    private long indexedAtResume;
+
+    private LocalDateTime finishedAt;
+
+    @Column(length = 1000)
+    private String error;
+}
@@ -0,0 +1,7 @@
+package com.tiendario.domain;
+
+public enum ReindexStatus {
+    RUNNING,
+    FAILED,
+    COMPLETED
+}
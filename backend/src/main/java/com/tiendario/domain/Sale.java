@@ -9,7 +9,10 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "sales")
+@Table(name = "sales", indexes = {
+        @Index(name = "idx_sales_customer", columnList = "customer_id, id")
+})
+@EntityListeners(com.tiendario.service.DashboardCacheListener.class)
 public class Sale {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
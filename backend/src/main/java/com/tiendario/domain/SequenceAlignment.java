@@ -0,0 +1,23 @@
+package com.tiendario.domain;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Records that a table's id sequence was moved past the ids it had before
+ * switching from IDENTITY, so the alignment runs once per sequence. The
+ * primary key also keeps two instances booting together from both doing it.
+ */
+@Data
+@Entity
+@Table(name = "sequence_alignments")
+public class SequenceAlignment {
+    @Id
+    @Column(length = 100)
+    private String sequenceName;
+
+    private Long maxIdAtAlignment;
+
+    private LocalDateTime alignedAt;
+}
@@ -0,0 +1,22 @@
+package com.tiendario.payload.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+// A whole marketplace cart; lines may belong to different sellers
+@Data
+public class CartCheckoutRequest {
+    private List<CartLine> items;
+
+    private String customerName;
+    private String customerEmail;
+    private String customerPhone;
+    private String customerAddress;
+
+    @Data
+    public static class CartLine {
+        private Long productId;
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,17 @@
+package com.tiendario.payload.request;
+
+import com.tiendario.domain.SubscriptionStatus;
+import lombok.Data;
+import java.math.BigDecimal;
+
+/**
+ * Optional filters for the public catalog endpoints, bound from query params.
+ */
+@Data
+public class CatalogFilter {
+    private String category;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private SubscriptionStatus subscriptionStatus;
+    private boolean inStock;
+}
@@ -0,0 +1,9 @@
+package com.tiendario.payload.request;
+
+import lombok.Data;
+
+@Data
+public class LoyaltyRedeemRequest {
+    private Integer points;
+    private String reason;
+}
@@ -0,0 +1,19 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// One seller's order out of a checked out cart
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutOrderDTO {
+    private Long saleId;
+    private Long companyId;
+    private String companyName;
+    private int items;
+    private BigDecimal totalAmount;
+}
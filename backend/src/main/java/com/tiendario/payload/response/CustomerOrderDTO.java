@@ -0,0 +1,41 @@
+package com.tiendario.payload.response;
+
+import com.tiendario.domain.SaleStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// One order in the customer portal history, with only the columns the portal shows
+@Data
+@NoArgsConstructor
+public class CustomerOrderDTO {
+    private Long id;
+    private LocalDateTime date;
+    private BigDecimal totalAmount;
+    private SaleStatus status;
+    private Store company;
+    private List<Line> items = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Store {
+        private Long id;
+        private String name;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private Long id;
+        private String name;
+        private Integer quantity;
+        private BigDecimal subtotal;
+    }
+}
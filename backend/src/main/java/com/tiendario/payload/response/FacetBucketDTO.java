@@ -0,0 +1,19 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// One facet value with the number of distinct products (not offers) behind it;
+// from/to are only set on price range buckets
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetBucketDTO {
+    private String key;
+    private BigDecimal from;
+    private BigDecimal to;
+    private long count;
+}
@@ -0,0 +1,18 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Body of a "notification" event on /api/notifications/stream
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationEventDTO {
+    private Long id;
+    private String title;
+    private String message;
+    private LocalDateTime createdAt;
+}
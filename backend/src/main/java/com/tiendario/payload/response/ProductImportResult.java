@@ -0,0 +1,27 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk product import; rows are numbered from 1, not counting the CSV header
+@Data
+@NoArgsConstructor
+public class ProductImportResult {
+    private int imported;
+    private int failed;
+    // At most ProductImportService.MAX_REPORTED_ERRORS entries; `failed` counts them all
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String sku;
+        private String message;
+    }
+}
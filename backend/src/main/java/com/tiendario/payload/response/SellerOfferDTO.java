@@ -1,9 +1,12 @@
 package com.tiendario.payload.response;
 
+import com.tiendario.domain.SubscriptionStatus;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 
 @Data
+@NoArgsConstructor
 public class SellerOfferDTO {
     private Long productId;
     private Long companyId;
@@ -15,4 +18,20 @@ public class SellerOfferDTO {
     private Double longitude;
     private String description;
     private String imageUrl;
+
+    // Used by the JPQL constructor projection in ProductRepository
+    public SellerOfferDTO(Long productId, Long companyId, String companyName, BigDecimal price, Integer stock,
+            SubscriptionStatus subscriptionStatus, Double latitude, Double longitude, String description,
+            String imageUrl) {
+        this.productId = productId;
+        this.companyId = companyId;
+        this.companyName = companyName;
+        this.price = price;
+        this.stock = stock;
+        this.subscriptionStatus = subscriptionStatus != null ? subscriptionStatus.name() : "FREE";
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.description = description;
+        this.imageUrl = imageUrl;
+    }
 }
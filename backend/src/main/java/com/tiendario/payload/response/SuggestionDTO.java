@@ -0,0 +1,14 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private String text;
+    private String type; // PRODUCT, CATALOG or CATEGORY
+    private int weight;
+}
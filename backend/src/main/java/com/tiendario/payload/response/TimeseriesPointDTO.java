@@ -0,0 +1,21 @@
+package com.tiendario.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Sales for one period starting at `period`; cancelled orders are only counted
+// in cancelledOrders, never in revenue, orders or units
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeseriesPointDTO {
+    private LocalDate period;
+    private BigDecimal revenue;
+    private long orders;
+    private long units;
+    private long cancelledOrders;
+}
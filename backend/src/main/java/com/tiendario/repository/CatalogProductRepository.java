@@ -2,11 +2,19 @@ package com.tiendario.repository;
 
 import com.tiendario.domain.CatalogProduct;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CatalogProductRepository extends JpaRepository<CatalogProduct, Long> {
     Optional<CatalogProduct> findBySku(String sku);
+
+    List<CatalogProduct> findBySkuIn(Collection<String> skus);
+
+    @Query("SELECT DISTINCT c.name FROM CatalogProduct c WHERE c.name IS NOT NULL")
+    List<String> findAllNames();
 }
@@ -2,6 +2,7 @@ package com.tiendario.repository;
 
 import com.tiendario.domain.Company;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.tiendario.domain.SubscriptionStatus;
@@ -12,4 +13,13 @@ import java.util.List;
 public interface CompanyRepository extends JpaRepository<Company, Long> {
     List<Company> findBySubscriptionStatusInAndSubscriptionEndDateBefore(List<SubscriptionStatus> statuses,
             LocalDateTime date);
+
+    interface StatusCount {
+        SubscriptionStatus getStatus();
+
+        long getCompanies();
+    }
+
+    @Query("SELECT c.subscriptionStatus AS status, COUNT(c) AS companies FROM Company c GROUP BY c.subscriptionStatus")
+    List<StatusCount> countBySubscriptionStatus();
 }
@@ -2,8 +2,14 @@ package com.tiendario.repository;
 
 import com.tiendario.domain.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +18,23 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     List<Customer> findByCompanyId(Long companyId);
 
     Optional<Customer> findByEmailAndCompanyId(String email, Long companyId);
+
+    List<Customer> findByEmailAndCompanyIdIn(String email, Collection<Long> companyIds);
+
+    // Loyalty points of one shopper summed over every store, materialized points plus
+    // ledger entries not compacted yet; customers found through idx_customers_normalized_email
+    @Query(value = "SELECT COALESCE(SUM(c.loyalty_points), 0) + COALESCE((SELECT SUM(e.points) "
+            + "FROM loyalty_ledger e JOIN customers p ON p.id = e.customer_id "
+            + "WHERE p.normalized_email = :normalizedEmail AND e.compacted = FALSE), 0) "
+            + "FROM customers c WHERE c.normalized_email = :normalizedEmail", nativeQuery = true)
+    Number sumLoyaltyPointsByNormalizedEmail(@Param("normalizedEmail") String normalizedEmail);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Customer c WHERE c.id = :id")
+    Optional<Customer> findByIdForUpdate(@Param("id") Long id);
+
+    // Fills normalized_email for rows written before the column existed
+    @Modifying
+    @Query("UPDATE Customer c SET c.normalizedEmail = LOWER(TRIM(c.email)) WHERE c.normalizedEmail IS NULL AND c.email IS NOT NULL")
+    int backfillNormalizedEmails();
 }
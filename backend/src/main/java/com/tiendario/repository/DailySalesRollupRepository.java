@@ -0,0 +1,42 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.DailySalesRollup;
+import com.tiendario.domain.SaleStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Long> {
+    List<DailySalesRollup> findByCompanyIdAndDayBetweenOrderByDayAsc(Long companyId, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("UPDATE DailySalesRollup r SET r.revenue = r.revenue + :revenue, "
+            + "r.orderCount = r.orderCount + :orders, r.units = r.units + :units "
+            + "WHERE r.companyId = :companyId AND r.day = :day AND r.status = :status")
+    int increment(@Param("companyId") Long companyId, @Param("day") LocalDate day,
+            @Param("status") SaleStatus status, @Param("revenue") BigDecimal revenue,
+            @Param("orders") long orders, @Param("units") long units);
+
+    @Modifying
+    @Query(value = "DELETE FROM daily_sales_rollup", nativeQuery = true)
+    int deleteAllRows();
+
+    // Rebuilds every rollup row from the sales table in one statement
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollup (company_id, sales_day, status, revenue, order_count, units) "
+            + "SELECT s.company_id, CAST(s.date AS DATE), s.status, COALESCE(SUM(s.total_amount), 0), "
+            + "COUNT(*), COALESCE(SUM(i.units), 0) "
+            + "FROM sales s "
+            + "LEFT JOIN (SELECT sale_id, SUM(quantity) AS units FROM sale_items GROUP BY sale_id) i "
+            + "ON i.sale_id = s.id "
+            + "WHERE s.company_id IS NOT NULL AND s.date IS NOT NULL AND s.status IS NOT NULL "
+            + "GROUP BY s.company_id, CAST(s.date AS DATE), s.status", nativeQuery = true)
+    int insertFromSales();
+}
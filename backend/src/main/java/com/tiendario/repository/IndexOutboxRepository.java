@@ -0,0 +1,17 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.IndexOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IndexOutboxRepository extends JpaRepository<IndexOutboxEntry, Long> {
+    List<IndexOutboxEntry> findByNextAttemptAtLessThanEqualOrderByIdAsc(LocalDateTime now, Pageable pageable);
+
+    Optional<IndexOutboxEntry> findFirstByOrderByIdAsc();
+}
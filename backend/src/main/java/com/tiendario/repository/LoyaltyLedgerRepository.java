@@ -0,0 +1,32 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.LoyaltyLedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LoyaltyLedgerRepository extends JpaRepository<LoyaltyLedgerEntry, Long> {
+    List<LoyaltyLedgerEntry> findByCustomerIdOrderByIdDesc(Long customerId, Pageable pageable);
+
+    List<LoyaltyLedgerEntry> findByCustomerIdAndCompactedFalse(Long customerId);
+
+    @Query("SELECT DISTINCT e.customerId FROM LoyaltyLedgerEntry e WHERE e.compacted = false")
+    List<Long> findCustomerIdsWithPendingEntries(Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE LoyaltyLedgerEntry e SET e.compacted = true WHERE e.id IN :ids")
+    int markCompacted(@Param("ids") Collection<Long> ids);
+
+    // Materialized points plus entries not folded in yet, read in one statement
+    @Query(value = "SELECT COALESCE(c.loyalty_points, 0) + COALESCE((SELECT SUM(e.points) FROM loyalty_ledger e "
+            + "WHERE e.customer_id = c.id AND e.compacted = FALSE), 0) "
+            + "FROM customers c WHERE c.id = :customerId", nativeQuery = true)
+    Number balanceOf(@Param("customerId") Long customerId);
+}
@@ -0,0 +1,99 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.MarketplaceListing;
+import com.tiendario.domain.Product;
+import com.tiendario.domain.SubscriptionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MarketplaceListingRepository extends JpaRepository<MarketplaceListing, Long> {
+    // Row lock taken by every listing refresh, so concurrent refreshes of a group apply one after the other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM MarketplaceListing l WHERE l.normalizedName = :normalizedName")
+    Optional<MarketplaceListing> findByNormalizedNameForUpdate(@Param("normalizedName") String normalizedName);
+
+    // Keyset chunks of listings none of whose products is left, for the rebuild
+    @Query("SELECT l.normalizedName FROM MarketplaceListing l WHERE l.normalizedName > :after "
+            + "AND NOT EXISTS (SELECT p.id FROM Product p WHERE p.normalizedName = l.normalizedName) "
+            + "ORDER BY l.normalizedName")
+    List<String> findNamesWithoutOffers(@Param("after") String after, Pageable pageable);
+
+    @Query("SELECT l.normalizedName FROM MarketplaceListing l WHERE l.product.id IN :productIds")
+    List<String> findNormalizedNamesByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT l FROM MarketplaceListing l JOIN FETCH l.product p LEFT JOIN FETCH p.company "
+            + "WHERE l.normalizedName IN :names")
+    List<MarketplaceListing> findByNormalizedNameIn(@Param("names") Collection<String> names);
+
+    // Display name and seller count of every listed product, for the suggestion index
+    @Query("SELECT l.normalizedName, p.name, l.sellerCount FROM MarketplaceListing l JOIN l.product p")
+    List<Object[]> findSuggestionRows();
+
+    @Query("SELECT l.normalizedName, p.name, l.sellerCount FROM MarketplaceListing l JOIN l.product p "
+            + "WHERE l.normalizedName IN :names")
+    List<Object[]> findSuggestionRowsByNormalizedNames(@Param("names") Collection<String> names);
+
+    // Conditions on an offer p (seller c); every filter is optional (null / false disables it)
+    String OFFER_FILTERS = "AND (:pattern IS NULL OR LOWER(p.name) LIKE :pattern OR LOWER(p.description) LIKE :pattern) "
+            + "AND (:category IS NULL OR p.category = :category) "
+            + "AND (:minPrice IS NULL OR p.price >= :minPrice) "
+            + "AND (:maxPrice IS NULL OR p.price <= :maxPrice) "
+            + "AND (:status IS NULL OR c.subscriptionStatus = :status) "
+            + "AND (:inStock = false OR p.stock > 0) ";
+
+    // Keyset page of listed names with at least one offer, from any seller, matching every filter
+    @Query("SELECT l.normalizedName FROM MarketplaceListing l "
+            + "WHERE l.normalizedName > :after "
+            + "AND EXISTS (SELECT p.id FROM Product p LEFT JOIN p.company c "
+            + "WHERE p.normalizedName = l.normalizedName " + OFFER_FILTERS + ") "
+            + "ORDER BY l.normalizedName")
+    List<String> findPageNames(@Param("after") String after,
+            @Param("pattern") String pattern,
+            @Param("category") String category,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("status") SubscriptionStatus status,
+            @Param("inStock") boolean inStock,
+            Pageable pageable);
+
+    // Offers of the given names matching every filter, cheapest first within each name
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.company c "
+            + "WHERE p.normalizedName IN :names " + OFFER_FILTERS
+            + "ORDER BY p.normalizedName, p.price ASC NULLS LAST, p.id ASC")
+    List<Product> findMatchingOffers(@Param("names") Collection<String> names,
+            @Param("pattern") String pattern,
+            @Param("category") String category,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("status") SubscriptionStatus status,
+            @Param("inStock") boolean inStock);
+
+    // Facet counts for the database search fallback: listed names with a matching offer in each category
+    @Query("SELECT p.category, COUNT(DISTINCT l.id) FROM MarketplaceListing l, Product p "
+            + "WHERE p.normalizedName = l.normalizedName AND p.category IS NOT NULL "
+            + "AND (:pattern IS NULL OR LOWER(p.name) LIKE :pattern OR LOWER(p.description) LIKE :pattern) "
+            + "AND (:inStock = false OR p.stock > 0) "
+            + "GROUP BY p.category ORDER BY COUNT(DISTINCT l.id) DESC")
+    List<Object[]> countByCategory(@Param("pattern") String pattern, @Param("inStock") boolean inStock);
+
+    // Listed names with a matching offer priced in [from, to)
+    @Query("SELECT COUNT(l) FROM MarketplaceListing l "
+            + "WHERE EXISTS (SELECT p.id FROM Product p WHERE p.normalizedName = l.normalizedName "
+            + "AND (:pattern IS NULL OR LOWER(p.name) LIKE :pattern OR LOWER(p.description) LIKE :pattern) "
+            + "AND (:inStock = false OR p.stock > 0) "
+            + "AND (:from IS NULL OR p.price >= :from) "
+            + "AND (:to IS NULL OR p.price < :to))")
+    long countInPriceRange(@Param("pattern") String pattern, @Param("inStock") boolean inStock,
+            @Param("from") BigDecimal from, @Param("to") BigDecimal to);
+}
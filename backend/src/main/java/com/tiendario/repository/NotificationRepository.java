@@ -1,14 +1,41 @@
 package com.tiendario.repository;
 
 import com.tiendario.domain.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
     List<Notification> findByCompanyIdOrderByCreatedAtDesc(Long companyId);
 
+    // Keyset pages, newest first: ids grow with creation time
+    List<Notification> findByCompanyIdOrderByIdDesc(Long companyId, Pageable pageable);
+
+    List<Notification> findByCompanyIdAndIdLessThanOrderByIdDesc(Long companyId, Long beforeId, Pageable pageable);
+
     long countByCompanyIdAndReadStatusFalse(Long companyId);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.readStatus = true "
+            + "WHERE n.id = :id AND n.company.id = :companyId AND n.readStatus = false")
+    int markRead(@Param("companyId") Long companyId, @Param("id") Long id);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.readStatus = true "
+            + "WHERE n.company.id = :companyId AND n.id <= :upToId AND n.readStatus = false")
+    int markReadUpTo(@Param("companyId") Long companyId, @Param("upToId") Long upToId);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.readStatus = true AND n.createdAt < :cutoff ORDER BY n.id")
+    List<Long> findReadIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,29 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.OrderEventDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderEventDeadLetterRepository extends JpaRepository<OrderEventDeadLetter, Long> {
+    List<OrderEventDeadLetter> findBySaleId(Long saleId);
+
+    // Letters not being replayed, or whose replay was lost with its process
+    @Query("SELECT l FROM OrderEventDeadLetter l WHERE l.replayingSince IS NULL OR l.replayingSince < :staleBefore "
+            + "ORDER BY l.id")
+    List<OrderEventDeadLetter> findReplayable(@Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Claims one letter for a replay; 0 when another replay got it first
+    @Modifying
+    @Query("UPDATE OrderEventDeadLetter l SET l.replayingSince = :now WHERE l.id = :id "
+            + "AND (l.replayingSince IS NULL OR l.replayingSince < :staleBefore)")
+    int claimForReplay(@Param("id") Long id, @Param("now") LocalDateTime now,
+            @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -0,0 +1,30 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.OrderEventOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OrderEventOutboxRepository extends JpaRepository<OrderEventOutboxEntry, Long> {
+    List<OrderEventOutboxEntry> findBySaleId(Long saleId);
+
+    // Entries whose process died before completing them
+    List<OrderEventOutboxEntry> findByClaimedAtBeforeOrderByIdAsc(LocalDateTime staleBefore, Pageable pageable);
+
+    // Claims one stale entry for this process; 0 when another process got it first
+    @Modifying
+    @Query("UPDATE OrderEventOutboxEntry e SET e.claimedAt = :now WHERE e.id = :id AND e.claimedAt < :staleBefore")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // 0 when another run of the same entry already completed it
+    @Modifying
+    @Query("DELETE FROM OrderEventOutboxEntry e WHERE e.id = :id")
+    int deleteEntry(@Param("id") Long id);
+}
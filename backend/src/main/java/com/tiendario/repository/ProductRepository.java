@@ -1,11 +1,21 @@
 package com.tiendario.repository;
 
 import com.tiendario.domain.Product;
+import com.tiendario.domain.SubscriptionStatus;
+import com.tiendario.payload.response.SellerOfferDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,12 +24,108 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Long countByCompanyId(Long companyId);
 
-    @Query("SELECT COUNT(p) FROM Product p WHERE p.company.id = :companyId AND p.stock <= p.minStock")
-    Long countLowStockByCompanyId(@Param("companyId") Long companyId);
+    interface StockSummary {
+        long getTotalProducts();
+
+        Long getLowStockCount();
+
+        BigDecimal getPotentialProfit();
+
+        BigDecimal getPotentialRevenue();
+    }
+
+    // Product count, low stock and margin inputs in a single pass; margin only counts priced products with a cost
+    @Query("SELECT COUNT(p) AS totalProducts, "
+            + "SUM(CASE WHEN p.stock <= p.minStock THEN 1 ELSE 0 END) AS lowStockCount, "
+            + "SUM(CASE WHEN p.price > 0 AND p.costPrice IS NOT NULL THEN p.price - p.costPrice ELSE 0 END) AS potentialProfit, "
+            + "SUM(CASE WHEN p.price > 0 AND p.costPrice IS NOT NULL THEN p.price ELSE 0 END) AS potentialRevenue "
+            + "FROM Product p WHERE p.company.id = :companyId")
+    StockSummary summarizeStock(@Param("companyId") Long companyId);
 
     Boolean existsBySkuAndCompanyId(String sku, Long companyId);
 
+    // Which of these SKUs the company already has, in one query (served by the sku/company unique key)
+    @Query("SELECT p.sku FROM Product p WHERE p.company.id = :companyId AND p.sku IN :skus")
+    List<String> findExistingSkus(@Param("companyId") Long companyId, @Param("skus") Collection<String> skus);
+
     List<Product> findBySku(String sku);
 
+    // Id-ordered chunks for full scans (search reindex)
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // Loads and row-locks the products of a multi-line write in one query;
+    // id order keeps the lock order the same across concurrent requests
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id")
+    List<Product> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    // Products of a cart together with their sellers, in one query
+    @Query("SELECT p FROM Product p JOIN FETCH p.company WHERE p.id IN :ids")
+    List<Product> findAllWithCompanyByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(p.id) FROM Product p")
+    Long findMaxId();
+
+    @Query("SELECT MAX(p.updatedAt) FROM Product p")
+    LocalDateTime findMaxUpdatedAt();
+
+    // Check and decrement in one statement; the row lock serializes concurrent buyers.
+    // Returns 0 when the stock is insufficient. Clears the persistence context so
+    // later reads see the new stock; entities loaded before the call become detached.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity WHERE p.id = :id AND p.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
     List<Product> findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(String name, String description);
+
+    // Keyset page of one seller's catalog (served by idx_products_company_id)
+    @Query("SELECT p FROM Product p JOIN FETCH p.company c "
+            + "WHERE c.id = :companyId AND p.id > :afterId "
+            + "AND (:category IS NULL OR p.category = :category) "
+            + "AND (:minPrice IS NULL OR p.price >= :minPrice) "
+            + "AND (:maxPrice IS NULL OR p.price <= :maxPrice) "
+            + "AND (:status IS NULL OR c.subscriptionStatus = :status) "
+            + "AND (:inStock = false OR p.stock > 0) "
+            + "ORDER BY p.id")
+    List<Product> findCompanyPage(@Param("companyId") Long companyId,
+            @Param("afterId") Long afterId,
+            @Param("category") String category,
+            @Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice,
+            @Param("status") SubscriptionStatus status,
+            @Param("inStock") boolean inStock,
+            Pageable pageable);
+
+    // Offers sharing a marketplace name, cheapest first
+    @Query("SELECT p FROM Product p WHERE p.normalizedName = :normalizedName ORDER BY p.price ASC NULLS LAST, p.id ASC")
+    List<Product> findOffersByNormalizedName(@Param("normalizedName") String normalizedName, Pageable pageable);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.normalizedName = :normalizedName")
+    long countOffersByNormalizedName(@Param("normalizedName") String normalizedName);
+
+    // Row-locks a group's offers in id order; taken by a listing refresh while the group has no listing row to lock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.normalizedName = :normalizedName ORDER BY p.id")
+    List<Product> lockOffersByNormalizedName(@Param("normalizedName") String normalizedName);
+
+    // Keyset chunks of the marketplace names in use, for the listing rebuild
+    @Query("SELECT DISTINCT p.normalizedName FROM Product p WHERE p.normalizedName > :after ORDER BY p.normalizedName")
+    List<String> findNormalizedNamesAfter(@Param("after") String after, Pageable pageable);
+
+    @Query("SELECT new com.tiendario.payload.response.SellerOfferDTO(p.id, c.id, c.name, p.price, p.stock, "
+            + "c.subscriptionStatus, c.latitude, c.longitude, c.description, c.imageUrl) "
+            + "FROM Product p JOIN p.company c WHERE p.normalizedName = :normalizedName "
+            + "ORDER BY p.price ASC NULLS LAST, p.id ASC")
+    List<SellerOfferDTO> findSellerOffersByNormalizedName(@Param("normalizedName") String normalizedName);
+
+    // Keyset chunks (id, name) of rows written before normalized_name existed, for the startup backfill
+    @Query("SELECT p.id, p.name FROM Product p WHERE p.normalizedName IS NULL AND p.name IS NOT NULL "
+            + "AND p.id > :after ORDER BY p.id")
+    List<Object[]> findUnnormalizedAfter(@Param("after") Long after, Pageable pageable);
+
+    // Bulk update, so the backfill does not go through the entity listeners
+    @Modifying
+    @Query("UPDATE Product p SET p.normalizedName = :normalizedName WHERE p.id = :id")
+    int setNormalizedName(@Param("id") Long id, @Param("normalizedName") String normalizedName);
 }
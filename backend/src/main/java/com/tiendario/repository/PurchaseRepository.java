@@ -2,10 +2,51 @@ package com.tiendario.repository;
 
 import com.tiendario.domain.Purchase;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
     List<Purchase> findByCompanyIdOrderByDateDesc(Long companyId);
+
+    interface PurchaseExportRow {
+        Long getPurchaseId();
+
+        LocalDateTime getDate();
+
+        String getInvoiceNumber();
+
+        String getSupplierName();
+
+        BigDecimal getTotal();
+
+        Long getProductId();
+
+        String getSku();
+
+        String getProductName();
+
+        Integer getQuantity();
+
+        BigDecimal getUnitCost();
+    }
+
+    // One row per line item, grouped by purchase; read forward-only inside a read-only transaction
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+    @Query("SELECT pu.id AS purchaseId, pu.date AS date, pu.invoiceNumber AS invoiceNumber, "
+            + "su.name AS supplierName, pu.total AS total, p.id AS productId, p.sku AS sku, "
+            + "p.name AS productName, i.quantity AS quantity, i.unitCost AS unitCost "
+            + "FROM Purchase pu LEFT JOIN pu.supplier su LEFT JOIN pu.items i LEFT JOIN i.product p "
+            + "WHERE pu.company.id = :companyId ORDER BY pu.id, i.id")
+    Stream<PurchaseExportRow> streamForExport(@Param("companyId") Long companyId);
 }
@@ -0,0 +1,12 @@
+package com.tiendario.repository;
+
+import com.tiendario.domain.ReindexJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReindexJobRepository extends JpaRepository<ReindexJob, Long> {
+    Optional<ReindexJob> findFirstByOrderByIdDesc();
+}
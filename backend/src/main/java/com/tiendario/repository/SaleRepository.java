@@ -1,29 +1,144 @@
 package com.tiendario.repository;
 
 import com.tiendario.domain.Sale;
+import com.tiendario.domain.SaleStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface SaleRepository extends JpaRepository<Sale, Long> {
     List<Sale> findByCompanyIdOrderByDateDesc(Long companyId);
 
-    @Query("SELECT s FROM Sale s WHERE s.company.id = :companyId AND s.date >= :startOfDay")
-    List<Sale> findByCompanyIdAndDateAfter(Long companyId, LocalDateTime startOfDay);
+    interface StatusSummary {
+        SaleStatus getStatus();
 
-    @org.springframework.data.jpa.repository.EntityGraph(attributePaths = { "items", "items.product",
-            "items.product.company",
-            "items.product.catalogProduct", "company", "customer", "customer.company" })
-    List<Sale> findByCustomer_EmailOrderByDateDesc(String email);
+        long getOrders();
+
+        Long getSalesToday();
+
+        BigDecimal getRevenueToday();
+    }
+
+    // One row per status: order count overall plus count and revenue since startOfDay
+    @Query("SELECT s.status AS status, COUNT(s) AS orders, "
+            + "SUM(CASE WHEN s.date >= :startOfDay THEN 1 ELSE 0 END) AS salesToday, "
+            + "SUM(CASE WHEN s.date >= :startOfDay THEN s.totalAmount ELSE 0 END) AS revenueToday "
+            + "FROM Sale s WHERE s.company.id = :companyId GROUP BY s.status")
+    List<StatusSummary> summarizeByStatus(@Param("companyId") Long companyId,
+            @Param("startOfDay") LocalDateTime startOfDay);
+
+    interface CustomerOrder {
+        Long getId();
+
+        LocalDateTime getDate();
+
+        BigDecimal getTotalAmount();
+
+        SaleStatus getStatus();
+
+        Long getCompanyId();
+
+        String getCompanyName();
+    }
+
+    // A shopper's orders in every store, newest first, below the keyset cursor
+    @Query("SELECT s.id AS id, s.date AS date, s.totalAmount AS totalAmount, s.status AS status, "
+            + "c.id AS companyId, c.name AS companyName "
+            + "FROM Sale s JOIN s.customer cu LEFT JOIN s.company c "
+            + "WHERE cu.normalizedEmail = :email AND s.id < :before ORDER BY s.id DESC")
+    List<CustomerOrder> findCustomerOrders(@Param("email") String normalizedEmail, @Param("before") Long before,
+            Pageable pageable);
+
+    interface CustomerOrderLine {
+        Long getSaleId();
+
+        Long getProductId();
+
+        String getName();
+
+        Integer getQuantity();
+
+        BigDecimal getSubtotal();
+    }
+
+    // Line items of a page of orders, named as the product is displayed (catalog name first)
+    @Query("SELECT i.sale.id AS saleId, p.id AS productId, COALESCE(cp.name, p.name) AS name, "
+            + "i.quantity AS quantity, i.subtotal AS subtotal "
+            + "FROM SaleItem i LEFT JOIN i.product p LEFT JOIN p.catalogProduct cp "
+            + "WHERE i.sale.id IN :saleIds ORDER BY i.id")
+    List<CustomerOrderLine> findCustomerOrderLines(@Param("saleIds") Collection<Long> saleIds);
+
+    interface CustomerTotals {
+        long getOrders();
+
+        BigDecimal getTotalSpent();
+
+        LocalDateTime getLastOrderDate();
+    }
+
+    @Query("SELECT COUNT(s) AS orders, SUM(s.totalAmount) AS totalSpent, MAX(s.date) AS lastOrderDate "
+            + "FROM Sale s JOIN s.customer cu WHERE cu.normalizedEmail = :email")
+    CustomerTotals summarizeCustomer(@Param("email") String normalizedEmail);
 
     List<Sale> findByCompanyIdAndStatusOrderByDateDesc(Long companyId, com.tiendario.domain.SaleStatus status);
 
+    interface SaleExportRow {
+        Long getSaleId();
+
+        LocalDateTime getDate();
+
+        SaleStatus getStatus();
+
+        BigDecimal getTotalAmount();
+
+        String getCustomerName();
+
+        String getCustomerEmail();
+
+        Long getProductId();
+
+        String getSku();
+
+        String getProductName();
+
+        Integer getQuantity();
+
+        BigDecimal getUnitPrice();
+
+        BigDecimal getSubtotal();
+    }
+
+    // One row per line item, grouped by sale; read forward-only inside a read-only transaction
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+    @Query("SELECT s.id AS saleId, s.date AS date, s.status AS status, s.totalAmount AS totalAmount, "
+            + "cu.name AS customerName, cu.email AS customerEmail, p.id AS productId, p.sku AS sku, "
+            + "p.name AS productName, i.quantity AS quantity, i.unitPrice AS unitPrice, i.subtotal AS subtotal "
+            + "FROM Sale s LEFT JOIN s.customer cu LEFT JOIN s.items i LEFT JOIN i.product p "
+            + "WHERE s.company.id = :companyId ORDER BY s.id, i.id")
+    Stream<SaleExportRow> streamForExport(@Param("companyId") Long companyId);
+
+    interface PlatformTotals {
+        long getOrders();
+
+        BigDecimal getGmv();
+    }
+
+    @Query("SELECT COUNT(s) AS orders, SUM(s.totalAmount) AS gmv FROM Sale s")
+    PlatformTotals summarizePlatform();
+
     @Query("SELECT COUNT(DISTINCT s.company.id) FROM Sale s WHERE s.date >= :sinceDate")
     Long countActiveCompaniesSince(LocalDateTime sinceDate);
-
-    long countByCompanyIdAndStatus(Long companyId, com.tiendario.domain.SaleStatus status);
 }
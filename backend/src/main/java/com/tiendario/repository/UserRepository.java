@@ -2,8 +2,10 @@ package com.tiendario.repository;
 
 import com.tiendario.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +13,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     Boolean existsByUsername(String username);
+
+    @Query("SELECT u.id FROM User u WHERE u.enabled = false")
+    List<Long> findIdsByEnabledFalse();
 }
@@ -1,5 +1,6 @@
 package com.tiendario.security;
 
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,28 +18,40 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
+    private static final String STREAM_PATH = "/api/notifications/stream";
+
     @Autowired
     private JwtUtils jwtUtils;
 
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenRevocationList revocationList;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
-            String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
+            Claims claims = parseClaims(request);
+            if (claims != null) {
+                // The principal travels in the token; only legacy tokens without
+                // the user claims still need the users table
+                UserDetails userDetails = UserDetailsImpl.fromClaims(claims);
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
+                UserDetailsImpl principal = (UserDetailsImpl) userDetails;
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                if (!revocationList.isRevoked(principal.getId())) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
@@ -47,11 +60,23 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private String parseJwt(HttpServletRequest request) {
+    /**
+     * Claims of the login token in the Authorization header or, on the
+     * notification stream only, of the stream ticket in the query string.
+     * Neither kind is accepted in the other's place.
+     */
+    private Claims parseClaims(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
-
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
-            return headerAuth.substring(7);
+            Claims claims = jwtUtils.getVerifiedClaims(headerAuth.substring(7));
+            return claims != null && !JwtUtils.isStreamTicket(claims) ? claims : null;
+        }
+
+        // EventSource cannot send headers, so the stream takes a short-lived ticket as a parameter
+        if (request.getRequestURI().endsWith(STREAM_PATH)) {
+            String ticket = request.getParameter("ticket");
+            Claims claims = StringUtils.hasText(ticket) ? jwtUtils.getVerifiedClaims(ticket) : null;
+            return claims != null && JwtUtils.isStreamTicket(claims) ? claims : null;
         }
 
         return null;
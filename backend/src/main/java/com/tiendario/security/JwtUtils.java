@@ -2,54 +2,124 @@ package com.tiendario.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
 import java.security.Key;
+import java.time.Clock;
 import java.util.Date;
 import java.nio.charset.StandardCharsets;
 
 @Component
 public class JwtUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+
+    static final String CLAIM_ROLE = "role";
+    static final String CLAIM_USER_ID = "userId";
+    static final String CLAIM_COMPANY_ID = "companyId";
+    static final String CLAIM_SCOPE = "scope";
+    static final String SCOPE_NOTIFICATION_STREAM = "notification-stream";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
     @Value("${app.jwt.expiration-ms}")
     private int jwtExpirationMs;
 
+    @Value("${app.jwt.stream-ticket-ms:60000}")
+    private long streamTicketMs;
+
+    @Value("${app.jwt.verified-cache-size:10000}")
+    private int verifiedCacheSize;
+
     private Key key;
 
+    // Immutable and thread-safe once built, so one parser serves every request
+    private JwtParser parser;
+
+    private VerifiedTokenCache verifiedTokens;
+
+    // Expiry checks and issue times; tests supply their own clock to move time forward
+    @Autowired(required = false)
+    private Clock clock;
+
     @PostConstruct
     public void init() {
+        if (clock == null) {
+            clock = Clock.systemUTC();
+        }
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(key).setClock(() -> Date.from(clock.instant())).build();
+        this.verifiedTokens = new VerifiedTokenCache(verifiedCacheSize);
     }
 
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        return principalToken(userPrincipal, jwtExpirationMs).signWith(key, SignatureAlgorithm.HS512).compact();
+    }
 
-        return Jwts.builder()
-                .setSubject((userPrincipal.getUsername()))
-                .claim("role", userPrincipal.getAuthorities().iterator().next().getAuthority())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+    /**
+     * A short-lived token that only opens the notification stream. EventSource
+     * cannot send headers, so the stream URL carries it instead of the login
+     * token, which would otherwise end up in access logs and browser history.
+     */
+    public String generateStreamTicket(UserDetailsImpl userPrincipal) {
+        return principalToken(userPrincipal, streamTicketMs)
+                .claim(CLAIM_SCOPE, SCOPE_NOTIFICATION_STREAM)
+                .signWith(key, SignatureAlgorithm.HS512).compact();
     }
 
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+    public long getStreamTicketMs() {
+        return streamTicketMs;
     }
 
-    public boolean validateJwtToken(String authToken) {
+    public static boolean isStreamTicket(Claims claims) {
+        return SCOPE_NOTIFICATION_STREAM.equals(claims.get(CLAIM_SCOPE, String.class));
+    }
+
+    // Everything AuthTokenFilter needs to rebuild the principal without a user lookup
+    private JwtBuilder principalToken(UserDetailsImpl userPrincipal, long ttlMs) {
+        JwtBuilder builder = Jwts.builder()
+                .setSubject((userPrincipal.getUsername()))
+                .claim(CLAIM_ROLE, userPrincipal.getAuthorities().iterator().next().getAuthority())
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .setIssuedAt(Date.from(clock.instant()))
+                .setExpiration(new Date(clock.millis() + ttlMs));
+        if (userPrincipal.getCompanyId() != null) {
+            builder.claim(CLAIM_COMPANY_ID, userPrincipal.getCompanyId());
+        }
+        return builder;
+    }
+
+    /**
+     * Verifies signature and expiry and returns the claims, or null when the
+     * token is not valid. A token seen recently skips the HMAC check and the
+     * claims parsing until it expires.
+     */
+    public Claims getVerifiedClaims(String token) {
+        ByteBuffer cacheKey = VerifiedTokenCache.digest(token);
+        Claims cached = verifiedTokens.get(cacheKey, clock.millis());
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
-        } catch (JwtException e) {
-            // Log error
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            verifiedTokens.put(cacheKey, claims, clock.millis());
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.debug("Invalid JWT: {}", e.getMessage());
+            return null;
         }
-        return false;
+    }
+
+    public int verifiedCacheSize() {
+        return verifiedTokens.size();
     }
 }
@@ -0,0 +1,47 @@
+package com.tiendario.security;
+
+import com.tiendario.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of disabled users, whose tokens AuthTokenFilter rejects. Kept in memory
+ * so authenticating a request needs no database access. Updated right away by
+ * SuperAdminController.toggleUser and reloaded from the users table at
+ * startup and periodically, so other instances pick up the change.
+ */
+@Component
+public class TokenRevocationList {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private volatile Set<Long> disabledUserIds = ConcurrentHashMap.newKeySet();
+
+    public boolean isRevoked(Long userId) {
+        return disabledUserIds.contains(userId);
+    }
+
+    public void revoke(Long userId) {
+        disabledUserIds.add(userId);
+    }
+
+    public void restore(Long userId) {
+        disabledUserIds.remove(userId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.jwt.revocation-refresh-ms:30000}",
+            initialDelayString = "${app.jwt.revocation-refresh-ms:30000}")
+    public void reload() {
+        Set<Long> reloaded = ConcurrentHashMap.newKeySet();
+        reloaded.addAll(userRepository.findIdsByEnabledFalse());
+        disabledUserIds = reloaded;
+    }
+}
@@ -2,6 +2,7 @@ package com.tiendario.security;
 
 import com.tiendario.domain.User;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.jsonwebtoken.Claims;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -45,6 +46,26 @@ public class UserDetailsImpl implements UserDetails {
                 user.isEnabled());
     }
 
+    /**
+     * Principal rebuilt from verified token claims; returns null for tokens
+     * issued before the claims were added, which still need a user lookup.
+     */
+    public static UserDetailsImpl fromClaims(Claims claims) {
+        Number userId = claims.get(JwtUtils.CLAIM_USER_ID, Number.class);
+        String role = claims.get(JwtUtils.CLAIM_ROLE, String.class);
+        if (userId == null || role == null) {
+            return null;
+        }
+        Number companyId = claims.get(JwtUtils.CLAIM_COMPANY_ID, Number.class);
+        return new UserDetailsImpl(
+                userId.longValue(),
+                claims.getSubject(),
+                null,
+                Collections.singletonList(new SimpleGrantedAuthority(role)),
+                companyId != null ? companyId.longValue() : null,
+                true);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -0,0 +1,78 @@
+package com.tiendario.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified, keyed by
+ * the SHA-256 of the token so raw bearer tokens are not kept in memory. An
+ * entry is only served until the token's own expiry. Lookups take no lock, as
+ * every authenticated request goes through here; when the cache is full,
+ * expired entries are swept and, if that is not enough, a tenth of the
+ * entries are dropped and verified again on their next use.
+ */
+class VerifiedTokenCache {
+
+    private final int maxEntries;
+    private final Map<ByteBuffer, Claims> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    Claims get(ByteBuffer key, long nowMillis) {
+        Claims claims = entries.get(key);
+        if (claims != null && isExpired(claims, nowMillis)) {
+            entries.remove(key, claims);
+            return null;
+        }
+        return claims;
+    }
+
+    void put(ByteBuffer key, Claims claims, long nowMillis) {
+        entries.put(key, claims);
+        if (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                evict(nowMillis);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(long nowMillis) {
+        entries.values().removeIf(claims -> isExpired(claims, nowMillis));
+        int target = maxEntries - Math.max(1, maxEntries / 10);
+        Iterator<ByteBuffer> keys = entries.keySet().iterator();
+        while (entries.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static boolean isExpired(Claims claims, long nowMillis) {
+        return claims.getExpiration() != null && claims.getExpiration().getTime() <= nowMillis;
+    }
+
+    static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
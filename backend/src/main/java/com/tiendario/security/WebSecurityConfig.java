@@ -52,6 +52,8 @@ public class WebSecurityConfig {
         configuration.setAllowedOriginPatterns(java.util.Collections.singletonList("*")); // Allow all origins
         configuration.setAllowedMethods(java.util.Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(java.util.Collections.singletonList("*"));
+        configuration.setExposedHeaders(
+                java.util.Collections.singletonList(com.tiendario.web.PublicController.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
 
         org.springframework.web.cors.UrlBasedCorsConfigurationSource source = new org.springframework.web.cors.UrlBasedCorsConfigurationSource();
@@ -0,0 +1,162 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.CartCheckoutRequest;
+import com.tiendario.payload.response.CheckoutOrderDTO;
+import com.tiendario.repository.CustomerRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Checks out a marketplace cart in one transaction: one Sale per seller,
+ * stock reserved for every line or for none. Products, sellers and existing
+ * customers are read with one query each; customer rows and sale items are
+ * flushed in JDBC batches. Notifications and loyalty points follow each sale
+ * after commit through OrderPlacedEvent.
+ */
+@Service
+public class CheckoutService {
+
+    public static final int MAX_CART_LINES = 100;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Places the cart, returning one order per seller. Throws
+     * IllegalArgumentException (and rolls everything back) when a line is
+     * invalid, a seller cannot sell or a product lacks stock.
+     */
+    @Transactional
+    public List<CheckoutOrderDTO> checkout(CartCheckoutRequest request) {
+        List<CartCheckoutRequest.CartLine> lines = request.getItems();
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+        if (lines.size() > MAX_CART_LINES) {
+            throw new IllegalArgumentException("Cart cannot have more than " + MAX_CART_LINES + " lines");
+        }
+        if (request.getCustomerEmail() == null || request.getCustomerEmail().trim().isEmpty()) {
+            throw new IllegalArgumentException("Customer email is required");
+        }
+
+        // Same product on several lines is one line; id order keeps lock order stable across carts
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (CartCheckoutRequest.CartLine line : lines) {
+            if (line.getProductId() == null) {
+                throw new IllegalArgumentException("Each item must have a product ID");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive");
+            }
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+
+        Map<Long, Product> products = productRepository.findAllWithCompanyByIdIn(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, Company> sellers = new LinkedHashMap<>();
+        for (Long productId : quantities.keySet()) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new IllegalArgumentException("Product not found: " + productId);
+            }
+            Company company = product.getCompany();
+            if (company.getSubscriptionStatus() != SubscriptionStatus.PAID) {
+                throw new IllegalArgumentException("Seller cannot accept orders (FREE Plan): " + company.getName());
+            }
+            sellers.putIfAbsent(company.getId(), company);
+        }
+
+        // Atomic check-and-decrement per product; any failure rolls back the ones before it
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (productRepository.decrementStock(entry.getKey(), entry.getValue()) == 0) {
+                throw new IllegalArgumentException("Insufficient stock for " + products.get(entry.getKey()).getName());
+            }
+        }
+
+        Map<Long, Customer> customers = upsertCustomers(request, sellers);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Sale> sales = new LinkedHashMap<>();
+        for (Company company : sellers.values()) {
+            Sale sale = new Sale();
+            sale.setCompany(company);
+            sale.setCustomer(customers.get(company.getId()));
+            sale.setDate(now);
+            sale.setStatus(SaleStatus.PENDING);
+            sale.setItems(new ArrayList<>());
+            sale.setTotalAmount(BigDecimal.ZERO);
+            sales.put(company.getId(), sale);
+        }
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            Sale sale = sales.get(product.getCompany().getId());
+
+            SaleItem item = new SaleItem();
+            item.setProduct(product);
+            item.setQuantity(entry.getValue());
+            item.setUnitPrice(product.getPrice());
+            item.setSubtotal(product.getPrice().multiply(new BigDecimal(entry.getValue())));
+            item.setSale(sale);
+            sale.getItems().add(item);
+            sale.setTotalAmount(sale.getTotalAmount().add(item.getSubtotal()));
+        }
+
+        List<CheckoutOrderDTO> orders = new ArrayList<>();
+        for (Sale sale : saleRepository.saveAll(sales.values())) {
+            salesRollupService.recordSale(sale);
+            eventPublisher.publishEvent(new OrderPlacedEvent(sale.getId(), sale.getCompany().getId()));
+            orders.add(new CheckoutOrderDTO(sale.getId(), sale.getCompany().getId(), sale.getCompany().getName(),
+                    sale.getItems().size(), sale.getTotalAmount()));
+        }
+        return orders;
+    }
+
+    // One customer row per seller, as with single orders; contact info follows the latest order
+    private Map<Long, Customer> upsertCustomers(CartCheckoutRequest request, Map<Long, Company> sellers) {
+        Map<Long, Customer> customers = new LinkedHashMap<>();
+        for (Customer existing : customerRepository.findByEmailAndCompanyIdIn(request.getCustomerEmail(),
+                sellers.keySet())) {
+            customers.putIfAbsent(existing.getCompany().getId(), existing);
+        }
+        for (Company company : sellers.values()) {
+            Customer customer = customers.computeIfAbsent(company.getId(), id -> {
+                Customer created = new Customer();
+                created.setCompany(company);
+                created.setEmail(request.getCustomerEmail());
+                return created;
+            });
+            customer.setName(request.getCustomerName());
+            customer.setPhone(request.getCustomerPhone());
+            customer.setAddress(request.getCustomerAddress());
+        }
+        customerRepository.saveAll(customers.values());
+        return customers;
+    }
+}
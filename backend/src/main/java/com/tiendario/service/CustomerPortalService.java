@@ -0,0 +1,68 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Customer;
+import com.tiendario.payload.response.CustomerOrderDTO;
+import com.tiendario.repository.SaleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order history of a signed-in shopper across every store, matched by
+ * normalized email. Orders are read a keyset page at a time as flat
+ * projections, then the lines of that page in one more query, instead of
+ * loading entity graphs of the whole history.
+ */
+@Service
+public class CustomerPortalService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Transactional(readOnly = true)
+    public List<CustomerOrderDTO> getOrders(String email, Long before, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<SaleRepository.CustomerOrder> page = saleRepository.findCustomerOrders(Customer.normalizeEmail(email),
+                before != null ? before : Long.MAX_VALUE, PageRequest.of(0, size));
+
+        Map<Long, CustomerOrderDTO> orders = new LinkedHashMap<>();
+        for (SaleRepository.CustomerOrder order : page) {
+            CustomerOrderDTO dto = new CustomerOrderDTO();
+            dto.setId(order.getId());
+            dto.setDate(order.getDate());
+            dto.setTotalAmount(order.getTotalAmount());
+            dto.setStatus(order.getStatus());
+            dto.setCompany(new CustomerOrderDTO.Store(order.getCompanyId(), order.getCompanyName()));
+            orders.put(order.getId(), dto);
+        }
+        if (!orders.isEmpty()) {
+            for (SaleRepository.CustomerOrderLine line : saleRepository.findCustomerOrderLines(orders.keySet())) {
+                orders.get(line.getSaleId()).getItems().add(new CustomerOrderDTO.Line(line.getProductId(),
+                        line.getName(), line.getQuantity(), line.getSubtotal()));
+            }
+        }
+        return new ArrayList<>(orders.values());
+    }
+
+    // Count, total and latest order date in one aggregate query
+    @Transactional(readOnly = true)
+    public Map<String, Object> getStats(String email) {
+        SaleRepository.CustomerTotals totals = saleRepository.summarizeCustomer(Customer.normalizeEmail(email));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalOrders", totals.getOrders());
+        stats.put("totalSpent", totals.getTotalSpent() != null ? totals.getTotalSpent() : BigDecimal.ZERO);
+        stats.put("lastOrderDate", totals.getLastOrderDate());
+        return stats;
+    }
+}
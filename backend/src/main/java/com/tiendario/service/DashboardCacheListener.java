@@ -0,0 +1,74 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Company;
+import com.tiendario.domain.Product;
+import com.tiendario.domain.Sale;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JPA listener on Sale and Product that evicts the company's cached dashboard
+ * summary. Evicts right away, so the writing transaction reads its own
+ * changes, and again after commit, so a summary another request computed
+ * from the old data in between is dropped.
+ */
+public class DashboardCacheListener {
+
+    @Autowired
+    private ObjectProvider<DashboardService> dashboardService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onWrite(Object entity) {
+        Company company = null;
+        if (entity instanceof Sale) {
+            company = ((Sale) entity).getCompany();
+        } else if (entity instanceof Product) {
+            company = ((Product) entity).getCompany();
+        }
+        if (dashboardService == null || company == null || company.getId() == null) {
+            return;
+        }
+        dashboardService.getObject().evict(company.getId());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        PendingEviction pending = (PendingEviction) TransactionSynchronizationManager
+                .getResource(PendingEviction.class);
+        if (pending == null) {
+            pending = new PendingEviction(dashboardService);
+            TransactionSynchronizationManager.bindResource(PendingEviction.class, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.companyIds.add(company.getId());
+    }
+
+    private static class PendingEviction implements TransactionSynchronization {
+        private final ObjectProvider<DashboardService> dashboardService;
+        private final Set<Long> companyIds = new HashSet<>();
+
+        PendingEviction(ObjectProvider<DashboardService> dashboardService) {
+            this.dashboardService = dashboardService;
+        }
+
+        @Override
+        public void afterCommit() {
+            companyIds.forEach(dashboardService.getObject()::evict);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PendingEviction.class);
+        }
+    }
+}
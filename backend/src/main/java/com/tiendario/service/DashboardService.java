@@ -0,0 +1,117 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.SaleStatus;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manager dashboard summary built from two aggregate queries, cached per
+ * company for a short TTL. Sale and product writes evict the company's entry
+ * (see DashboardCacheListener), so the TTL only bounds staleness from writes
+ * that bypass the entities.
+ */
+@Service
+public class DashboardService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Value("${app.dashboard.cache-ttl-ms:15000}")
+    private long cacheTtlMs;
+
+    private final Map<Long, CachedSummary> cache = new ConcurrentHashMap<>();
+
+    // Bumped on every eviction so a summary computed before a write is not cached after it
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    private static final class CachedSummary {
+        final Map<String, Object> summary;
+        final long expiresAt;
+
+        CachedSummary(Map<String, Object> summary, long expiresAt) {
+            this.summary = summary;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public Map<String, Object> getSummary(Long companyId) {
+        CachedSummary cached = cache.get(companyId);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return cached.summary;
+        }
+        Long generation = generations.get(companyId);
+        Map<String, Object> summary = Collections.unmodifiableMap(computeSummary(companyId));
+        if (Objects.equals(generation, generations.get(companyId))) {
+            cache.put(companyId, new CachedSummary(summary, System.currentTimeMillis() + cacheTtlMs));
+        }
+        return summary;
+    }
+
+    public void evict(Long companyId) {
+        generations.merge(companyId, 1L, Long::sum);
+        cache.remove(companyId);
+    }
+
+    private Map<String, Object> computeSummary(Long companyId) {
+        Map<String, Object> summary = new HashMap<>();
+
+        ProductRepository.StockSummary stock = productRepository.summarizeStock(companyId);
+        summary.put("totalProducts", stock.getTotalProducts());
+        summary.put("lowStockCount", orZero(stock.getLowStockCount()));
+
+        // Margin (Simplified: based on all products with costPrice)
+        BigDecimal potentialRevenue = orZero(stock.getPotentialRevenue());
+        BigDecimal margin = BigDecimal.ZERO;
+        if (potentialRevenue.compareTo(BigDecimal.ZERO) > 0) {
+            margin = orZero(stock.getPotentialProfit()).divide(potentialRevenue, 4, RoundingMode.HALF_UP)
+                    .multiply(new BigDecimal(100));
+        }
+        summary.put("averageMargin", margin.setScale(2, RoundingMode.HALF_UP));
+
+        long salesCountToday = 0;
+        BigDecimal revenueToday = BigDecimal.ZERO;
+        Map<SaleStatus, Long> ordersByStatus = new EnumMap<>(SaleStatus.class);
+        for (SaleRepository.StatusSummary row : saleRepository.summarizeByStatus(companyId,
+                LocalDate.now().atStartOfDay())) {
+            salesCountToday += orZero(row.getSalesToday());
+            revenueToday = revenueToday.add(orZero(row.getRevenueToday()));
+            if (row.getStatus() != null) {
+                ordersByStatus.put(row.getStatus(), row.getOrders());
+            }
+        }
+        summary.put("revenueToday", revenueToday);
+        summary.put("salesCountToday", salesCountToday);
+
+        // Orders Breakdown
+        summary.put("pendingOrders", ordersByStatus.getOrDefault(SaleStatus.PENDING, 0L));
+        summary.put("processingOrders", ordersByStatus.getOrDefault(SaleStatus.PAID, 0L));
+        summary.put("completedOrders", ordersByStatus.getOrDefault(SaleStatus.DELIVERED, 0L));
+        summary.put("cancelledOrders", ordersByStatus.getOrDefault(SaleStatus.CANCELLED, 0L));
+
+        return summary;
+    }
+
+    private static long orZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+}
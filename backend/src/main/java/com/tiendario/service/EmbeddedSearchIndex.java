@@ -0,0 +1,532 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Product;
+import com.tiendario.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * In-process inverted index over product names and descriptions, used for
+ * ranked search when Elasticsearch is not deployed. Built from the products
+ * table at startup and updated through ProductIndexService after each commit.
+ * A snapshot is written on shutdown and loaded (then discarded) on the next
+ * start, so a clean restart skips the table scan while a crash, or a database
+ * that no longer matches the snapshot (row count, max id or latest product
+ * update), just causes a rebuild. The snapshot is
+ * plain data (no Java serialization), owner-only, versioned and checksummed;
+ * anything else found at the path is ignored.
+ */
+@Component
+@Profile("!elasticsearch")
+public class EmbeddedSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedSearchIndex.class);
+
+    private static final int REBUILD_CHUNK_SIZE = 500;
+    // Snapshot file: magic, format version, count, max id, latest update, entries, then a CRC32 of all of it
+    private static final int SNAPSHOT_MAGIC = 0x54495831; // "TIX1"
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final int MAX_TEXT_BYTES = 1 << 20;
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los", "o", "para", "por", "sin",
+            "su", "un", "una", "unos", "unas", "y"));
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final Path snapshotPath;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexedProduct> products = new HashMap<>();
+    // term -> product id -> field weight; sorted so the last query term can match as a prefix
+    private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private volatile boolean ready;
+
+    // A blank path disables the snapshot
+    public EmbeddedSearchIndex(@Value("${app.search.embedded.snapshot-path:}") String snapshotPath) {
+        this.snapshotPath = snapshotPath.isBlank() ? null : Paths.get(snapshotPath);
+    }
+
+    static class IndexedProduct {
+        final long id;
+        final String normalizedName;
+        final String name;
+        final String description;
+        // Product.updatedAt as epoch millis, 0 when unknown
+        final long updatedAt;
+
+        IndexedProduct(long id, String normalizedName, String name, String description, long updatedAt) {
+            this.id = id;
+            this.normalizedName = normalizedName;
+            this.name = name;
+            this.description = description;
+            this.updatedAt = updatedAt;
+        }
+
+        IndexedProduct(Product product) {
+            this(product.getId(), Product.normalizeName(product.getName()), product.getName(),
+                    product.getDescription(), toMillis(product.getUpdatedAt()));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        if (!loadSnapshot()) {
+            rebuild();
+        }
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Indexes the product once the surrounding transaction commits, so rolled
+     * back changes never become searchable.
+     */
+    public void indexAfterCommit(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        IndexedProduct entry = new IndexedProduct(product);
+        afterCommit(() -> put(entry));
+    }
+
+    // One synchronization for a whole chunk of products
+    public void indexAfterCommit(Collection<Product> products) {
+        List<IndexedProduct> entries = new ArrayList<>();
+        for (Product product : products) {
+            if (product.getId() != null) {
+                entries.add(new IndexedProduct(product));
+            }
+        }
+        if (!entries.isEmpty()) {
+            afterCommit(() -> entries.forEach(this::put));
+        }
+    }
+
+    public void removeAfterCommit(Long productId) {
+        if (productId != null) {
+            afterCommit(() -> remove(productId));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Normalized product names matching every query term, best match first.
+     * Offers of the same product share a name, so each name is scored by its
+     * best offer.
+     */
+    public List<String> search(String query) {
+        List<String> terms = analyze(query);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Float> scoreByName = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (int i = 0; i < terms.size(); i++) {
+                boolean last = i == terms.size() - 1;
+                Map<Long, Float> termScores = scoreTerm(terms.get(i), last);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Every term has to match
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+                IndexedProduct product = products.get(entry.getKey());
+                if (product != null && product.normalizedName != null) {
+                    scoreByName.merge(product.normalizedName, entry.getValue(), Math::max);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<String> names = new ArrayList<>(scoreByName.keySet());
+        names.sort(Comparator.comparing((String name) -> scoreByName.get(name)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return names;
+    }
+
+    // tf-idf style score per product for one term; the last term also matches as a prefix
+    private Map<Long, Float> scoreTerm(String term, boolean prefix) {
+        Map<Long, Float> scores = new HashMap<>();
+        Collection<Map<Long, Float>> matches = prefix
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, false).values()
+                : postingsFor(term);
+        for (Map<Long, Float> posting : matches) {
+            float idf = (float) Math.log(1.0 + (double) products.size() / posting.size());
+            for (Map.Entry<Long, Float> entry : posting.entrySet()) {
+                scores.merge(entry.getKey(), entry.getValue() * idf, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private Collection<Map<Long, Float>> postingsFor(String term) {
+        Map<Long, Float> posting = postings.get(term);
+        return posting != null ? List.of(posting) : List.of();
+    }
+
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<IndexedProduct> entries = new ArrayList<>();
+        long afterId = 0L;
+        List<Product> chunk;
+        do {
+            chunk = productRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+            for (Product p : chunk) {
+                entries.add(new IndexedProduct(p));
+                afterId = p.getId();
+            }
+        } while (chunk.size() == REBUILD_CHUNK_SIZE);
+
+        replaceAll(entries);
+        log.info("Embedded search index built from database: {} products", entries.size());
+    }
+
+    private void replaceAll(List<IndexedProduct> entries) {
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            postings.clear();
+            for (IndexedProduct entry : entries) {
+                add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void put(IndexedProduct entry) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(entry.id);
+            add(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(IndexedProduct entry) {
+        products.put(entry.id, entry);
+        Map<String, Float> weights = new HashMap<>();
+        for (String term : analyze(entry.description)) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Math::max);
+        }
+        for (String term : analyze(entry.name)) {
+            weights.merge(term, NAME_WEIGHT, Math::max);
+        }
+        for (Map.Entry<String, Float> weight : weights.entrySet()) {
+            postings.computeIfAbsent(weight.getKey(), t -> new HashMap<>()).put(entry.id, weight.getValue());
+        }
+    }
+
+    private void removeLocked(Long productId) {
+        IndexedProduct previous = products.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        Set<String> terms = new HashSet<>(analyze(previous.name));
+        terms.addAll(analyze(previous.description));
+        for (String term : terms) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lower-cases, strips accents and stop words, and applies a light plural
+     * stemmer so "Pantalones" and "pantalón" share the term "pantalon".
+     */
+    static List<String> analyze(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = fold(text);
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                terms.add(stem(token));
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    // Lower-case without accents: "Azúcar" -> "azucar"
+    static String fold(String text) {
+        return DIACRITICS.matcher(Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    // Drops a plural "s" and a trailing "e": pantalones/pantalon, leches/leche, azucares/azucar
+    private static String stem(String token) {
+        String stem = token;
+        if (stem.length() > 3 && stem.endsWith("s")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        if (stem.length() > 3 && stem.endsWith("e")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        return stem;
+    }
+
+    private boolean loadSnapshot() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return false;
+        }
+        try {
+            if (!isPrivate(snapshotPath)) {
+                log.warn("Search index snapshot {} is writable by other users, ignoring it", snapshotPath);
+                return false;
+            }
+            List<IndexedProduct> entries = readSnapshot();
+            if (entries == null) {
+                return false;
+            }
+            replaceAll(entries);
+            log.info("Embedded search index loaded from {}: {} products", snapshotPath, entries.size());
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not read search index snapshot {}, rebuilding: {}", snapshotPath, e.getMessage());
+            return false;
+        } finally {
+            // Only a snapshot written by a clean shutdown is trusted; changes made
+            // after this point are not in it
+            try {
+                Files.deleteIfExists(snapshotPath);
+            } catch (IOException e) {
+                log.warn("Could not delete search index snapshot {}: {}", snapshotPath, e.getMessage());
+            }
+        }
+    }
+
+    // The entries, or null when the snapshot is from another format or no longer matches the products table
+    private List<IndexedProduct> readSnapshot() throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(snapshotPath))) {
+            CheckedInputStream checked = new CheckedInputStream(file, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.info("Search index snapshot {} has an unknown format, rebuilding", snapshotPath);
+                return null;
+            }
+            long count = in.readLong();
+            long maxId = in.readLong();
+            long updatedAt = in.readLong();
+            // A product edited in place keeps the count and max id but moves the latest update
+            if (count != productRepository.count() || maxId != maxProductId()
+                    || updatedAt != toMillis(productRepository.findMaxUpdatedAt())) {
+                log.info("Search index snapshot {} does not match the products table, rebuilding", snapshotPath);
+                return null;
+            }
+            List<IndexedProduct> entries = new ArrayList<>();
+            for (long i = 0; i < count; i++) {
+                entries.add(new IndexedProduct(in.readLong(), readText(in), readText(in), readText(in),
+                        in.readLong()));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                log.warn("Search index snapshot {} failed its checksum, rebuilding", snapshotPath);
+                return null;
+            }
+            return entries;
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_TEXT_BYTES) {
+            throw new IOException("text of " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Group or other write access on a POSIX file system would let another account plant a snapshot
+    private static boolean isPrivate(Path path) throws IOException {
+        if (!Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return true;
+        }
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+        return !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+
+    private long maxProductId() {
+        Long maxId = productRepository.findMaxId();
+        return maxId != null ? maxId : 0L;
+    }
+
+    // Only compared for equality, so the zone is irrelevant as long as it is fixed
+    private static long toMillis(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+    }
+
+    // Owner-only permissions where the file system has them
+    private static void createPrivate(Path path, boolean directory) throws IOException {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (directory) {
+            if (posix) {
+                Files.createDirectories(path,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(path);
+            }
+        } else if (posix) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshot() {
+        if (snapshotPath == null || !ready) {
+            return;
+        }
+        List<IndexedProduct> entries;
+        lock.readLock().lock();
+        try {
+            entries = new ArrayList<>(products.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null && !Files.exists(parent)) {
+                createPrivate(parent, true);
+            }
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            Files.deleteIfExists(tmp);
+            createPrivate(tmp, false);
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(entries.size());
+                out.writeLong(entries.stream().mapToLong(e -> e.id).max().orElse(0L));
+                out.writeLong(entries.stream().mapToLong(e -> e.updatedAt).max().orElse(0L));
+                for (IndexedProduct entry : entries) {
+                    out.writeLong(entry.id);
+                    writeText(out, entry.normalizedName);
+                    writeText(out, entry.name);
+                    writeText(out, entry.description);
+                    out.writeLong(entry.updatedAt);
+                }
+                out.flush();
+                // The checksum covers everything before it
+                new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Embedded search index saved to {}: {} products", snapshotPath, entries.size());
+        } catch (IOException e) {
+            log.warn("Could not save search index snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+}
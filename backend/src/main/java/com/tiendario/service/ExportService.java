@@ -0,0 +1,216 @@
+package com.tiendario.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.tiendario.repository.PurchaseRepository;
+import com.tiendario.repository.SaleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes a company's sales or purchases as CSV (one line per item) or NDJSON
+ * (one document per sale or purchase, items nested). Rows are scalar
+ * projections read from a forward-only cursor and written as they arrive,
+ * so memory stays flat whatever the history size; only the lines of the
+ * current sale are held for NDJSON.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType + ";charset=UTF-8";
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+
+    private static final String[] SALE_COLUMNS = { "sale_id", "date", "status", "customer_name",
+            "customer_email", "total_amount", "product_id", "sku", "product_name", "quantity", "unit_price",
+            "subtotal" };
+    private static final String[] PURCHASE_COLUMNS = { "purchase_id", "date", "invoice_number", "supplier_name",
+            "total", "product_id", "sku", "product_name", "quantity", "unit_cost", "subtotal" };
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportSales(Long companyId, Format format, OutputStream out) throws IOException {
+        try (Stream<SaleRepository.SaleExportRow> rows = saleRepository.streamForExport(companyId)) {
+            write(rows.iterator(), format, out, SALE_COLUMNS, SaleRepository.SaleExportRow::getSaleId,
+                    row -> new Object[] { row.getSaleId(), row.getDate(), row.getStatus(), row.getCustomerName(),
+                            row.getCustomerEmail(), row.getTotalAmount(), row.getProductId(), row.getSku(),
+                            row.getProductName(), row.getQuantity(), row.getUnitPrice(), row.getSubtotal() },
+                    row -> {
+                        Map<String, Object> sale = new LinkedHashMap<>();
+                        sale.put("id", row.getSaleId());
+                        sale.put("date", row.getDate());
+                        sale.put("status", row.getStatus());
+                        sale.put("customerName", row.getCustomerName());
+                        sale.put("customerEmail", row.getCustomerEmail());
+                        sale.put("totalAmount", row.getTotalAmount());
+                        return sale;
+                    },
+                    row -> {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("productId", row.getProductId());
+                        item.put("sku", row.getSku());
+                        item.put("productName", row.getProductName());
+                        item.put("quantity", row.getQuantity());
+                        item.put("unitPrice", row.getUnitPrice());
+                        item.put("subtotal", row.getSubtotal());
+                        return item;
+                    });
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportPurchases(Long companyId, Format format, OutputStream out) throws IOException {
+        try (Stream<PurchaseRepository.PurchaseExportRow> rows = purchaseRepository.streamForExport(companyId)) {
+            write(rows.iterator(), format, out, PURCHASE_COLUMNS, PurchaseRepository.PurchaseExportRow::getPurchaseId,
+                    row -> new Object[] { row.getPurchaseId(), row.getDate(), row.getInvoiceNumber(),
+                            row.getSupplierName(), row.getTotal(), row.getProductId(), row.getSku(),
+                            row.getProductName(), row.getQuantity(), row.getUnitCost(), subtotal(row) },
+                    row -> {
+                        Map<String, Object> purchase = new LinkedHashMap<>();
+                        purchase.put("id", row.getPurchaseId());
+                        purchase.put("date", row.getDate());
+                        purchase.put("invoiceNumber", row.getInvoiceNumber());
+                        purchase.put("supplierName", row.getSupplierName());
+                        purchase.put("total", row.getTotal());
+                        return purchase;
+                    },
+                    row -> {
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("productId", row.getProductId());
+                        item.put("sku", row.getSku());
+                        item.put("productName", row.getProductName());
+                        item.put("quantity", row.getQuantity());
+                        item.put("unitCost", row.getUnitCost());
+                        item.put("subtotal", subtotal(row));
+                        return item;
+                    });
+        }
+    }
+
+    private static BigDecimal subtotal(PurchaseRepository.PurchaseExportRow row) {
+        return row.getUnitCost() != null && row.getQuantity() != null
+                ? row.getUnitCost().multiply(new BigDecimal(row.getQuantity()))
+                : null;
+    }
+
+    // Rows arrive ordered by parent id; a row without quantity is a parent with no items
+    private <R> void write(Iterator<R> rows, Format format, OutputStream out, String[] columns,
+            Function<R, Long> parentId, Function<R, Object[]> csvRow,
+            Function<R, Map<String, Object>> parent, Function<R, Map<String, Object>> item) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writeCsvLine(writer, columns);
+            while (rows.hasNext()) {
+                writeCsvLine(writer, csvRow.apply(rows.next()));
+            }
+        } else {
+            // Plain writeValueAsString per document; FLUSH_AFTER_WRITE_VALUE would flush the socket each time
+            ObjectWriter json = objectMapper.writer();
+            Long currentId = null;
+            Map<String, Object> current = null;
+            List<Map<String, Object>> items = null;
+            while (rows.hasNext()) {
+                R row = rows.next();
+                Long id = parentId.apply(row);
+                if (!Objects.equals(id, currentId)) {
+                    if (current != null) {
+                        writer.write(json.writeValueAsString(current));
+                        writer.write('\n');
+                    }
+                    currentId = id;
+                    current = parent.apply(row);
+                    items = new ArrayList<>();
+                    current.put("items", items);
+                }
+                Map<String, Object> line = item.apply(row);
+                if (line.get("quantity") != null) {
+                    items.add(line);
+                }
+            }
+            if (current != null) {
+                writer.write(json.writeValueAsString(current));
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvCell(values[i]));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static String csvCell(Object value) {
+        if (value instanceof Number) {
+            return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+        }
+        String text = value.toString();
+        // Shopper-entered text starting like a formula would be evaluated by spreadsheets
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+                || text.indexOf('\r') >= 0) {
+            text = '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
@@ -0,0 +1,163 @@
+package com.tiendario.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Responses of requests sent with an Idempotency-Key, kept in memory for a
+ * TTL. The first request with a key reserves it; duplicates arriving while
+ * it runs wait for its response instead of running again, and later retries
+ * get the stored response. Like the notification streams, this assumes a
+ * single application instance.
+ */
+@Component
+public class IdempotencyStore {
+
+    @Value("${app.idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${app.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    public static class StoredResponse {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        public StoredResponse(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    public static class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public boolean matches(String fingerprint) {
+            return this.fingerprint.equals(fingerprint);
+        }
+
+        /**
+         * Waits for the first request's response; null when it ended without
+         * one, in which case the caller may reserve the key itself.
+         */
+        public StoredResponse await(long timeoutMs) throws InterruptedException, TimeoutException {
+            try {
+                return response.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    public static class Reservation {
+        private final Entry entry;
+        private final boolean owner;
+
+        Reservation(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        // True when the caller must run the request and then complete or abandon it
+        public boolean isOwner() {
+            return owner;
+        }
+    }
+
+    public Reservation reserve(String key, String fingerprint) {
+        while (true) {
+            Entry created = new Entry(fingerprint);
+            Entry existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                // Capped here rather than only by the purge, so a burst of new keys cannot outgrow it
+                if (entries.size() > maxEntries && trimming.compareAndSet(false, true)) {
+                    try {
+                        trim(maxEntries - Math.max(1, maxEntries / 10));
+                    } finally {
+                        trimming.set(false);
+                    }
+                }
+                return new Reservation(created, true);
+            }
+            if (existing.expiresAt > System.currentTimeMillis()) {
+                return new Reservation(existing, false);
+            }
+            entries.remove(key, existing);
+        }
+    }
+
+    public void complete(Entry entry, StoredResponse response) {
+        entry.expiresAt = System.currentTimeMillis() + ttlMs;
+        entry.response.complete(response);
+    }
+
+    // The request failed without a response worth replaying; the next retry runs it again
+    public void abandon(String key, Entry entry) {
+        entries.remove(key, entry);
+        entry.response.complete(null);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-ms:60000}")
+    public void purgeExpired() {
+        trim(maxEntries);
+    }
+
+    // Drops expired entries, then completed ones closest to expiry down to the limit;
+    // requests still running are never dropped
+    private void trim(int limit) {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> e.getValue().expiresAt <= now);
+        int excess = entries.size() - limit;
+        if (excess > 0) {
+            // Over capacity: completed responses closest to expiry go first
+            entries.entrySet().stream()
+                    .filter(e -> e.getValue().expiresAt != Long.MAX_VALUE)
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                    .limit(excess)
+                    .collect(Collectors.toList())
+                    .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+        }
+    }
+}
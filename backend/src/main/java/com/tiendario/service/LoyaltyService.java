@@ -0,0 +1,163 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Customer;
+import com.tiendario.domain.LoyaltyEntryType;
+import com.tiendario.domain.LoyaltyLedgerEntry;
+import com.tiendario.repository.CustomerRepository;
+import com.tiendario.repository.LoyaltyLedgerRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Loyalty points of a shopper, who is one customer row per store they have
+ * bought from, all sharing the same email. Points move through the
+ * loyalty_ledger: orders append EARN entries, stores append REDEEM entries,
+ * and a periodic compaction folds them into Customer.loyaltyPoints.
+ */
+@Service
+public class LoyaltyService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoyaltyService.class);
+
+    private static final int COMPACTION_BATCH = 500;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoyaltyLedgerRepository ledgerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Points across every store for an email, matched case-insensitively.
+     */
+    @Transactional(readOnly = true)
+    public long getPointsByEmail(String email) {
+        String normalizedEmail = Customer.normalizeEmail(email);
+        if (normalizedEmail == null || normalizedEmail.isEmpty()) {
+            return 0;
+        }
+        return customerRepository.sumLoyaltyPointsByNormalizedEmail(normalizedEmail).longValue();
+    }
+
+    @Transactional(readOnly = true)
+    public long getBalance(Long customerId) {
+        Number balance = ledgerRepository.balanceOf(customerId);
+        return balance == null ? 0 : balance.longValue();
+    }
+
+    @Transactional(readOnly = true)
+    public List<LoyaltyLedgerEntry> getRecentEntries(Long customerId, int limit) {
+        return ledgerRepository.findByCustomerIdOrderByIdDesc(customerId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Records points earned on a sale. Only inserts a ledger entry, so it
+     * never waits on other orders of the same customer.
+     */
+    @Transactional
+    public void earn(Long customerId, Long saleId, int points) {
+        if (points <= 0) {
+            return;
+        }
+        LoyaltyLedgerEntry entry = new LoyaltyLedgerEntry();
+        entry.setCustomerId(customerId);
+        entry.setType(LoyaltyEntryType.EARN);
+        entry.setPoints(points);
+        entry.setSaleId(saleId);
+        ledgerRepository.save(entry);
+    }
+
+    /**
+     * Spends points, returning the balance left. Redemptions of the same
+     * customer are serialized on the customer row so two of them cannot both
+     * spend the same points.
+     */
+    @Transactional
+    public long redeem(Long customerId, int points, String reason) {
+        if (points <= 0) {
+            throw new IllegalArgumentException("Points to redeem must be positive");
+        }
+        customerRepository.findByIdForUpdate(customerId)
+                .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+        long balance = getBalance(customerId);
+        if (balance < points) {
+            throw new IllegalStateException("Insufficient points: balance is " + balance);
+        }
+
+        LoyaltyLedgerEntry entry = new LoyaltyLedgerEntry();
+        entry.setCustomerId(customerId);
+        entry.setType(LoyaltyEntryType.REDEEM);
+        entry.setPoints(-points);
+        entry.setReason(reason);
+        ledgerRepository.save(entry);
+        return balance - points;
+    }
+
+    /**
+     * Folds pending ledger entries into each customer's materialized points,
+     * one short transaction per customer.
+     */
+    @Scheduled(fixedDelayString = "${app.loyalty.compaction-ms:60000}")
+    public void compact() {
+        List<Long> customerIds;
+        int customers = 0;
+        do {
+            customerIds = ledgerRepository.findCustomerIdsWithPendingEntries(PageRequest.of(0, COMPACTION_BATCH));
+            for (Long customerId : customerIds) {
+                transactionTemplate.executeWithoutResult(status -> compactCustomer(customerId));
+            }
+            customers += customerIds.size();
+        } while (customerIds.size() == COMPACTION_BATCH);
+        if (customers > 0) {
+            log.debug("Compacted loyalty ledger for {} customers", customers);
+        }
+    }
+
+    private void compactCustomer(Long customerId) {
+        // Holding the customer row keeps redemptions and other compactions out
+        Customer customer = customerRepository.findByIdForUpdate(customerId).orElse(null);
+        List<LoyaltyLedgerEntry> pending = ledgerRepository.findByCustomerIdAndCompactedFalse(customerId);
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (customer != null) {
+            int delta = pending.stream().mapToInt(LoyaltyLedgerEntry::getPoints).sum();
+            int current = customer.getLoyaltyPoints() == null ? 0 : customer.getLoyaltyPoints();
+            customer.setLoyaltyPoints(current + delta);
+        }
+        // Entries of deleted customers are just marked, so they stop coming back
+        ledgerRepository.markCompacted(pending.stream().map(LoyaltyLedgerEntry::getId).collect(Collectors.toList()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        int normalized = customerRepository.backfillNormalizedEmails();
+        if (normalized > 0) {
+            log.info("Backfilled normalized emails for {} customers", normalized);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JPA listener on Product that collects the products written in the current
+ * transaction and refreshes their marketplace listing groups, and then the
+ * search suggestions for those groups, once it commits.
+ * Catches every write path (controllers, seeders, migrations) without each of
+ * them having to call the listing service.
+ */
+public class MarketplaceListingListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketplaceListingListener.class);
+
+    @Autowired
+    private ObjectProvider<MarketplaceListingService> listingService;
+
+    @Autowired
+    private ObjectProvider<SuggestionService> suggestionService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onProductChanged(Product product) {
+        if (listingService == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        PendingRefresh pending = (PendingRefresh) TransactionSynchronizationManager.getResource(PendingRefresh.class);
+        if (pending == null) {
+            pending = new PendingRefresh(listingService, suggestionService);
+            TransactionSynchronizationManager.bindResource(PendingRefresh.class, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.productIds.add(product.getId());
+        String normalizedName = Product.normalizeName(product.getName());
+        if (normalizedName != null) {
+            pending.normalizedNames.add(normalizedName);
+        }
+    }
+
+    private static class PendingRefresh implements TransactionSynchronization {
+        private final ObjectProvider<MarketplaceListingService> listingService;
+        private final ObjectProvider<SuggestionService> suggestionService;
+        private final Set<Long> productIds = new HashSet<>();
+        private final Set<String> normalizedNames = new HashSet<>();
+
+        PendingRefresh(ObjectProvider<MarketplaceListingService> listingService,
+                ObjectProvider<SuggestionService> suggestionService) {
+            this.listingService = listingService;
+            this.suggestionService = suggestionService;
+        }
+
+        @Override
+        public void afterCommit() {
+            try {
+                Set<String> groups = listingService.getObject().refresh(productIds, normalizedNames);
+                suggestionService.getObject().listingsChanged(groups);
+            } catch (Exception e) {
+                // The product change is already committed; the nightly rebuild repairs the listing
+                log.warn("Could not refresh marketplace listing for products {}: {}", productIds, e.getMessage());
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PendingRefresh.class);
+        }
+    }
+}
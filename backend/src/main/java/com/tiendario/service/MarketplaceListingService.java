@@ -0,0 +1,286 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.MarketplaceListing;
+import com.tiendario.domain.Product;
+import com.tiendario.payload.request.CatalogFilter;
+import com.tiendario.payload.response.FacetBucketDTO;
+import com.tiendario.repository.MarketplaceListingRepository;
+import com.tiendario.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the marketplace_listings table (cheapest offer per normalized product
+ * name) in sync with the products table, so the public catalog never has to
+ * group the whole products table on a request.
+ */
+@Service
+public class MarketplaceListingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketplaceListingService.class);
+
+    private static final int REBUILD_CHUNK_SIZE = 500;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MarketplaceListingRepository listingRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    private TransactionTemplate newTransactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        newTransactionTemplate = new TransactionTemplate(transactionManager);
+        newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Keyset page of best offers ordered by normalized name, optionally
+     * restricted by a free-text query and catalog filters. A name is listed
+     * when any of its offers matches, and is shown with the cheapest offer
+     * that does; the cursor is the last normalized name of the page.
+     */
+    @Transactional(readOnly = true)
+    public ProductSearchService.ResultPage findListings(String after, String query, CatalogFilter filter, int limit) {
+        String pattern = likePattern(query);
+        List<String> names = listingRepository.findPageNames(after != null ? after : "", pattern,
+                filter.getCategory(), filter.getMinPrice(), filter.getMaxPrice(),
+                filter.getSubscriptionStatus(), filter.isInStock(), PageRequest.of(0, limit));
+        Map<String, Product> offers = findBestOffers(names, pattern, filter);
+        List<Product> products = new ArrayList<>();
+        for (String name : names) {
+            // Missing only if the offer changed since the page was read
+            Product offer = offers.get(name);
+            if (offer != null) {
+                products.add(offer);
+            }
+        }
+        return new ProductSearchService.ResultPage(products,
+                names.size() == limit ? names.get(names.size() - 1) : null);
+    }
+
+    /**
+     * Cheapest offer matching the query and filters for each of the names;
+     * names without a matching offer are left out.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Product> bestOffers(Collection<String> names, String query, CatalogFilter filter) {
+        return findBestOffers(names, likePattern(query), filter);
+    }
+
+    private Map<String, Product> findBestOffers(Collection<String> names, String pattern, CatalogFilter filter) {
+        Map<String, Product> offers = new HashMap<>();
+        if (names.isEmpty()) {
+            return offers;
+        }
+        for (Product offer : listingRepository.findMatchingOffers(names, pattern, filter.getCategory(),
+                filter.getMinPrice(), filter.getMaxPrice(), filter.getSubscriptionStatus(), filter.isInStock())) {
+            offers.putIfAbsent(offer.getNormalizedName(), offer);
+        }
+        return offers;
+    }
+
+    /**
+     * Category and price range facets over the listings matching a query,
+     * used when Elasticsearch is not available.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, List<FacetBucketDTO>> countFacets(String query, boolean inStock, List<BigDecimal> priceBounds) {
+        String pattern = likePattern(query);
+        List<FacetBucketDTO> categories = new ArrayList<>();
+        for (Object[] row : listingRepository.countByCategory(pattern, inStock)) {
+            categories.add(new FacetBucketDTO((String) row[0], null, null, ((Number) row[1]).longValue()));
+        }
+
+        List<FacetBucketDTO> priceRanges = new ArrayList<>();
+        BigDecimal from = null;
+        for (int i = 0; i <= priceBounds.size(); i++) {
+            BigDecimal to = i < priceBounds.size() ? priceBounds.get(i) : null;
+            long count = listingRepository.countInPriceRange(pattern, inStock, from, to);
+            priceRanges.add(new FacetBucketDTO(rangeKey(from, to), from, to, count));
+            from = to;
+        }
+
+        Map<String, List<FacetBucketDTO>> facets = new HashMap<>();
+        facets.put("categories", categories);
+        facets.put("priceRanges", priceRanges);
+        return facets;
+    }
+
+    static String rangeKey(BigDecimal from, BigDecimal to) {
+        return (from != null ? from.toPlainString() : "*") + "-" + (to != null ? to.toPlainString() : "*");
+    }
+
+    private static String likePattern(String query) {
+        return query != null && !query.isBlank() ? "%" + query.trim().toLowerCase(Locale.ROOT) + "%" : null;
+    }
+
+    /**
+     * Recomputes the groups touched by a committed change: the current names
+     * of the changed products plus any group whose listing pointed at one of
+     * them (covers renames and deletes). Returns the groups it recomputed.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Set<String> refresh(Collection<Long> productIds, Collection<String> normalizedNames) {
+        // Name order, the same as the rebuild, so concurrent refreshes lock groups in one order
+        Set<String> groups = new TreeSet<>(normalizedNames);
+        if (!productIds.isEmpty()) {
+            groups.addAll(listingRepository.findNormalizedNamesByProductIds(productIds));
+        }
+        for (String normalizedName : groups) {
+            refreshGroup(normalizedName);
+        }
+        return groups;
+    }
+
+    /**
+     * Recomputes one group under its listing's row lock, reading the offers
+     * after taking it, so of two concurrent refreshes the later one writes the
+     * current state. A group without a listing row locks its offers instead,
+     * so of two refreshes creating it one inserts the row and the other finds
+     * it once it gets the locks; everything stays in the caller's transaction
+     * and connection. Returns whether the group is listed.
+     */
+    private boolean refreshGroup(String normalizedName) {
+        if (normalizedName == null || normalizedName.isEmpty()) {
+            return false;
+        }
+        MarketplaceListing listing = listingRepository.findByNormalizedNameForUpdate(normalizedName).orElse(null);
+        if (listing == null) {
+            if (productRepository.lockOffersByNormalizedName(normalizedName).isEmpty()) {
+                return false;
+            }
+            listing = listingRepository.findByNormalizedNameForUpdate(normalizedName).orElseGet(() -> {
+                MarketplaceListing created = new MarketplaceListing();
+                created.setNormalizedName(normalizedName);
+                return created;
+            });
+        }
+
+        List<Product> best = productRepository.findOffersByNormalizedName(normalizedName, PageRequest.of(0, 1));
+        if (best.isEmpty()) {
+            if (listing.getId() != null) {
+                listingRepository.delete(listing);
+            }
+            return false;
+        }
+        listing.setProduct(best.get(0));
+        listing.setSellerCount((int) productRepository.countOffersByNormalizedName(normalizedName));
+        listing.setUpdatedAt(LocalDateTime.now());
+        listingRepository.save(listing);
+        return true;
+    }
+
+    /**
+     * Recomputes every listing group, used to backfill an empty table and by
+     * the nightly maintenance task. Names are walked in keyset chunks, each in
+     * its own transaction (so the persistence context never outgrows a chunk),
+     * through the same locked path as refresh: listings stay readable
+     * throughout, and a concurrent refresh of a group simply waits for it.
+     * Listings whose products are all gone are dropped in a second pass.
+     * Search suggestions are rebuilt from the result.
+     */
+    public int rebuild() {
+        int listed = 0;
+        String after = "";
+        List<String> names;
+        do {
+            names = productRepository.findNormalizedNamesAfter(after, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+            listed += refreshChunk(names);
+            after = names.isEmpty() ? after : names.get(names.size() - 1);
+        } while (names.size() == REBUILD_CHUNK_SIZE);
+
+        int dropped = 0;
+        after = "";
+        do {
+            names = listingRepository.findNamesWithoutOffers(after, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+            refreshChunk(names);
+            dropped += names.size();
+            after = names.isEmpty() ? after : names.get(names.size() - 1);
+        } while (names.size() == REBUILD_CHUNK_SIZE);
+
+        log.info("Marketplace listing rebuilt: {} groups, {} dropped", listed, dropped);
+        suggestionService.rebuild();
+        return listed;
+    }
+
+    private int refreshChunk(List<String> names) {
+        if (names.isEmpty()) {
+            return 0;
+        }
+        Integer listed = newTransactionTemplate.execute(status -> {
+            int count = 0;
+            for (String normalizedName : names) {
+                if (refreshGroup(normalizedName)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        return listed != null ? listed : 0;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        int normalized = backfillNormalizedNames();
+        if (normalized > 0) {
+            log.info("Backfilled normalized names for {} products", normalized);
+        }
+        // Suggestions are built from the listing, so only once it is filled
+        if (listingRepository.count() == 0 && productRepository.count() > 0) {
+            rebuild();
+        } else {
+            suggestionService.rebuild();
+        }
+    }
+
+    // Fills normalized_name for rows written before the column existed. Computed
+    // with Product.normalizeName rather than SQL LOWER(TRIM()), which trims and
+    // lower-cases differently, so old and new rows group the same way
+    private int backfillNormalizedNames() {
+        int normalized = 0;
+        long after = 0;
+        List<Object[]> rows;
+        do {
+            rows = productRepository.findUnnormalizedAfter(after, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+            List<Object[]> chunk = rows;
+            newTransactionTemplate.executeWithoutResult(status -> {
+                for (Object[] row : chunk) {
+                    productRepository.setNormalizedName((Long) row[0], Product.normalizeName((String) row[1]));
+                }
+            });
+            normalized += rows.size();
+            after = rows.isEmpty() ? after : (Long) rows.get(rows.size() - 1)[0];
+        } while (rows.size() == REBUILD_CHUNK_SIZE);
+        return normalized;
+    }
+}
@@ -0,0 +1,70 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Notification;
+import com.tiendario.payload.response.NotificationEventDTO;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JPA listener on Notification that hands every new notification to
+ * NotificationService once the transaction that created it commits, which
+ * pushes it to the company's open streams and bumps its unread counter.
+ * Managers never see an event for a rolled back order, and every producer
+ * is covered without each of them calling the service.
+ */
+public class NotificationListener {
+
+    @Autowired
+    private ObjectProvider<NotificationService> notifications;
+
+    @PostPersist
+    public void onCreated(Notification notification) {
+        if (notifications == null || notification.getCompany() == null || notification.getCompany().getId() == null) {
+            return;
+        }
+        Long companyId = notification.getCompany().getId();
+        NotificationEventDTO event = new NotificationEventDTO(notification.getId(), notification.getTitle(),
+                notification.getMessage(), notification.getCreatedAt());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            notifications.getObject().onCreated(companyId, event);
+            return;
+        }
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(PendingEvents.class);
+        if (pending == null) {
+            pending = new PendingEvents(notifications);
+            TransactionSynchronizationManager.bindResource(PendingEvents.class, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.companyIds.add(companyId);
+        pending.events.add(event);
+    }
+
+    private static class PendingEvents implements TransactionSynchronization {
+        private final ObjectProvider<NotificationService> notifications;
+        private final List<Long> companyIds = new ArrayList<>();
+        private final List<NotificationEventDTO> events = new ArrayList<>();
+
+        PendingEvents(ObjectProvider<NotificationService> notifications) {
+            this.notifications = notifications;
+        }
+
+        @Override
+        public void afterCommit() {
+            for (int i = 0; i < events.size(); i++) {
+                notifications.getObject().onCreated(companyIds.get(i), events.get(i));
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PendingEvents.class);
+        }
+    }
+}
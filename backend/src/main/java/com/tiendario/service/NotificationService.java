@@ -0,0 +1,149 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Notification;
+import com.tiendario.payload.response.NotificationEventDTO;
+import com.tiendario.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notification inbox of a company: keyset pages, bulk read and an unread
+ * counter kept in memory so polling the badge does not count rows. Counters
+ * are loaded with one COUNT, bumped when a notification commits and dropped
+ * when notifications are read, so the next read recounts. Read notifications
+ * past the retention period are purged in chunks.
+ */
+@Service
+public class NotificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int PURGE_BATCH = 1000;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private NotificationStreamRegistry streamRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.notifications.retention-days:90}")
+    private int retentionDays;
+
+    private final Map<Long, AtomicLong> unreadCounts = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Notification> getPage(Long companyId, Long beforeId, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        if (beforeId == null) {
+            return notificationRepository.findByCompanyIdOrderByIdDesc(companyId, page);
+        }
+        return notificationRepository.findByCompanyIdAndIdLessThanOrderByIdDesc(companyId, beforeId, page);
+    }
+
+    public long getUnreadCount(Long companyId) {
+        return unreadCounts.computeIfAbsent(companyId,
+                id -> new AtomicLong(notificationRepository.countByCompanyIdAndReadStatusFalse(id))).get();
+    }
+
+    @Transactional
+    public boolean markRead(Long companyId, Long id) {
+        int updated = notificationRepository.markRead(companyId, id);
+        if (updated > 0) {
+            invalidate(companyId);
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Marks every unread notification of the company up to and including
+     * the given id as read, in a single UPDATE. Returns how many changed.
+     */
+    @Transactional
+    public int markReadUpTo(Long companyId, Long upToId) {
+        int updated = notificationRepository.markReadUpTo(companyId, upToId);
+        if (updated > 0) {
+            invalidate(companyId);
+        }
+        return updated;
+    }
+
+    /**
+     * Called by NotificationListener once a new notification has committed.
+     */
+    public void onCreated(Long companyId, NotificationEventDTO event) {
+        AtomicLong count = unreadCounts.get(companyId);
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        streamRegistry.publish(companyId, event);
+    }
+
+    // Dropped now and again after commit, so a count reloaded mid-transaction does not stick
+    private void invalidate(Long companyId) {
+        unreadCounts.remove(companyId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unreadCounts.remove(companyId);
+                }
+            });
+        }
+    }
+
+    // Counters only drift on races between a reload and a commit; reloading them now and then heals that
+    @Scheduled(fixedDelayString = "${app.notifications.unread-resync-ms:600000}")
+    public void resyncUnreadCounts() {
+        unreadCounts.clear();
+    }
+
+    /**
+     * Deletes read notifications older than the retention period, one short
+     * transaction per chunk so the table is never locked for long.
+     */
+    @Scheduled(cron = "${app.notifications.purge-cron:0 30 3 * * *}")
+    public int purgeRead() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int purged = 0;
+        List<Long> ids;
+        do {
+            ids = notificationRepository.findReadIdsCreatedBefore(cutoff, PageRequest.of(0, PURGE_BATCH));
+            if (!ids.isEmpty()) {
+                List<Long> chunk = ids;
+                purged += transactionTemplate.execute(status -> notificationRepository.deleteByIds(chunk));
+            }
+        } while (ids.size() == PURGE_BATCH);
+        if (purged > 0) {
+            log.info("Purged {} read notifications older than {} days", purged, retentionDays);
+        }
+        return purged;
+    }
+}
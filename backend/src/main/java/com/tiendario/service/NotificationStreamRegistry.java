@@ -0,0 +1,254 @@
+package com.tiendario.service;
+
+import com.tiendario.payload.response.NotificationEventDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Open server-sent event streams of managers, grouped by company. Each stream
+ * has its own bounded queue, written by a small sender pool, so a slow client
+ * never blocks the request that produced the event nor the other streams. A
+ * stream that falls too far behind, or whose write is stuck, is closed rather
+ * than silently losing events: the client reconnects and reloads the
+ * notifications list.
+ */
+@Component
+public class NotificationStreamRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationStreamRegistry.class);
+
+    static final String NOTIFICATION_EVENT = "notification";
+
+    @Value("${app.notifications.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    @Value("${app.notifications.send-threads:4}")
+    private int sendThreads;
+
+    @Value("${app.notifications.stream-queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.notifications.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private final Map<Long, Set<Stream>> streams = new ConcurrentHashMap<>();
+
+    // Drains queued or running; awaitIdle waits on this monitor
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+
+    private ExecutorService senders;
+
+    private static final class Stream {
+        final Long companyId;
+        final SseEmitter emitter;
+        final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+        volatile boolean completed;
+        // Start of the write in progress, 0 when none
+        volatile long sendingSince;
+
+        Stream(Long companyId, SseEmitter emitter) {
+            this.companyId = companyId;
+            this.emitter = emitter;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        senders = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setName("notification-sender-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a stream for a manager of the company. It ends on timeout, and
+     * EventSource clients reconnect on their own.
+     */
+    public SseEmitter subscribe(Long companyId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Stream stream = new Stream(companyId, emitter);
+        streams.compute(companyId, (id, set) -> {
+            Set<Stream> open = set != null ? set : ConcurrentHashMap.newKeySet();
+            open.add(stream);
+            return open;
+        });
+        emitter.onCompletion(() -> remove(stream));
+        emitter.onTimeout(() -> remove(stream));
+        emitter.onError(e -> remove(stream));
+        try {
+            // Flushes the response headers as soon as the stream is bound
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            remove(stream);
+        }
+        return emitter;
+    }
+
+    public void publish(Long companyId, NotificationEventDTO event) {
+        Set<Stream> open = streams.get(companyId);
+        if (open == null) {
+            return;
+        }
+        for (Stream stream : open) {
+            offer(stream, SseEmitter.event().name(NOTIFICATION_EVENT).id(String.valueOf(event.getId())).data(event));
+        }
+    }
+
+    public int connectionCount() {
+        return streams.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Waits until every queued event has been written or dropped with its
+     * stream.
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (pendingDrains) {
+            while (pendingDrains.get() > 0) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                pendingDrains.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    // Comment lines keep proxies from closing idle streams and reveal dead clients
+    @Scheduled(fixedDelayString = "${app.notifications.heartbeat-ms:25000}")
+    public void heartbeat() {
+        long stuckSince = System.currentTimeMillis() - sendTimeoutMs;
+        streams.values().forEach(open -> open.forEach(stream -> {
+            long sendingSince = stream.sendingSince;
+            if (sendingSince != 0 && sendingSince < stuckSince) {
+                // The blocked write ends with the container's write timeout; stop queueing behind it
+                log.debug("Notification stream of company {} stuck writing, closing it", stream.companyId);
+                close(stream);
+            } else if (stream.size.get() == 0) {
+                offer(stream, SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    private void offer(Stream stream, SseEmitter.SseEventBuilder event) {
+        if (stream.size.incrementAndGet() > queueCapacity) {
+            stream.size.decrementAndGet();
+            log.debug("Notification stream of company {} fell behind, closing it", stream.companyId);
+            close(stream);
+            return;
+        }
+        stream.pending.add(event);
+        schedule(stream);
+    }
+
+    private void schedule(Stream stream) {
+        if (stream.draining.compareAndSet(false, true)) {
+            pendingDrains.incrementAndGet();
+            try {
+                senders.execute(() -> drain(stream));
+            } catch (RejectedExecutionException e) {
+                // Shutting down; closeAll completes the stream
+                stream.draining.set(false);
+                drainFinished();
+            }
+        }
+    }
+
+    private void drain(Stream stream) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!stream.closed && (event = stream.pending.poll()) != null) {
+                stream.size.decrementAndGet();
+                stream.sendingSince = System.currentTimeMillis();
+                try {
+                    stream.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the container completes the emitter
+                    remove(stream);
+                    stream.closed = true;
+                } finally {
+                    stream.sendingSince = 0;
+                }
+            }
+            if (stream.closed && !stream.completed) {
+                stream.completed = true;
+                stream.pending.clear();
+                stream.emitter.complete();
+            }
+        } finally {
+            stream.draining.set(false);
+            // Work that arrived between the last check and the reset above would otherwise wait for the next event
+            if (stream.closed ? !stream.completed : !stream.pending.isEmpty()) {
+                schedule(stream);
+            }
+            drainFinished();
+        }
+    }
+
+    private void drainFinished() {
+        synchronized (pendingDrains) {
+            if (pendingDrains.decrementAndGet() == 0) {
+                pendingDrains.notifyAll();
+            }
+        }
+    }
+
+    // Completed on a sender thread: completing waits for a write in progress, which may be stuck
+    private void close(Stream stream) {
+        remove(stream);
+        stream.closed = true;
+        schedule(stream);
+    }
+
+    private void remove(Stream stream) {
+        streams.computeIfPresent(stream.companyId, (id, open) -> {
+            open.remove(stream);
+            return open.isEmpty() ? null : open;
+        });
+    }
+
+    public void closeAll() {
+        List<Stream> open = new ArrayList<>();
+        streams.values().forEach(open::addAll);
+        streams.clear();
+        open.forEach(stream -> {
+            stream.closed = true;
+            stream.completed = true;
+            stream.emitter.complete();
+        });
+        log.debug("Closed {} notification streams", open.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closeAll();
+        senders.shutdownNow();
+    }
+}
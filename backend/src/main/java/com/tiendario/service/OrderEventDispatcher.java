@@ -0,0 +1,346 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.OrderEventDeadLetter;
+import com.tiendario.domain.OrderEventOutboxEntry;
+import com.tiendario.domain.Sale;
+import com.tiendario.repository.OrderEventDeadLetterRepository;
+import com.tiendario.repository.OrderEventOutboxRepository;
+import com.tiendario.repository.SaleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the side effects of placed orders off the request thread. Each
+ * handler run is first recorded in order_event_outbox by the order's own
+ * transaction, then handed to a bounded pool once that commits. The handler
+ * gets the committed sale in its own transaction, which also deletes the
+ * outbox entry; failures are retried with exponential backoff and, once the
+ * attempts are used up, moved to order_event_dead_letters for replay. Runs
+ * lost with their process (a crash, a redeploy, handlers still running when
+ * shutdown gives up on them) stay in the outbox and are dispatched again by
+ * recoverOutbox. When the queue is full the committing thread runs the
+ * handler itself, so a burst of orders slows down instead of losing side
+ * effects.
+ */
+@Service
+public class OrderEventDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventDispatcher.class);
+
+    private static final int REPLAY_BATCH = 500;
+    private static final Duration REPLAY_STALE_AFTER = Duration.ofHours(1);
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private OrderEventDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private OrderEventOutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.orders.events.threads:2}")
+    private int threads;
+
+    @Value("${app.orders.events.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.orders.events.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.orders.events.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${app.orders.events.recover-after-ms:300000}")
+    private long recoverAfterMs;
+
+    private final Map<String, Consumer<Sale>> handlers = new ConcurrentHashMap<>();
+    private final Set<Attempt> pendingRetries = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private TransactionTemplate transactionTemplate;
+    private ThreadPoolExecutor executor;
+    private ScheduledThreadPoolExecutor retryScheduler;
+
+    @PostConstruct
+    public void init() {
+        // A handler may run on the committing thread, inside its afterCommit callback
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("order-events"), (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Order event executor is shut down");
+                    }
+                    task.run();
+                });
+        retryScheduler = new ScheduledThreadPoolExecutor(1, daemonThreads("order-events-retry"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setName(name + "-" + thread.getId());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public void register(String handler, Consumer<Sale> action) {
+        handlers.put(handler, action);
+    }
+
+    /**
+     * Records a handler run for a sale in the current transaction, which must
+     * be the one placing the order, and queues it once that commits. If the
+     * transaction rolls back nothing runs. The handler reloads the sale and
+     * skips it if it does not exist.
+     */
+    public void dispatch(String handler, Long saleId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Order events are dispatched from the order's transaction");
+        }
+        OrderEventOutboxEntry entry = new OrderEventOutboxEntry();
+        entry.setHandler(handler);
+        entry.setSaleId(saleId);
+        Long entryId = outboxRepository.save(entry).getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                inFlight.incrementAndGet();
+                submit(new Attempt(handler, saleId, 1, entryId, null));
+            }
+        });
+    }
+
+    private void submit(Attempt attempt) {
+        try {
+            executor.execute(() -> run(attempt));
+        } catch (RejectedExecutionException e) {
+            if (attempt.outboxId != null) {
+                // Shutting down: the entry stays in the outbox and is recovered after the restart
+                inFlight.decrementAndGet();
+            } else {
+                deadLetter(attempt, e);
+            }
+        }
+    }
+
+    private void run(Attempt attempt) {
+        Consumer<Sale> action = handlers.get(attempt.handler);
+        try {
+            if (action == null) {
+                throw new IllegalStateException("No order event handler named " + attempt.handler);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                // Deleted first, so a recovered duplicate of a slow run waits for it and then finds nothing
+                if (attempt.outboxId != null && outboxRepository.deleteEntry(attempt.outboxId) == 0) {
+                    return;
+                }
+                saleRepository.findById(attempt.saleId).ifPresent(action);
+                // A replayed letter goes in the handler's own transaction, so it is kept if the handler fails
+                if (attempt.deadLetterId != null) {
+                    deadLetterRepository.findById(attempt.deadLetterId).ifPresent(deadLetterRepository::delete);
+                }
+            });
+            inFlight.decrementAndGet();
+        } catch (RuntimeException e) {
+            if (action == null || attempt.number >= maxAttempts) {
+                deadLetter(attempt, e);
+                return;
+            }
+            long delay = retryBackoffMs << (attempt.number - 1);
+            log.warn("Order event handler {} failed for sale {} (attempt {}), retrying in {} ms: {}",
+                    attempt.handler, attempt.saleId, attempt.number, delay, e.toString());
+            Attempt retry = new Attempt(attempt.handler, attempt.saleId, attempt.number + 1, attempt.outboxId,
+                    attempt.deadLetterId);
+            pendingRetries.add(retry);
+            try {
+                retryScheduler.schedule(() -> {
+                    if (pendingRetries.remove(retry)) {
+                        submit(retry);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException shuttingDown) {
+                pendingRetries.remove(retry);
+                deadLetter(attempt, e);
+            }
+        }
+    }
+
+    private void deadLetter(Attempt attempt, Exception cause) {
+        try {
+            log.error("Order event handler {} gave up on sale {} after {} attempts", attempt.handler,
+                    attempt.saleId, attempt.number, cause);
+            String message = cause.toString();
+            transactionTemplate.executeWithoutResult(status -> {
+                // The outbox entry becomes the letter; nothing to record if another run completed it
+                if (attempt.outboxId != null && outboxRepository.deleteEntry(attempt.outboxId) == 0) {
+                    return;
+                }
+                // A failed replay updates its letter and releases it for the next replay
+                OrderEventDeadLetter letter = attempt.deadLetterId != null
+                        ? deadLetterRepository.findById(attempt.deadLetterId).orElse(null)
+                        : null;
+                if (letter == null) {
+                    letter = new OrderEventDeadLetter();
+                    letter.setHandler(attempt.handler);
+                    letter.setSaleId(attempt.saleId);
+                }
+                letter.setAttempts(letter.getAttempts() + attempt.number);
+                letter.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+                letter.setReplayingSince(null);
+                deadLetterRepository.save(letter);
+            });
+        } catch (RuntimeException e) {
+            log.error("Could not record dead letter for handler {} and sale {}", attempt.handler, attempt.saleId, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Dispatches up to one batch of dead letters again, oldest first. Each
+     * letter is marked as replaying and deleted in the same transaction as
+     * the handler once it succeeds; if the handler gives up again the letter
+     * is kept with the new attempts added. A letter already being replayed is
+     * skipped unless its replay has been running for longer than
+     * REPLAY_STALE_AFTER (its process died). Returns how many were replayed.
+     */
+    public int replayDeadLetters() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(REPLAY_STALE_AFTER);
+        int replayed = 0;
+        for (OrderEventDeadLetter letter : deadLetterRepository.findReplayable(staleBefore,
+                PageRequest.of(0, REPLAY_BATCH))) {
+            Integer claimed = transactionTemplate.execute(status -> deadLetterRepository.claimForReplay(
+                    letter.getId(), now, staleBefore));
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            submit(new Attempt(letter.getHandler(), letter.getSaleId(), 1, null, letter.getId()));
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * Dispatches again, oldest first, up to one batch of outbox entries whose
+     * process took them more than recover-after-ms ago and never completed
+     * them. Each entry is claimed first, so of several instances only one
+     * dispatches it. Returns how many were dispatched.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.events.recover-ms:60000}")
+    public int recoverOutbox() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(Duration.ofMillis(recoverAfterMs));
+        int recovered = 0;
+        for (OrderEventOutboxEntry entry : outboxRepository.findByClaimedAtBeforeOrderByIdAsc(staleBefore,
+                PageRequest.of(0, REPLAY_BATCH))) {
+            Integer claimed = transactionTemplate.execute(status -> outboxRepository.claim(entry.getId(), now,
+                    staleBefore));
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            submit(new Attempt(entry.getHandler(), entry.getSaleId(), 1, entry.getId(), null));
+            recovered++;
+        }
+        if (recovered > 0) {
+            log.info("Recovered {} unfinished order event handler runs", recovered);
+        }
+        return recovered;
+    }
+
+    public long pendingCount() {
+        return outboxRepository.count();
+    }
+
+    public long deadLetterCount() {
+        return deadLetterRepository.count();
+    }
+
+    /**
+     * Waits until every dispatched handler has finished or been dead-lettered.
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (inFlight.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            // Their outbox entries are kept and recovered after the restart
+            log.warn("Order event handlers still running at shutdown");
+        }
+        // Waiting retries of outbox entries are recovered the same way; a replay
+        // would hold its letter until it goes stale, so it is released now
+        List<Attempt> waiting = new ArrayList<>(pendingRetries);
+        pendingRetries.clear();
+        for (Attempt attempt : waiting) {
+            if (attempt.deadLetterId != null) {
+                deadLetter(attempt, new IllegalStateException("Retry pending at shutdown"));
+            }
+        }
+    }
+
+    private static final class Attempt {
+        private final String handler;
+        private final Long saleId;
+        private final int number;
+        // Set for a dispatched or recovered run
+        private final Long outboxId;
+        // Set when replaying a dead letter
+        private final Long deadLetterId;
+
+        Attempt(String handler, Long saleId, int number, Long outboxId, Long deadLetterId) {
+            this.handler = handler;
+            this.saleId = saleId;
+            this.number = number;
+            this.outboxId = outboxId;
+            this.deadLetterId = deadLetterId;
+        }
+    }
+}
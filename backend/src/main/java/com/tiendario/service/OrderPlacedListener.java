@@ -0,0 +1,100 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Notification;
+import com.tiendario.domain.OrderPlacedEvent;
+import com.tiendario.domain.Sale;
+import com.tiendario.domain.SaleItem;
+import com.tiendario.repository.NotificationRepository;
+import com.tiendario.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Side effects of a placed order, each recorded with OrderEventDispatcher in
+ * the order's transaction and run once it commits, so the buyer's request
+ * only writes stock, the sale and the outbox entries. Each handler runs, is
+ * retried and is dead-lettered on its own.
+ */
+@Component
+public class OrderPlacedListener {
+
+    public static final String SELLER_NOTIFICATION = "seller-notification";
+    public static final String LOYALTY_ACCRUAL = "loyalty-accrual";
+    public static final String SEARCH_REINDEX = "search-reindex";
+
+    @Autowired
+    private OrderEventDispatcher dispatcher;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private LoyaltyService loyaltyService;
+
+    @Autowired
+    private ProductIndexService productIndexService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @PostConstruct
+    public void init() {
+        dispatcher.register(SELLER_NOTIFICATION, this::notifySeller);
+        dispatcher.register(LOYALTY_ACCRUAL, this::accrueLoyalty);
+        dispatcher.register(SEARCH_REINDEX, this::reindexProducts);
+    }
+
+    @EventListener
+    public void onOrderPlacedNotify(OrderPlacedEvent event) {
+        dispatcher.dispatch(SELLER_NOTIFICATION, event.getSaleId());
+    }
+
+    @EventListener
+    public void onOrderPlacedAccrue(OrderPlacedEvent event) {
+        dispatcher.dispatch(LOYALTY_ACCRUAL, event.getSaleId());
+    }
+
+    @EventListener
+    public void onOrderPlacedReindex(OrderPlacedEvent event) {
+        dispatcher.dispatch(SEARCH_REINDEX, event.getSaleId());
+    }
+
+    private void notifySeller(Sale sale) {
+        String customerName = sale.getCustomer() != null ? sale.getCustomer().getName() : null;
+        Notification notification = new Notification();
+        notification.setCompany(sale.getCompany());
+        notification.setTitle("¡Nueva Venta!");
+        notification.setMessage("Has recibido un pedido de " + customerName + " por $" + sale.getTotalAmount());
+        notification.setCreatedAt(LocalDateTime.now());
+        notification.setReadStatus(false);
+        notificationRepository.save(notification);
+    }
+
+    // Loyalty Points (1 point per $1), appended to the ledger
+    private void accrueLoyalty(Sale sale) {
+        if (sale.getCustomer() != null) {
+            loyaltyService.earn(sale.getCustomer().getId(), sale.getId(), sale.getTotalAmount().intValue());
+        }
+    }
+
+    // The stock decrement is a bulk UPDATE that entity listeners never see,
+    // so the stock held by the search index is refreshed here
+    private void reindexProducts(Sale sale) {
+        // Ids come from the item proxies; the products themselves are loaded in one query
+        List<Long> productIds = new ArrayList<>();
+        for (SaleItem item : sale.getItems()) {
+            if (item.getProduct() != null) {
+                productIds.add(item.getProduct().getId());
+            }
+        }
+        if (!productIds.isEmpty()) {
+            productRepository.findAllById(productIds).forEach(productIndexService::indexProduct);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.GlobalConfig;
+import com.tiendario.domain.SubscriptionStatus;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.GlobalConfigRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import com.tiendario.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Platform-wide metrics for the super admin dashboard, computed with COUNT
+ * and SUM queries only. A scheduled job keeps a snapshot that the endpoint
+ * serves; callers that need exact numbers ask for a live recompute.
+ */
+@Service
+public class PlatformStatsService {
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private GlobalConfigRepository configRepository;
+
+    private volatile Map<String, Object> snapshot;
+
+    public Map<String, Object> getStats(boolean live) {
+        Map<String, Object> current = snapshot;
+        if (live || current == null) {
+            return refresh();
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${app.superadmin.stats-refresh-ms:300000}")
+    @Transactional(readOnly = true)
+    public Map<String, Object> refresh() {
+        Map<String, Object> stats = new HashMap<>();
+
+        // 1. Total Tenants
+        stats.put("totalCompanies", companyRepository.count());
+
+        // 2. Total Users
+        stats.put("totalUsers", userRepository.count());
+
+        // 3. Subscription Breakdown
+        Map<SubscriptionStatus, Long> companiesByStatus = new EnumMap<>(SubscriptionStatus.class);
+        for (CompanyRepository.StatusCount row : companyRepository.countBySubscriptionStatus()) {
+            if (row.getStatus() != null) {
+                companiesByStatus.put(row.getStatus(), row.getCompanies());
+            }
+        }
+        long paidPlanCount = companiesByStatus.getOrDefault(SubscriptionStatus.PAID, 0L);
+        stats.put("freePlanCount", companiesByStatus.getOrDefault(SubscriptionStatus.FREE, 0L));
+        stats.put("paidPlanCount", paidPlanCount);
+
+        // 4. Global Revenue (Sales) - GMV (Gross Merchandise Value) of the platform
+        SaleRepository.PlatformTotals totals = saleRepository.summarizePlatform();
+        BigDecimal globalGmv = totals.getGmv() != null ? totals.getGmv() : BigDecimal.ZERO;
+        stats.put("globalGmv", globalGmv);
+
+        // 5. Total Products in Marketplace
+        stats.put("totalProducts", productRepository.count());
+
+        // 6. MRR Estimation (Monthly Recurring Revenue)
+        GlobalConfig config = configRepository.findFirstByOrderByIdAsc().orElse(new GlobalConfig());
+        stats.put("mrr", config.getPremiumPlanMonthlyPrice().multiply(BigDecimal.valueOf(paidPlanCount)));
+
+        // 7. Active Shops (Last 30 days based on sales)
+        Long activeShops = saleRepository.countActiveCompaniesSince(LocalDateTime.now().minusDays(30));
+        stats.put("activeShops", activeShops != null ? activeShops : 0);
+
+        // 8. Total Global Orders
+        long totalOrders = totals.getOrders();
+        stats.put("totalOrders", totalOrders);
+
+        // 9. Average Order Value (Global AOV)
+        stats.put("globalAov", totalOrders > 0
+                ? globalGmv.divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO);
+
+        stats.put("computedAt", LocalDateTime.now());
+        Map<String, Object> result = Collections.unmodifiableMap(stats);
+        snapshot = result;
+        return result;
+    }
+}
@@ -0,0 +1,500 @@
+package com.tiendario.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.CatalogProduct;
+import com.tiendario.domain.Company;
+import com.tiendario.domain.Product;
+import com.tiendario.payload.response.ProductImportResult;
+import com.tiendario.repository.CatalogProductRepository;
+import com.tiendario.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import for onboarding, from CSV (header row, one product per
+ * line) or NDJSON (one product object per line). The file is parsed as it
+ * is read and written in chunks, each in its own transaction: one query for
+ * the SKUs the company already has, one for matching catalog entries, then
+ * products, new catalog entries and search queue rows go out in JDBC
+ * batches. Rows that cannot be imported are reported with their row number
+ * and reason; the rest are imported. A chunk that fails to commit is retried
+ * row by row, so one bad row only fails itself.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    // Text columns are VARCHAR(255); prices and costs are NUMERIC(19,2)
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final int MAX_INTEGER_DIGITS = 17;
+    private static final int MAX_CAUSE_LENGTH = 300;
+
+    private static final String FREE_PLAN_LIMIT_MESSAGE =
+            "Límite alcanzado: El plan GRATUITO solo permite hasta 10 productos. ¡Mejora a PREMIUM para productos ilimitados!";
+
+    // Columns / JSON fields; CSV headers also match case-insensitively without '_' or spaces (cost_price)
+    private static final String[] FIELDS = { "sku", "name", "description", "price", "costPrice", "stock",
+            "minStock", "category", "variant", "imageUrl" };
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CatalogProductRepository catalogProductRepository;
+
+    @Autowired
+    private ProductIndexService productIndexService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.products.import.chunk-size:500}")
+    private int chunkSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private static class Row {
+        final long number;
+        final Product product;
+
+        Row(long number, Product product) {
+            this.number = number;
+            this.product = product;
+        }
+    }
+
+    /**
+     * Imports the products into the company. maxNewProducts caps how many may
+     * be created (the FREE plan limit), null for no cap. Throws
+     * IllegalArgumentException when the file itself is unusable, e.g. a CSV
+     * without sku or name columns.
+     */
+    public ProductImportResult importProducts(Company company, InputStream in, ExportService.Format format,
+            Long maxNewProducts) throws IOException {
+        ProductImportResult result = new ProductImportResult();
+        // SKUs seen earlier in this file; duplicates within the file are reported, not imported twice
+        Set<String> seenSkus = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        long remaining = maxNewProducts != null ? maxNewProducts : Long.MAX_VALUE;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            RecordSource source = format == ExportService.Format.NDJSON
+                    ? new JsonLines(reader, objectMapper)
+                    : new CsvRecords(reader);
+            long rowNumber = 0;
+            Map<String, String> record;
+            while ((record = nextRecord(source, ++rowNumber, result)) != null) {
+                if (record.isEmpty()) {
+                    continue;
+                }
+                Product product;
+                try {
+                    product = toProduct(record);
+                } catch (IllegalArgumentException e) {
+                    reject(result, rowNumber, record.get("sku"), e.getMessage());
+                    continue;
+                }
+                if (!seenSkus.add(product.getSku())) {
+                    reject(result, rowNumber, product.getSku(), "Error: SKU appears more than once in the file.");
+                    continue;
+                }
+                product.setCompany(company);
+                chunk.add(new Row(rowNumber, product));
+                if (chunk.size() == chunkSize) {
+                    remaining -= writeChunk(company.getId(), chunk, result, remaining);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(company.getId(), chunk, result, remaining);
+        }
+        return result;
+    }
+
+    // The next record; an empty map for a row that was rejected or blank, null at the end
+    private static Map<String, String> nextRecord(RecordSource source, long rowNumber, ProductImportResult result)
+            throws IOException {
+        try {
+            return source.next();
+        } catch (MalformedRowException e) {
+            reject(result, rowNumber, null, e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    // Writes one chunk in its own transaction; returns how many products were created
+    private int writeChunk(Long companyId, List<Row> chunk, ProductImportResult result, long remaining) {
+        try {
+            return writeRows(companyId, chunk, result, remaining);
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                reject(result, chunk.get(0).number, chunk.get(0).product.getSku(), describe(e));
+                return 0;
+            }
+            // Nothing of the chunk was written; retry each row alone so only the bad ones fail, with their cause
+            log.warn("Product import chunk of {} rows failed, retrying row by row: {}", chunk.size(), e.getMessage());
+            int created = 0;
+            for (Row row : chunk) {
+                try {
+                    created += writeRows(companyId, Collections.singletonList(row), result, remaining - created);
+                } catch (RuntimeException rowError) {
+                    reject(result, row.number, row.product.getSku(), describe(rowError));
+                }
+            }
+            return created;
+        }
+    }
+
+    // Rejects and the imported count are recorded only once the transaction has committed
+    private int writeRows(Long companyId, List<Row> rows, ProductImportResult result, long remaining) {
+        List<Row> accepted = new ArrayList<>();
+        Map<Row, String> rejected = new LinkedHashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<String> skus = rows.stream().map(row -> row.product.getSku())
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+                Set<String> existing = new HashSet<>(productRepository.findExistingSkus(companyId, skus));
+
+                for (Row row : rows) {
+                    if (existing.contains(row.product.getSku())) {
+                        rejected.put(row, "Error: SKU already exists in your inventory.");
+                    } else if (accepted.size() < remaining) {
+                        accepted.add(row);
+                    } else {
+                        rejected.put(row, FREE_PLAN_LIMIT_MESSAGE);
+                    }
+                }
+
+                if (!accepted.isEmpty()) {
+                    List<Product> products = accepted.stream().map(row -> row.product).collect(Collectors.toList());
+                    linkCatalog(products);
+                    productRepository.saveAll(products);
+                    productIndexService.indexProducts(products);
+                }
+                entityManager.flush();
+                // The request keeps one EntityManager open (open-in-view); drop this chunk's entities
+                entityManager.clear();
+            });
+        } catch (RuntimeException e) {
+            // Rolled back: forget the ids and catalog links handed out inside the transaction
+            entityManager.clear();
+            for (Row row : rows) {
+                row.product.setId(null);
+                row.product.setCatalogProduct(null);
+            }
+            throw e;
+        }
+        rejected.forEach((row, message) -> reject(result, row.number, row.product.getSku(), message));
+        result.setImported(result.getImported() + accepted.size());
+        return accepted.size();
+    }
+
+    private static String describe(RuntimeException e) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        if (e instanceof DataIntegrityViolationException && message.toLowerCase(Locale.ROOT).contains("sku")) {
+            // Created by someone else since this row was checked
+            return "Error: SKU already exists in your inventory.";
+        }
+        // Driver messages can carry the whole statement after the first line
+        int lineEnd = message.indexOf('\n');
+        if (lineEnd > 0) {
+            message = message.substring(0, lineEnd);
+        }
+        if (message.length() > MAX_CAUSE_LENGTH) {
+            message = message.substring(0, MAX_CAUSE_LENGTH) + "...";
+        }
+        return "Error: could not save this row: " + message;
+    }
+
+    // Links products to shared catalog entries by SKU, creating the missing ones, with one lookup
+    private void linkCatalog(List<Product> products) {
+        Map<String, CatalogProduct> catalog = catalogProductRepository
+                .findBySkuIn(products.stream().map(Product::getSku).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(CatalogProduct::getSku, Function.identity()));
+        List<CatalogProduct> created = new ArrayList<>();
+        for (Product product : products) {
+            CatalogProduct entry = catalog.get(product.getSku());
+            if (entry == null) {
+                entry = new CatalogProduct();
+                entry.setSku(product.getSku());
+                entry.setName(product.getName());
+                entry.setDescription(product.getDescription());
+                entry.setImageUrl(product.getImageUrl());
+                catalog.put(product.getSku(), entry);
+                created.add(entry);
+            }
+            product.setCatalogProduct(entry);
+        }
+        catalogProductRepository.saveAll(created);
+    }
+
+    private static void reject(ProductImportResult result, long row, String sku, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ProductImportResult.RowError(row, sku, message));
+        }
+    }
+
+    private static Product toProduct(Map<String, String> record) {
+        String sku = text(record, "sku");
+        String name = text(record, "name");
+        if (sku == null) {
+            throw new IllegalArgumentException("Error: SKU is required.");
+        }
+        if (name == null) {
+            throw new IllegalArgumentException("Error: name is required.");
+        }
+        Product product = new Product();
+        product.setSku(sku);
+        product.setName(name);
+        product.setDescription(text(record, "description"));
+        product.setPrice(decimal(record, "price"));
+        if (product.getPrice() == null) {
+            throw new IllegalArgumentException("Error: price is required.");
+        }
+        product.setCostPrice(decimal(record, "costPrice"));
+        Integer stock = integer(record, "stock");
+        product.setStock(stock != null ? stock : 0);
+        product.setMinStock(integer(record, "minStock"));
+        product.setCategory(text(record, "category"));
+        product.setVariant(text(record, "variant"));
+        product.setImageUrl(text(record, "imageUrl"));
+        return product;
+    }
+
+    private static String text(Map<String, String> record, String field) {
+        String value = record.get(field);
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Error: " + field + " is longer than " + MAX_TEXT_LENGTH
+                    + " characters.");
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static BigDecimal decimal(Map<String, String> record, String field) {
+        String value = text(record, field);
+        if (value == null) {
+            return null;
+        }
+        try {
+            BigDecimal number = new BigDecimal(value);
+            if (number.signum() < 0) {
+                throw new IllegalArgumentException("Error: " + field + " cannot be negative.");
+            }
+            if (number.precision() - number.scale() > MAX_INTEGER_DIGITS) {
+                throw new IllegalArgumentException("Error: " + field + " is too large: " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: " + field + " is not a number: " + value);
+        }
+    }
+
+    private static Integer integer(Map<String, String> record, String field) {
+        String value = text(record, field);
+        if (value == null) {
+            return null;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if (number < 0) {
+                throw new IllegalArgumentException("Error: " + field + " cannot be negative.");
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error: " + field + " is not a whole number: " + value);
+        }
+    }
+
+    private static class MalformedRowException extends IOException {
+        MalformedRowException(String message) {
+            super(message);
+        }
+    }
+
+    private interface RecordSource {
+        // Field name to raw value; empty for a blank line, null at end of input
+        Map<String, String> next() throws IOException;
+    }
+
+    private static class JsonLines implements RecordSource {
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+
+        JsonLines(BufferedReader reader, ObjectMapper objectMapper) {
+            this.reader = reader;
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            Map<String, String> record = new HashMap<>();
+            if (line.trim().isEmpty()) {
+                return record;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                throw new MalformedRowException("Error: invalid JSON.");
+            }
+            if (!node.isObject()) {
+                throw new MalformedRowException("Error: each line must be a JSON object.");
+            }
+            for (String field : FIELDS) {
+                JsonNode value = node.get(field);
+                if (value != null && !value.isNull()) {
+                    record.put(field, value.asText());
+                }
+            }
+            return record;
+        }
+    }
+
+    // RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks
+    private static class CsvRecords implements RecordSource {
+        private final Reader reader;
+        private final String[] columns;
+
+        CsvRecords(Reader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("Error: the file is empty.");
+            }
+            Map<String, String> known = new HashMap<>();
+            for (String field : FIELDS) {
+                known.put(field.toLowerCase(Locale.ROOT), field);
+            }
+            columns = new String[header.size()];
+            for (int i = 0; i < header.size(); i++) {
+                String key = header.get(i).replace("\uFEFF", "").replace("_", "").replace(" ", "")
+                        .toLowerCase(Locale.ROOT);
+                columns[i] = known.get(key);
+            }
+            Set<String> present = new HashSet<>();
+            for (String column : columns) {
+                present.add(column);
+            }
+            if (!present.contains("sku") || !present.contains("name")) {
+                throw new IllegalArgumentException("Error: the CSV header must include sku and name columns.");
+            }
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            List<String> values = readRecord();
+            if (values == null) {
+                return null;
+            }
+            Map<String, String> record = new HashMap<>();
+            if (values.size() == 1 && values.get(0).trim().isEmpty()) {
+                return record;
+            }
+            if (values.size() > columns.length) {
+                throw new MalformedRowException("Error: row has more values than the header.");
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (columns[i] != null) {
+                    record.put(columns[i], values.get(i));
+                }
+            }
+            return record;
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new MalformedRowException("Error: unterminated quoted value.");
+                    }
+                    if (c == '"') {
+                        c = reader.read();
+                        if (c == '"') {
+                            value.append('"');
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"' && value.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    values.add(value.toString());
+                    return values;
+                } else if (c != '\r') {
+                    // CR is only part of a CRLF line break
+                    value.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.IndexOutboxEntry;
+import com.tiendario.domain.Product;
+import com.tiendario.repository.IndexOutboxRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.search.ProductSearchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the search_index_outbox table into Elasticsearch bulk requests.
+ * Failed batches stay in the table and are retried with exponential backoff,
+ * so an Elasticsearch outage delays index updates but never loses them.
+ * Indexing is idempotent, so a batch sent twice is harmless.
+ */
+@Component
+@Profile("elasticsearch")
+public class ProductIndexOutboxWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductIndexOutboxWorker.class);
+
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    private final IndexOutboxRepository outboxRepository;
+    private final ProductRepository productRepository;
+    private final ProductSearchRepository productSearchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int batchSize;
+
+    // Draining pauses while a full reindex runs, so no update lands only in the index being replaced
+    @Autowired(required = false)
+    private ProductReindexService reindexService;
+
+    public ProductIndexOutboxWorker(IndexOutboxRepository outboxRepository, ProductRepository productRepository,
+            ProductSearchRepository productSearchRepository, PlatformTransactionManager transactionManager,
+            @Value("${app.search.outbox.batch-size:200}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.productRepository = productRepository;
+        this.productSearchRepository = productSearchRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.outbox.poll-ms:2000}")
+    public void drain() {
+        int processed;
+        do {
+            // Checked before every batch: a reindex may start while a long backlog drains
+            if (reindexService != null && reindexService.isRunning()) {
+                return;
+            }
+            processed = drainBatch();
+        } while (processed == batchSize);
+    }
+
+    /**
+     * Sends one batch of due entries; returns how many were indexed, or 0 when
+     * the batch failed and was rescheduled.
+     */
+    int drainBatch() {
+        List<IndexOutboxEntry> batch = outboxRepository.findByNextAttemptAtLessThanEqualOrderByIdAsc(
+                LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        // Several entries for the same product collapse into one document write
+        Set<Long> productIds = batch.stream()
+                .map(IndexOutboxEntry::getProductId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        try {
+            // Read-only transaction so lazy associations can be mapped into the document
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                List<Product> products = productRepository.findAllById(productIds);
+                if (!products.isEmpty()) {
+                    productSearchRepository.saveAll(products);
+                }
+                Set<Long> removed = new LinkedHashSet<>(productIds);
+                products.forEach(p -> removed.remove(p.getId()));
+                if (!removed.isEmpty()) {
+                    productSearchRepository.deleteAllById(removed);
+                }
+            });
+        } catch (Exception e) {
+            reschedule(batch, e);
+            return 0;
+        }
+
+        outboxRepository.deleteAllByIdInBatch(batch.stream().map(IndexOutboxEntry::getId)
+                .collect(Collectors.toList()));
+        return batch.size();
+    }
+
+    private void reschedule(List<IndexOutboxEntry> batch, Exception cause) {
+        log.warn("Search index batch of {} entries failed, will retry: {}", batch.size(), cause.getMessage());
+        String error = String.valueOf(cause.getMessage());
+        String lastError = error.length() > 1000 ? error.substring(0, 1000) : error;
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (IndexOutboxEntry entry : batch) {
+                entry.setAttempts(entry.getAttempts() + 1);
+                entry.setNextAttemptAt(now.plus(backoff(entry.getAttempts())));
+                entry.setLastError(lastError);
+            }
+            outboxRepository.saveAll(batch);
+        });
+    }
+
+    static Duration backoff(int attempts) {
+        // 5s, 10s, 20s, ... capped at 10 minutes
+        long factor = 1L << Math.min(attempts - 1, 16);
+        Duration delay = BASE_BACKOFF.multipliedBy(factor);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+}
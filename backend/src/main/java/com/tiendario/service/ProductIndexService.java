@@ -1,48 +1,98 @@
 package com.tiendario.service;
 
+import com.tiendario.domain.IndexOutboxEntry;
 import com.tiendario.domain.Product;
+import com.tiendario.repository.IndexOutboxRepository;
 import com.tiendario.repository.search.ProductSearchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ProductIndexService {
 
+    private static final Logger log = LoggerFactory.getLogger(ProductIndexService.class);
+
     @Autowired(required = false)
     private ProductSearchRepository productSearchRepository;
 
+    @Autowired
+    private IndexOutboxRepository outboxRepository;
+
+    // Present when Elasticsearch is not deployed
+    @Autowired(required = false)
+    private EmbeddedSearchIndex embeddedSearchIndex;
+
+    /**
+     * Queues the product for indexing. Joins the caller's transaction, so the
+     * queue entry commits (or rolls back) together with the product change;
+     * ProductIndexOutboxWorker pushes it to Elasticsearch in the background.
+     * Without Elasticsearch the embedded index is updated after commit instead.
+     */
+    @Transactional
     public void indexProduct(Product product) {
+        enqueue(product.getId());
+        if (embeddedSearchIndex != null) {
+            embeddedSearchIndex.indexAfterCommit(product);
+        }
+    }
+
+    // Bulk variant of indexProduct: queue rows are inserted in JDBC batches
+    @Transactional
+    public void indexProducts(Collection<Product> products) {
         if (productSearchRepository != null) {
-            try {
-                productSearchRepository.save(product);
-            } catch (Exception e) {
-                // Elasticsearch might not be running, log but don't fail
-                System.err.println("Warning: Could not index product in Elasticsearch: " + e.getMessage());
+            List<IndexOutboxEntry> entries = new ArrayList<>();
+            for (Product product : products) {
+                IndexOutboxEntry entry = new IndexOutboxEntry();
+                entry.setProductId(product.getId());
+                entries.add(entry);
             }
+            outboxRepository.saveAll(entries);
+        }
+        if (embeddedSearchIndex != null) {
+            embeddedSearchIndex.indexAfterCommit(products);
         }
     }
 
+    @Transactional
     public void deleteProductIndex(Long id) {
-        if (productSearchRepository != null) {
-            try {
-                productSearchRepository.deleteById(id);
-            } catch (Exception e) {
-                System.err.println("Warning: Could not delete product from Elasticsearch: " + e.getMessage());
-            }
+        enqueue(id);
+        if (embeddedSearchIndex != null) {
+            embeddedSearchIndex.removeAfterCommit(id);
         }
     }
 
-    public List<Product> searchProducts(String query) {
-        if (productSearchRepository != null) {
-            try {
-                return productSearchRepository.findByNameContainingOrDescriptionContaining(query, query);
-            } catch (Exception e) {
-                System.err.println("Warning: Elasticsearch search failed: " + e.getMessage());
-                return List.of();
-            }
+    private void enqueue(Long productId) {
+        if (productSearchRepository == null || productId == null) {
+            return;
         }
-        return List.of();
+        IndexOutboxEntry entry = new IndexOutboxEntry();
+        entry.setProductId(productId);
+        outboxRepository.save(entry);
+    }
+
+    public boolean isEnabled() {
+        return productSearchRepository != null;
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Object> getQueueStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", isEnabled());
+        status.put("queueDepth", outboxRepository.count());
+        LocalDateTime oldest = outboxRepository.findFirstByOrderByIdAsc()
+                .map(IndexOutboxEntry::getCreatedAt)
+                .orElse(null);
+        status.put("oldestPendingAt", oldest);
+        return status;
     }
 }
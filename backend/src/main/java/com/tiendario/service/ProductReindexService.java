@@ -0,0 +1,238 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Product;
+import com.tiendario.domain.ReindexJob;
+import com.tiendario.domain.ReindexStatus;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.ReindexJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.index.AliasData;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the products search index from Postgres. Products are streamed in
+ * id order into a fresh versioned index (products_v...), checkpointing after
+ * every chunk so a failed or interrupted job resumes where it stopped. When
+ * the scan finishes the "products" alias is moved to the new index in one
+ * atomic alias update and the previous indices are dropped.
+ */
+@Service
+@Profile("elasticsearch")
+public class ProductReindexService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductReindexService.class);
+
+    static final String ALIAS = "products";
+    private static final int CHUNK_SIZE = 500;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ProductRepository productRepository;
+    private final ReindexJobRepository jobRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "product-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ProductReindexService(ElasticsearchOperations elasticsearchOperations,
+            ProductRepository productRepository, ReindexJobRepository jobRepository,
+            PlatformTransactionManager transactionManager) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.productRepository = productRepository;
+        this.jobRepository = jobRepository;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Starts a new reindex, or resumes the latest one if it did not complete.
+     */
+    public Map<String, Object> start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A reindex is already running");
+        }
+        try {
+            ReindexJob job = jobRepository.findFirstByOrderByIdDesc()
+                    .filter(j -> j.getStatus() != ReindexStatus.COMPLETED)
+                    .orElseGet(this::newJob);
+            job.setStatus(ReindexStatus.RUNNING);
+            job.setResumedAt(LocalDateTime.now());
+            job.setIndexedAtResume(job.getIndexedCount());
+            job.setTotalCount(productRepository.count());
+            job.setError(null);
+            ReindexJob saved = jobRepository.save(job);
+
+            executor.submit(() -> run(saved));
+            return describe(saved);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Map<String, Object> getStatus() {
+        return jobRepository.findFirstByOrderByIdDesc()
+                .map(this::describe)
+                .orElseGet(() -> {
+                    Map<String, Object> status = new HashMap<>();
+                    status.put("status", "NONE");
+                    return status;
+                });
+    }
+
+    private ReindexJob newJob() {
+        ReindexJob job = new ReindexJob();
+        job.setIndexName(ALIAS + "_v" + System.currentTimeMillis());
+        job.setStartedAt(LocalDateTime.now());
+        return job;
+    }
+
+    private void run(ReindexJob job) {
+        try {
+            IndexCoordinates target = IndexCoordinates.of(job.getIndexName());
+            IndexOperations targetOps = elasticsearchOperations.indexOps(target);
+            if (!targetOps.exists()) {
+                targetOps.create(targetOps.createSettings(Product.class), targetOps.createMapping(Product.class));
+            }
+
+            long lastId = job.getLastProductId() != null ? job.getLastProductId() : 0L;
+            while (true) {
+                final long afterId = lastId;
+                // Read-only transaction so lazy associations can be mapped into the documents
+                List<Product> chunk = readOnlyTransactionTemplate.execute(status -> {
+                    List<Product> products = productRepository.findByIdGreaterThanOrderByIdAsc(afterId,
+                            PageRequest.of(0, CHUNK_SIZE));
+                    if (!products.isEmpty()) {
+                        elasticsearchOperations.save(products, target);
+                    }
+                    return products;
+                });
+                if (chunk == null || chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getId();
+
+                // Checkpoint: a resumed job continues after this id
+                job.setLastProductId(lastId);
+                job.setIndexedCount(job.getIndexedCount() + chunk.size());
+                job = jobRepository.save(job);
+            }
+
+            targetOps.refresh();
+            swapAlias(job.getIndexName());
+
+            job.setStatus(ReindexStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            log.info("Reindex into {} completed: {} products", job.getIndexName(), job.getIndexedCount());
+        } catch (Exception e) {
+            log.error("Reindex into {} failed after product {}: {}", job.getIndexName(), job.getLastProductId(),
+                    e.getMessage());
+            String error = String.valueOf(e.getMessage());
+            job.setStatus(ReindexStatus.FAILED);
+            job.setError(error.length() > 1000 ? error.substring(0, 1000) : error);
+            jobRepository.save(job);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void swapAlias(String newIndex) {
+        IndexOperations aliasOps = elasticsearchOperations.indexOps(IndexCoordinates.of(ALIAS));
+        List<String> previousIndices = new ArrayList<>();
+        List<AliasAction> actions = new ArrayList<>();
+
+        if (aliasOps.exists()) {
+            Map<String, Set<AliasData>> current = aliasOps.getAliasesForIndex(ALIAS);
+            for (String index : current.keySet()) {
+                if (index.equals(ALIAS)) {
+                    // Legacy concrete index auto-created by the repository: replace it by the alias
+                    actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder()
+                            .withIndices(ALIAS)
+                            .build()));
+                } else if (!index.equals(newIndex)) {
+                    actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                            .withIndices(index)
+                            .withAliases(ALIAS)
+                            .build()));
+                    previousIndices.add(index);
+                }
+            }
+        }
+        actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(newIndex)
+                .withAliases(ALIAS)
+                .build()));
+
+        aliasOps.alias(new AliasActions(actions.toArray(new AliasAction[0])));
+
+        for (String index : previousIndices) {
+            elasticsearchOperations.indexOps(IndexCoordinates.of(index)).delete();
+        }
+    }
+
+    private Map<String, Object> describe(ReindexJob job) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("jobId", job.getId());
+        status.put("indexName", job.getIndexName());
+        status.put("status", job.getStatus());
+        status.put("active", running.get());
+        status.put("indexedCount", job.getIndexedCount());
+        status.put("totalCount", job.getTotalCount());
+        status.put("lastProductId", job.getLastProductId());
+        status.put("startedAt", job.getStartedAt());
+        status.put("finishedAt", job.getFinishedAt());
+        status.put("error", job.getError());
+
+        double progress = job.getTotalCount() > 0
+                ? Math.min(100.0, job.getIndexedCount() * 100.0 / job.getTotalCount())
+                : (job.getStatus() == ReindexStatus.COMPLETED ? 100.0 : 0.0);
+        status.put("progressPercent", Math.round(progress * 10) / 10.0);
+
+        double docsPerSecond = 0;
+        if (job.getResumedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            long millis = Duration.between(job.getResumedAt(), end).toMillis();
+            if (millis > 0) {
+                docsPerSecond = (job.getIndexedCount() - job.getIndexedAtResume()) * 1000.0 / millis;
+            }
+        }
+        status.put("docsPerSecond", Math.round(docsPerSecond * 10) / 10.0);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
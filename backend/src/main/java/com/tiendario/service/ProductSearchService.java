@@ -0,0 +1,343 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.Product;
+import com.tiendario.payload.request.CatalogFilter;
+import com.tiendario.payload.response.FacetBucketDTO;
+import com.tiendario.repository.ProductRepository;
+import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.InnerHitBuilder;
+import org.elasticsearch.index.query.Operator;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.range.Range;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.Cardinality;
+import org.elasticsearch.search.collapse.CollapseBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.clients.elasticsearch7.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search for the public catalog. With Elasticsearch the query is a
+ * fuzzy multi_match (name boosted over description, Spanish analyzer with
+ * accent folding) collapsed on normalizedName, so each product appears once
+ * with its cheapest matching offer. Without Elasticsearch the in-process
+ * EmbeddedSearchIndex ranks the names and the marketplace listing supplies
+ * the best offers. If neither finds anything the query falls back to a LIKE
+ * match over the listing.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchService.class);
+
+    static final List<BigDecimal> PRICE_BOUNDS = List.of(new BigDecimal("10"), new BigDecimal("50"),
+            new BigDecimal("100"));
+    private static final int MAX_CATEGORY_FACETS = 50;
+
+    @Autowired(required = false)
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired(required = false)
+    private EmbeddedSearchIndex embeddedSearchIndex;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MarketplaceListingService marketplaceListingService;
+
+    public static class ResultPage {
+        private final List<Product> products;
+        private final String nextCursor;
+
+        public ResultPage(List<Product> products, String nextCursor) {
+            this.products = products;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * One page of best offers for a query. Index results are ordered by
+     * relevance and paged by offset; the database fallback pages by normalized
+     * name. The cursor is opaque and records which of the two it continues, so
+     * a page is never read with the other's position. An index answer, empty
+     * or not, is final: the listing's LIKE match only serves when no index is
+     * available or Elasticsearch failed. Throws IllegalArgumentException for a
+     * cursor that is malformed or can no longer be followed (an offset cursor
+     * once no index is available, or an Elasticsearch cursor with another limit).
+     */
+    @Transactional(readOnly = true)
+    public ResultPage search(String query, CatalogFilter filter, String after, int limit) {
+        SearchCursor cursor = SearchCursor.parse(after);
+        if (cursor == null || cursor.name == null) {
+            int offset = cursor != null ? cursor.offset : 0;
+            if (elasticsearchOperations != null) {
+                // Elasticsearch pages by page number, so the offset only lines up with the same limit
+                if (cursor != null && cursor.limit != limit) {
+                    throw new IllegalArgumentException("Search cursor was issued for a different page size");
+                }
+                try {
+                    return searchIndex(query, filter, offset, limit);
+                } catch (Exception e) {
+                    if (cursor != null) {
+                        throw new IllegalArgumentException("Search cursor can no longer be followed; start again");
+                    }
+                    log.warn("Elasticsearch search failed, using database: {}", e.getMessage());
+                }
+            } else if (embeddedSearchIndex != null && embeddedSearchIndex.isReady()) {
+                return searchEmbedded(query, filter, offset, limit);
+            } else if (cursor != null) {
+                throw new IllegalArgumentException("Search cursor can no longer be followed; start again");
+            }
+        }
+        ResultPage page = marketplaceListingService.findListings(cursor != null ? cursor.name : null, query,
+                filter, limit);
+        return new ResultPage(page.getProducts(), SearchCursor.ofName(page.getNextCursor()));
+    }
+
+    private ResultPage searchIndex(String query, CatalogFilter filter, int offset, int limit) {
+        BoolQueryBuilder bool = textQuery(query, filter.isInStock());
+        if (filter.getCategory() != null) {
+            bool.filter(QueryBuilders.termQuery("category", filter.getCategory()));
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            bool.filter(QueryBuilders.rangeQuery("price")
+                    .gte(filter.getMinPrice() != null ? filter.getMinPrice().doubleValue() : null)
+                    .lte(filter.getMaxPrice() != null ? filter.getMaxPrice().doubleValue() : null));
+        }
+
+        // One hit per product name; the inner hit is the cheapest offer that matched
+        NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
+                .withQuery(bool)
+                .withCollapseBuilder(new CollapseBuilder("normalizedName")
+                        .setInnerHits(new InnerHitBuilder("cheapest")
+                                .setSize(1)
+                                .addSort(SortBuilders.fieldSort("price").order(SortOrder.ASC))))
+                .withPageable(PageRequest.of(offset / limit, limit))
+                .build();
+        SearchHits<Product> hits = elasticsearchOperations.search(searchQuery, Product.class);
+
+        List<Long> offerIds = new ArrayList<>();
+        for (SearchHit<Product> hit : hits.getSearchHits()) {
+            SearchHits<?> cheapest = hit.getInnerHits("cheapest");
+            String id = cheapest != null && cheapest.hasSearchHits() ? cheapest.getSearchHit(0).getId() : hit.getId();
+            if (id != null) {
+                offerIds.add(Long.valueOf(id));
+            }
+        }
+
+        // Render from the database so prices, stock and sellers are current
+        Map<Long, Product> byId = productRepository.findAllById(offerIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Product> products = offerIds.stream()
+                .map(byId::get)
+                .filter(p -> p != null && (filter.getSubscriptionStatus() == null || (p.getCompany() != null
+                        && p.getCompany().getSubscriptionStatus() == filter.getSubscriptionStatus())))
+                .collect(Collectors.toList());
+
+        String nextCursor = hits.getSearchHits().size() == limit ? SearchCursor.ofOffset(offset + limit, limit) : null;
+        return new ResultPage(products, nextCursor);
+    }
+
+    private ResultPage searchEmbedded(String query, CatalogFilter filter, int offset, int limit) {
+        List<String> names = embeddedSearchIndex.search(query);
+        int position = Math.min(offset, names.size());
+        List<Product> products = new ArrayList<>();
+
+        // Walk the ranked names in page-sized batches until the filters leave a full page. The text
+        // already matched; a name stays when any of its offers passes the filters, shown with the cheapest
+        while (products.size() < limit && position < names.size()) {
+            List<String> batch = names.subList(position, Math.min(position + limit, names.size()));
+            Map<String, Product> offers = marketplaceListingService.bestOffers(batch, null, filter);
+            for (String name : batch) {
+                position++;
+                Product offer = offers.get(name);
+                if (offer != null) {
+                    products.add(offer);
+                    if (products.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return new ResultPage(products, position < names.size() ? SearchCursor.ofOffset(position, limit) : null);
+    }
+
+    /**
+     * Category and price range facets for a query, counting distinct products.
+     * The other catalog filters are not applied, so every option stays visible.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, List<FacetBucketDTO>> facets(String query, boolean inStock) {
+        if (elasticsearchOperations != null) {
+            try {
+                return facetsFromIndex(query, inStock);
+            } catch (Exception e) {
+                log.warn("Elasticsearch facets failed, using database: {}", e.getMessage());
+            }
+        }
+        return marketplaceListingService.countFacets(query, inStock, PRICE_BOUNDS);
+    }
+
+    private Map<String, List<FacetBucketDTO>> facetsFromIndex(String query, boolean inStock) {
+        RangeAggregationBuilder prices = AggregationBuilders.range("prices").field("price");
+        BigDecimal from = null;
+        for (int i = 0; i <= PRICE_BOUNDS.size(); i++) {
+            BigDecimal to = i < PRICE_BOUNDS.size() ? PRICE_BOUNDS.get(i) : null;
+            String key = MarketplaceListingService.rangeKey(from, to);
+            if (from == null) {
+                prices.addUnboundedTo(key, to.doubleValue());
+            } else if (to == null) {
+                prices.addUnboundedFrom(key, from.doubleValue());
+            } else {
+                prices.addRange(key, from.doubleValue(), to.doubleValue());
+            }
+            from = to;
+        }
+        prices.subAggregation(AggregationBuilders.cardinality("products").field("normalizedName"));
+
+        NativeSearchQuery searchQuery = new NativeSearchQueryBuilder()
+                .withQuery(textQuery(query, inStock))
+                .withAggregations(
+                        AggregationBuilders.terms("categories").field("category").size(MAX_CATEGORY_FACETS)
+                                .subAggregation(AggregationBuilders.cardinality("products").field("normalizedName")),
+                        prices)
+                .withPageable(PageRequest.of(0, 1))
+                .build();
+        SearchHits<Product> hits = elasticsearchOperations.search(searchQuery, Product.class);
+        Aggregations aggregations = ((ElasticsearchAggregations) hits.getAggregations()).aggregations();
+
+        List<FacetBucketDTO> categories = new ArrayList<>();
+        Terms terms = aggregations.get("categories");
+        for (Terms.Bucket bucket : terms.getBuckets()) {
+            Cardinality products = bucket.getAggregations().get("products");
+            categories.add(new FacetBucketDTO(bucket.getKeyAsString(), null, null, products.getValue()));
+        }
+
+        List<FacetBucketDTO> priceRanges = new ArrayList<>();
+        Range range = aggregations.get("prices");
+        for (Range.Bucket bucket : range.getBuckets()) {
+            Cardinality products = bucket.getAggregations().get("products");
+            priceRanges.add(new FacetBucketDTO(bucket.getKeyAsString(), toPrice(bucket.getFrom()),
+                    toPrice(bucket.getTo()), products.getValue()));
+        }
+
+        Map<String, List<FacetBucketDTO>> facets = new HashMap<>();
+        facets.put("categories", categories);
+        facets.put("priceRanges", priceRanges);
+        return facets;
+    }
+
+    private static BoolQueryBuilder textQuery(String query, boolean inStock) {
+        BoolQueryBuilder bool = QueryBuilders.boolQuery()
+                .must(QueryBuilders.multiMatchQuery(query)
+                        .field("name", 3.0f)
+                        .field("description")
+                        .fuzziness(Fuzziness.AUTO)
+                        .prefixLength(1)
+                        .operator(Operator.AND));
+        if (inStock) {
+            bool.filter(QueryBuilders.rangeQuery("stock").gt(0));
+        }
+        return bool;
+    }
+
+    /**
+     * Position in a search result list: an offset into the index results and
+     * the page size it was issued for ("o:<offset>:<limit>"), or the last
+     * normalized name of a database page ("n:<name>"), sent to clients
+     * base64url encoded.
+     */
+    private static final class SearchCursor {
+        private final int offset;
+        private final int limit;
+        private final String name;
+
+        private SearchCursor(int offset, int limit, String name) {
+            this.offset = offset;
+            this.limit = limit;
+            this.name = name;
+        }
+
+        static String ofOffset(int offset, int limit) {
+            return encode("o:" + offset + ":" + limit);
+        }
+
+        static String ofName(String name) {
+            return name != null ? encode("n:" + name) : null;
+        }
+
+        private static String encode(String value) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor parse(String cursor) {
+            if (cursor == null) {
+                return null;
+            }
+            String value;
+            try {
+                value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid search cursor");
+            }
+            if (value.startsWith("n:") && value.length() > 2) {
+                return new SearchCursor(0, 0, value.substring(2));
+            }
+            String[] parts = value.split(":");
+            if (parts.length == 3 && parts[0].equals("o")) {
+                try {
+                    int offset = Integer.parseInt(parts[1]);
+                    int limit = Integer.parseInt(parts[2]);
+                    if (offset >= 0 && limit > 0) {
+                        return new SearchCursor(offset, limit, null);
+                    }
+                } catch (NumberFormatException e) {
+                    // Reported below
+                }
+            }
+            throw new IllegalArgumentException("Invalid search cursor");
+        }
+    }
+
+    // Unbounded range ends come back as +/- infinity
+    private static BigDecimal toPrice(Object value) {
+        if (!(value instanceof Number) || Double.isInfinite(((Number) value).doubleValue())) {
+            return null;
+        }
+        return BigDecimal.valueOf(((Number) value).doubleValue());
+    }
+}
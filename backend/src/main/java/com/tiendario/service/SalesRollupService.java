@@ -0,0 +1,210 @@
+package com.tiendario.service;
+
+import com.tiendario.domain.DailySalesRollup;
+import com.tiendario.domain.Sale;
+import com.tiendario.domain.SaleItem;
+import com.tiendario.domain.SaleStatus;
+import com.tiendario.payload.response.TimeseriesPointDTO;
+import com.tiendario.repository.DailySalesRollupRepository;
+import com.tiendario.repository.SaleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps daily_sales_rollup in step with sales and serves time series from
+ * it. Sale creation and status changes adjust one or two rollup rows in the
+ * same transaction as the sale, so a rolled back sale never reaches the
+ * rollup.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesRollupService.class);
+
+    // Longest range served at daily granularity (about ten years)
+    static final int MAX_DAYS = 3700;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        LocalDate periodStart(LocalDate day) {
+            switch (this) {
+                case WEEK:
+                    return day.with(DayOfWeek.MONDAY);
+                case MONTH:
+                    return day.withDayOfMonth(1);
+                default:
+                    return day;
+            }
+        }
+
+        LocalDate next(LocalDate periodStart) {
+            switch (this) {
+                case WEEK:
+                    return periodStart.plusWeeks(1);
+                case MONTH:
+                    return periodStart.plusMonths(1);
+                default:
+                    return periodStart.plusDays(1);
+            }
+        }
+
+        public static Granularity parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Granularity must be day, week or month");
+            }
+        }
+    }
+
+    private final DailySalesRollupRepository rollupRepository;
+    private final SaleRepository saleRepository;
+    private final TransactionTemplate newTransactionTemplate;
+
+    @Autowired
+    public SalesRollupService(DailySalesRollupRepository rollupRepository, SaleRepository saleRepository,
+            PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.saleRepository = saleRepository;
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Adds a newly saved sale to its day and status.
+     */
+    @Transactional
+    public void recordSale(Sale sale) {
+        apply(sale, sale.getStatus(), 1);
+    }
+
+    /**
+     * Moves a sale from its previous status to its current one.
+     */
+    @Transactional
+    public void recordStatusChange(Sale sale, SaleStatus previous) {
+        if (previous == sale.getStatus()) {
+            return;
+        }
+        apply(sale, previous, -1);
+        apply(sale, sale.getStatus(), 1);
+    }
+
+    private void apply(Sale sale, SaleStatus status, int sign) {
+        if (sale.getCompany() == null || sale.getDate() == null || status == null) {
+            return;
+        }
+        Long companyId = sale.getCompany().getId();
+        LocalDate day = sale.getDate().toLocalDate();
+        BigDecimal revenue = sale.getTotalAmount() == null ? BigDecimal.ZERO : sale.getTotalAmount();
+        long units = 0;
+        if (sale.getItems() != null) {
+            for (SaleItem item : sale.getItems()) {
+                units += item.getQuantity() == null ? 0 : item.getQuantity();
+            }
+        }
+
+        if (rollupRepository.increment(companyId, day, status, revenue.multiply(BigDecimal.valueOf(sign)),
+                sign, units * sign) == 0) {
+            createRow(companyId, day, status);
+            rollupRepository.increment(companyId, day, status, revenue.multiply(BigDecimal.valueOf(sign)),
+                    sign, units * sign);
+        }
+    }
+
+    // Zero row committed on its own, so the increment above always has a row to
+    // update and concurrent first sales of the day cannot both insert
+    private void createRow(Long companyId, LocalDate day, SaleStatus status) {
+        try {
+            newTransactionTemplate.executeWithoutResult(tx -> {
+                DailySalesRollup row = new DailySalesRollup();
+                row.setCompanyId(companyId);
+                row.setDay(day);
+                row.setStatus(status);
+                rollupRepository.saveAndFlush(row);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another transaction created it first
+        }
+    }
+
+    /**
+     * Rebuilds every rollup row from the sales table. Runs in one transaction;
+     * sales committed while it runs are included by the rebuild itself.
+     */
+    @Transactional
+    public int backfill() {
+        return rebuild();
+    }
+
+    // First start after the rollup table was introduced: fill it from existing sales.
+    // The rebuild is a call on this object, past the transactional proxy, so the transaction is opened here.
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        newTransactionTemplate.executeWithoutResult(status -> {
+            if (rollupRepository.count() == 0 && saleRepository.count() > 0) {
+                rebuild();
+            }
+        });
+    }
+
+    private int rebuild() {
+        rollupRepository.deleteAllRows();
+        int rows = rollupRepository.insertFromSales();
+        log.info("Daily sales rollup rebuilt: {} rows", rows);
+        return rows;
+    }
+
+    /**
+     * Sales per period between from and to (inclusive), one point per period
+     * even when it had no sales. Reads only rollup rows.
+     */
+    @Transactional(readOnly = true)
+    public List<TimeseriesPointDTO> timeseries(Long companyId, LocalDate from, LocalDate to,
+            Granularity granularity) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.plusDays(MAX_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Range too large");
+        }
+
+        Map<LocalDate, TimeseriesPointDTO> points = new LinkedHashMap<>();
+        for (LocalDate period = granularity.periodStart(from); !period.isAfter(to); period = granularity
+                .next(period)) {
+            points.put(period, new TimeseriesPointDTO(period, BigDecimal.ZERO, 0, 0, 0));
+        }
+
+        for (DailySalesRollup row : rollupRepository.findByCompanyIdAndDayBetweenOrderByDayAsc(companyId, from,
+                to)) {
+            TimeseriesPointDTO point = points.get(granularity.periodStart(row.getDay()));
+            if (row.getStatus() == SaleStatus.CANCELLED) {
+                point.setCancelledOrders(point.getCancelledOrders() + row.getOrderCount());
+            } else {
+                point.setRevenue(point.getRevenue().add(row.getRevenue()));
+                point.setOrders(point.getOrders() + row.getOrderCount());
+                point.setUnits(point.getUnits() + row.getUnits());
+            }
+        }
+        return new ArrayList<>(points.values());
+    }
+}
@@ -20,6 +20,7 @@ public class ScheduledTasksService {
 
     private static final Logger log = LoggerFactory.getLogger(ScheduledTasksService.class);
     private final CompanyRepository companyRepository;
+    private final MarketplaceListingService marketplaceListingService;
 
     /**
      * Revisa diariamente a la medianoche (00:00) las suscripciones que han vencido.
@@ -63,6 +64,9 @@ public class ScheduledTasksService {
     public void performMaintenanceTasks() {
         log.info(
                 "Ejecutando tareas de mantenimiento diario (Placeholder: Limpieza de carritos abandonados, logs, etc)...");
+
+        // Reconstruye el listado del marketplace por si algún refresco incremental falló
+        marketplaceListingService.rebuild();
         // Futura implementación:
         // cartRepository.deleteByUpdatedAtBefore(now.minusDays(7));
     }
@@ -0,0 +1,404 @@
+package com.tiendario.service;
+
+import com.tiendario.payload.response.SuggestionDTO;
+import com.tiendario.repository.CatalogProductRepository;
+import com.tiendario.repository.MarketplaceListingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Search-as-you-type suggestions from an in-memory radix trie over product
+ * names, catalog names and categories. Every word start of a suggestion is a
+ * key, so "vaq" suggests "Pantalón vaquero". Keys are stored whole, with
+ * single-child chains collapsed into one edge: a name costs a few nodes per
+ * word instead of one per character, and prefixes of any length resolve.
+ * Each node stores its best suggestions precomputed, so a lookup only walks
+ * the prefix and never scans a subtree.
+ * <p>
+ * Nodes are immutable; an update copies the path it changes and publishes a
+ * new root, so requests always read a complete snapshot. Listing changes are
+ * applied a couple of seconds after they commit, and a periodic full rebuild
+ * picks up new catalog names and anything an update missed. The first build
+ * is started by MarketplaceListingService once the listing is backfilled.
+ */
+@Service
+public class SuggestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestionService.class);
+
+    static final int MAX_SUGGESTIONS = 10;
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final Comparator<SuggestionDTO> RANKING = Comparator
+            .comparingInt(SuggestionDTO::getWeight).reversed()
+            .thenComparing(SuggestionDTO::getText);
+
+    @Autowired
+    private MarketplaceListingRepository listingRepository;
+
+    @Autowired
+    private CatalogProductRepository catalogProductRepository;
+
+    private volatile Node root = Node.EMPTY_ROOT;
+
+    // What the trie holds, written only under the instance lock: product or catalog
+    // suggestions by folded text, category suggestions by category, catalog names by folded text
+    private Map<String, SuggestionDTO> names = new HashMap<>();
+    private Map<String, SuggestionDTO> categories = new HashMap<>();
+    private Map<String, String> catalogNames = new HashMap<>();
+
+    // Normalized listing names changed since the last update
+    private final Set<String> changedListings = ConcurrentHashMap.newKeySet();
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final SuggestionDTO[] NONE = new SuggestionDTO[0];
+        static final Node EMPTY_ROOT = new Node("", NO_CHILDREN, NONE, NONE);
+
+        // Edge from the parent, empty only at the root; children are sorted by its first char
+        final String label;
+        final Node[] children;
+        final SuggestionDTO[] terminals;
+        final SuggestionDTO[] top;
+
+        Node(String label, Node[] children, SuggestionDTO[] terminals, SuggestionDTO[] top) {
+            this.label = label;
+            this.children = children;
+            this.terminals = terminals;
+            this.top = top;
+        }
+
+        // Bottom-up: a node's best suggestions are the best of its own and its children's
+        static Node of(String label, Node[] children, SuggestionDTO[] terminals) {
+            SuggestionDTO[] top = NONE;
+            for (SuggestionDTO s : terminals) {
+                top = offer(top, s);
+            }
+            for (Node child : children) {
+                for (SuggestionDTO s : child.top) {
+                    top = offer(top, s);
+                }
+            }
+            return new Node(label, children, terminals, top);
+        }
+
+        Node withLabel(String newLabel) {
+            return new Node(newLabel, children, terminals, top);
+        }
+
+        int childIndex(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = children[mid].label.charAt(0);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    /**
+     * Best suggestions for a prefix, highest weight first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = key(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            int i = node.childIndex(key.charAt(pos));
+            if (i < 0) {
+                return List.of();
+            }
+            node = node.children[i];
+            // The prefix may end inside the edge
+            int length = Math.min(node.label.length(), key.length() - pos);
+            if (!node.label.regionMatches(0, key, pos, length)) {
+                return List.of();
+            }
+            pos += length;
+        }
+        int count = Math.min(Math.max(limit, 1), node.top.length);
+        return Arrays.asList(Arrays.copyOf(node.top, count));
+    }
+
+    /**
+     * Called by MarketplaceListingListener once listing groups have been
+     * refreshed; the suggestions follow on the next update.
+     */
+    public void listingsChanged(Collection<String> normalizedNames) {
+        changedListings.addAll(normalizedNames);
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.suggest.rebuild-ms:3600000}",
+            initialDelayString = "${app.search.suggest.rebuild-ms:3600000}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        // Changes committed from here on are read below or applied again by the next update
+        changedListings.clear();
+        Map<String, SuggestionDTO> newNames = new HashMap<>();
+        Map<String, SuggestionDTO> newCategories = new HashMap<>();
+        Map<String, String> newCatalogNames = new HashMap<>();
+
+        // Products weighted by how many sellers offer them
+        for (Object[] row : listingRepository.findSuggestionRows()) {
+            String text = (String) row[1];
+            if (!key(text).isEmpty()) {
+                newNames.putIfAbsent(key(text), new SuggestionDTO(text.trim(), "PRODUCT", ((Number) row[2]).intValue()));
+            }
+        }
+        // Categories weighted by how many products they hold
+        for (Object[] row : listingRepository.countByCategory(null, false)) {
+            String category = (String) row[0];
+            if (!key(category).isEmpty()) {
+                newCategories.put(category, new SuggestionDTO(category, "CATEGORY", ((Number) row[1]).intValue()));
+            }
+        }
+        // Catalog names nobody sells yet rank last
+        for (String name : catalogProductRepository.findAllNames()) {
+            String key = key(name);
+            if (!key.isEmpty() && newCatalogNames.putIfAbsent(key, name.trim()) == null) {
+                newNames.putIfAbsent(key, new SuggestionDTO(name.trim(), "CATALOG", 0));
+            }
+        }
+
+        Node newRoot = Node.EMPTY_ROOT;
+        for (SuggestionDTO suggestion : newNames.values()) {
+            newRoot = replace(newRoot, null, suggestion);
+        }
+        for (SuggestionDTO suggestion : newCategories.values()) {
+            newRoot = replace(newRoot, null, suggestion);
+        }
+        names = newNames;
+        categories = newCategories;
+        catalogNames = newCatalogNames;
+        root = newRoot;
+        log.debug("Suggestion index rebuilt: {} entries", newNames.size() + newCategories.size());
+    }
+
+    /**
+     * Applies the listing groups changed since the last run: their product
+     * suggestions and the category weights.
+     */
+    @Scheduled(fixedDelayString = "${app.search.suggest.update-ms:2000}")
+    @Transactional(readOnly = true)
+    public synchronized void applyChanges() {
+        if (changedListings.isEmpty()) {
+            return;
+        }
+        List<String> changed = new ArrayList<>(changedListings);
+        changedListings.removeAll(changed);
+
+        Map<String, Object[]> rows = new HashMap<>();
+        for (int from = 0; from < changed.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = changed.subList(from, Math.min(changed.size(), from + LOOKUP_CHUNK_SIZE));
+            for (Object[] row : listingRepository.findSuggestionRowsByNormalizedNames(chunk)) {
+                rows.put((String) row[0], row);
+            }
+        }
+
+        Node newRoot = root;
+        for (String normalizedName : changed) {
+            Object[] row = rows.get(normalizedName);
+            String key = key(row != null ? (String) row[1] : normalizedName);
+            if (key.isEmpty()) {
+                continue;
+            }
+            SuggestionDTO old = names.get(key);
+            SuggestionDTO updated;
+            if (row != null) {
+                updated = new SuggestionDTO(((String) row[1]).trim(), "PRODUCT", ((Number) row[2]).intValue());
+            } else if (old != null && !"PRODUCT".equals(old.getType())) {
+                continue;
+            } else {
+                // No longer sold: back to the catalog name, if there is one
+                String catalogName = catalogNames.get(key);
+                updated = catalogName != null ? new SuggestionDTO(catalogName, "CATALOG", 0) : null;
+            }
+            if (!Objects.equals(old, updated)) {
+                newRoot = replace(newRoot, old, updated);
+                if (updated != null) {
+                    names.put(key, updated);
+                } else {
+                    names.remove(key);
+                }
+            }
+        }
+
+        // Unchanged categories keep their instance, which is what the trie holds
+        Map<String, SuggestionDTO> newCategories = new HashMap<>();
+        for (Object[] row : listingRepository.countByCategory(null, false)) {
+            String category = (String) row[0];
+            if (key(category).isEmpty()) {
+                continue;
+            }
+            SuggestionDTO old = categories.get(category);
+            SuggestionDTO updated = new SuggestionDTO(category, "CATEGORY", ((Number) row[1]).intValue());
+            if (updated.equals(old)) {
+                newCategories.put(category, old);
+            } else {
+                newRoot = replace(newRoot, old, updated);
+                newCategories.put(category, updated);
+            }
+        }
+        for (SuggestionDTO old : categories.values()) {
+            if (!newCategories.containsKey(old.getText())) {
+                newRoot = replace(newRoot, old, null);
+            }
+        }
+        categories = newCategories;
+        root = newRoot;
+        log.debug("Suggestion index updated for {} listing groups", changed.size());
+    }
+
+    // Removes one suggestion under all of its word starts and adds another
+    private static Node replace(Node node, SuggestionDTO old, SuggestionDTO updated) {
+        if (old != null) {
+            for (String key : wordStarts(key(old.getText()))) {
+                Node removed = remove(node, key, 0, old);
+                node = removed != null ? removed : Node.EMPTY_ROOT;
+            }
+        }
+        if (updated != null) {
+            for (String key : wordStarts(key(updated.getText()))) {
+                node = add(node, key, 0, updated);
+            }
+        }
+        return node;
+    }
+
+    private static List<String> wordStarts(String key) {
+        List<String> starts = new ArrayList<>();
+        for (int start = 0; start < key.length(); start++) {
+            if (start == 0 || key.charAt(start - 1) == ' ') {
+                starts.add(key.substring(start));
+            }
+        }
+        return starts;
+    }
+
+    // pos is where the key continues below this node's label
+    private static Node add(Node node, String key, int pos, SuggestionDTO suggestion) {
+        if (pos == key.length()) {
+            SuggestionDTO[] terminals = Arrays.copyOf(node.terminals, node.terminals.length + 1);
+            terminals[node.terminals.length] = suggestion;
+            return new Node(node.label, node.children, terminals, offer(node.top, suggestion));
+        }
+        int i = node.childIndex(key.charAt(pos));
+        Node[] children;
+        if (i < 0) {
+            SuggestionDTO[] only = { suggestion };
+            Node leaf = new Node(key.substring(pos), Node.NO_CHILDREN, only, only);
+            int at = -i - 1;
+            children = new Node[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, at);
+            children[at] = leaf;
+            System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+        } else {
+            Node child = node.children[i];
+            int common = 1;
+            while (common < child.label.length() && pos + common < key.length()
+                    && child.label.charAt(common) == key.charAt(pos + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                // The key leaves the edge part way: split it there
+                Node tail = child.withLabel(child.label.substring(common));
+                child = new Node(child.label.substring(0, common), new Node[] { tail }, Node.NONE, tail.top);
+            }
+            children = node.children.clone();
+            children[i] = add(child, key, pos + common, suggestion);
+        }
+        return new Node(node.label, children, node.terminals, offer(node.top, suggestion));
+    }
+
+    // Null when the node is left empty
+    private static Node remove(Node node, String key, int pos, SuggestionDTO suggestion) {
+        SuggestionDTO[] terminals = node.terminals;
+        Node[] children = node.children;
+        if (pos == key.length()) {
+            terminals = Arrays.stream(terminals).filter(s -> s != suggestion).toArray(SuggestionDTO[]::new);
+            if (terminals.length == node.terminals.length) {
+                return node;
+            }
+        } else {
+            int i = node.childIndex(key.charAt(pos));
+            if (i < 0 || !key.startsWith(node.children[i].label, pos)) {
+                return node;
+            }
+            Node child = node.children[i];
+            Node updated = remove(child, key, pos + child.label.length(), suggestion);
+            if (updated == child) {
+                return node;
+            }
+            if (updated != null) {
+                children = children.clone();
+                children[i] = updated;
+            } else {
+                children = new Node[node.children.length - 1];
+                System.arraycopy(node.children, 0, children, 0, i);
+                System.arraycopy(node.children, i + 1, children, i, children.length - i);
+            }
+        }
+        boolean isRoot = node.label.isEmpty();
+        if (terminals.length == 0 && children.length == 0 && !isRoot) {
+            return null;
+        }
+        if (terminals.length == 0 && children.length == 1 && !isRoot) {
+            // Keep edges compressed: fold the only child into this one
+            return children[0].withLabel(node.label + children[0].label);
+        }
+        return Node.of(node.label, children, terminals);
+    }
+
+    // The best MAX_SUGGESTIONS of top plus one more suggestion
+    private static SuggestionDTO[] offer(SuggestionDTO[] top, SuggestionDTO suggestion) {
+        int at = 0;
+        for (SuggestionDTO s : top) {
+            if (s == suggestion) {
+                return top;
+            }
+        }
+        while (at < top.length && RANKING.compare(top[at], suggestion) <= 0) {
+            at++;
+        }
+        if (at >= MAX_SUGGESTIONS) {
+            return top;
+        }
+        SuggestionDTO[] ranked = new SuggestionDTO[Math.min(MAX_SUGGESTIONS, top.length + 1)];
+        System.arraycopy(top, 0, ranked, 0, at);
+        ranked[at] = suggestion;
+        System.arraycopy(top, at, ranked, at + 1, ranked.length - at - 1);
+        return ranked;
+    }
+
+    private static String key(String text) {
+        return text == null ? "" : SPACES.matcher(EmbeddedSearchIndex.fold(text).trim()).replaceAll(" ");
+    }
+}
@@ -1,17 +1,21 @@
 package com.tiendario.web;
 
 import com.tiendario.domain.Customer;
+import com.tiendario.payload.request.LoyaltyRedeemRequest;
 import com.tiendario.payload.response.MessageResponse;
 import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.CustomerRepository;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.LoyaltyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -24,6 +28,9 @@ public class CustomerController {
     @Autowired
     CompanyRepository companyRepository;
 
+    @Autowired
+    LoyaltyService loyaltyService;
+
     @GetMapping
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
     public List<Customer> getCustomers() {
@@ -87,4 +94,46 @@ public class CustomerController {
         customerRepository.delete(customer);
         return ResponseEntity.ok(new MessageResponse("Customer deleted successfully!"));
     }
+
+    @GetMapping("/{id}/loyalty")
+    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<?> getLoyalty(@PathVariable Long id) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+
+        Customer customer = customerRepository.findById(id).orElse(null);
+        if (customer == null || !customer.getCompany().getId().equals(userDetails.getCompanyId())) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Customer not found or access denied."));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("balance", loyaltyService.getBalance(id));
+        response.put("entries", loyaltyService.getRecentEntries(id, 50));
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/{id}/loyalty/redeem")
+    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<?> redeemPoints(@PathVariable Long id, @RequestBody LoyaltyRedeemRequest request) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+
+        Customer customer = customerRepository.findById(id).orElse(null);
+        if (customer == null || !customer.getCompany().getId().equals(userDetails.getCompanyId())) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Customer not found or access denied."));
+        }
+        if (request.getPoints() == null) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Points are required."));
+        }
+
+        try {
+            long balance = loyaltyService.redeem(id, request.getPoints(), request.getReason());
+            Map<String, Object> response = new HashMap<>();
+            response.put("redeemed", request.getPoints());
+            response.put("balance", balance);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
 }
@@ -1,15 +1,22 @@
 package com.tiendario.web;
 
 import com.tiendario.domain.Notification;
-import com.tiendario.repository.NotificationRepository;
+import com.tiendario.security.JwtUtils;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.NotificationService;
+import com.tiendario.service.NotificationStreamRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -17,14 +24,50 @@ import java.util.List;
 public class NotificationController {
 
     @Autowired
-    NotificationRepository notificationRepository;
+    NotificationService notificationService;
+
+    @Autowired
+    NotificationStreamRegistry streamRegistry;
+
+    @Autowired
+    JwtUtils jwtUtils;
 
     @GetMapping
     @PreAuthorize("hasRole('MANAGER')")
-    public List<Notification> getNotifications() {
+    public ResponseEntity<List<Notification>> getNotifications(
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        List<Notification> page = notificationService.getPage(userDetails.getCompanyId(), before, limit);
+
+        // Newest first; pass the header back as ?before= to load older ones
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == Math.min(Math.max(limit, 1), NotificationService.MAX_PAGE_SIZE)) {
+            response.header(PublicController.NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    // Opens the stream as /stream?ticket=...; fetch a new ticket for every (re)connect
+    @PostMapping("/stream-ticket")
+    @PreAuthorize("hasRole('MANAGER')")
+    public Map<String, Object> streamTicket() {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        Map<String, Object> ticket = new HashMap<>();
+        ticket.put("ticket", jwtUtils.generateStreamTicket(userDetails));
+        ticket.put("expiresInMs", jwtUtils.getStreamTicketMs());
+        return ticket;
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('MANAGER')")
+    public SseEmitter stream() {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
-        return notificationRepository.findByCompanyIdOrderByCreatedAtDesc(userDetails.getCompanyId());
+        // "notification" events for every new notification of the company, replacing polling
+        return streamRegistry.subscribe(userDetails.getCompanyId());
     }
 
     @GetMapping("/unread-count")
@@ -32,17 +75,24 @@ public class NotificationController {
     public long getUnreadCount() {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
-        return notificationRepository.countByCompanyIdAndReadStatusFalse(userDetails.getCompanyId());
+        return notificationService.getUnreadCount(userDetails.getCompanyId());
     }
 
     @PutMapping("/{id}/read")
     @PreAuthorize("hasRole('MANAGER')")
     public ResponseEntity<?> markAsRead(@PathVariable Long id) {
-        Notification notification = notificationRepository.findById(id).orElse(null);
-        if (notification != null) {
-            notification.setReadStatus(true);
-            notificationRepository.save(notification);
-        }
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        notificationService.markRead(userDetails.getCompanyId(), id);
         return ResponseEntity.ok().build();
     }
+
+    @PutMapping("/read")
+    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<Map<String, Integer>> markAllAsRead(@RequestParam Long upToId) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        int updated = notificationService.markReadUpTo(userDetails.getCompanyId(), upToId);
+        return ResponseEntity.ok(Collections.singletonMap("updated", updated));
+    }
 }
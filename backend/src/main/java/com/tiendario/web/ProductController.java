@@ -6,12 +6,17 @@ import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.ProductRepository;
 import com.tiendario.repository.UserRepository;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.ExportService;
+import com.tiendario.service.ProductImportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -34,6 +39,9 @@ public class ProductController {
     @Autowired
     com.tiendario.repository.CatalogProductRepository catalogProductRepository;
 
+    @Autowired
+    ProductImportService productImportService;
+
     @GetMapping("/suggest-sku")
     @PreAuthorize("hasRole('MANAGER')")
     public ResponseEntity<?> suggestSku(@RequestParam String name,
@@ -92,6 +100,7 @@ public class ProductController {
 
     @PostMapping
     @PreAuthorize("hasRole('MANAGER')")
+    @Transactional
     public ResponseEntity<?> createProduct(@RequestBody Product product) {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
@@ -133,18 +142,63 @@ public class ProductController {
 
         Product savedProduct = productRepository.save(product);
 
-        // Index in search engine
-        try {
-            productIndexService.indexProduct(savedProduct);
-        } catch (Exception e) {
-            System.err.println("Warning: Could not index product: " + e.getMessage());
-        }
+        // Queue for the search engine (committed with the product)
+        productIndexService.indexProduct(savedProduct);
 
         return ResponseEntity.ok(savedProduct);
     }
 
+    // Bulk onboarding: a CSV (with header) or NDJSON file of products, imported row by row with a report
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<?> importProducts(@RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String format) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+
+        com.tiendario.domain.Company company = companyRepository.findById(userDetails.getCompanyId()).orElse(null);
+        if (company == null) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: Company not found."));
+        }
+        com.tiendario.domain.SubscriptionStatus status = company.getSubscriptionStatus();
+        if (com.tiendario.domain.SubscriptionStatus.PAST_DUE.equals(status)) {
+            return ResponseEntity.status(403)
+                    .body(new MessageResponse(
+                            "Tu suscripción ha vencido. Renueva tu plan para poder agregar nuevos productos y seguir operando."));
+        }
+        if (com.tiendario.domain.SubscriptionStatus.SUSPENDED.equals(status)) {
+            return ResponseEntity.status(403)
+                    .body(new MessageResponse(
+                            "Tu cuenta está suspendida. Contacta al administrador para reactivarla."));
+        }
+        // FREE accounts keep their 10 product limit; rows past it are reported as failed
+        Long maxNewProducts = null;
+        if (com.tiendario.domain.SubscriptionStatus.FREE.equals(status)) {
+            maxNewProducts = Math.max(0, 10 - productRepository.countByCompanyId(company.getId()));
+        }
+
+        ExportService.Format importFormat;
+        try {
+            if (format != null) {
+                importFormat = ExportService.Format.parse(format);
+            } else {
+                String filename = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+                importFormat = filename.endsWith(".ndjson") || filename.endsWith(".jsonl")
+                        ? ExportService.Format.NDJSON
+                        : ExportService.Format.CSV;
+            }
+            return ResponseEntity.ok(productImportService.importProducts(company, file.getInputStream(),
+                    importFormat, maxNewProducts));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: could not read the file."));
+        }
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('MANAGER')")
+    @Transactional
     public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product productDetails) {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
@@ -200,7 +254,7 @@ public class ProductController {
 
         Product updatedProduct = productRepository.save(product);
 
-        // Update index
+        // Queue index update
         productIndexService.indexProduct(updatedProduct);
 
         return ResponseEntity.ok(new MessageResponse("Product updated successfully!"));
@@ -208,6 +262,7 @@ public class ProductController {
 
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('MANAGER')")
+    @Transactional
     public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal();
@@ -219,7 +274,7 @@ public class ProductController {
 
         productRepository.delete(product);
 
-        // Remove from search engine
+        // Queue removal from search engine
         productIndexService.deleteProductIndex(id);
 
         return ResponseEntity.ok(new MessageResponse("Product deleted successfully!"));
@@ -1,24 +1,41 @@
 package com.tiendario.web;
 
 import com.tiendario.domain.*;
+import com.tiendario.payload.request.CatalogFilter;
 import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.CustomerRepository;
 import com.tiendario.repository.ProductRepository;
 import com.tiendario.repository.SaleRepository;
-import com.tiendario.service.ProductIndexService;
+import com.tiendario.service.CheckoutService;
+import com.tiendario.service.LoyaltyService;
+import com.tiendario.service.MarketplaceListingService;
+import com.tiendario.service.ProductSearchService;
+import com.tiendario.service.SalesRollupService;
+import com.tiendario.service.SuggestionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import com.tiendario.payload.response.FacetBucketDTO;
 import com.tiendario.payload.response.PublicProductDTO;
+import com.tiendario.payload.response.SuggestionDTO;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = PublicController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/api/public")
 public class PublicController {
 
+    // Cursor for the next page of a list endpoint; absent on the last page.
+    // The body stays a plain JSON array so existing clients keep working.
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     ProductRepository productRepository;
 
@@ -26,7 +43,13 @@ public class PublicController {
     CompanyRepository companyRepository;
 
     @Autowired
-    ProductIndexService productIndexService;
+    ProductSearchService productSearchService;
+
+    @Autowired
+    MarketplaceListingService marketplaceListingService;
+
+    @Autowired
+    SuggestionService suggestionService;
 
     @Autowired
     CustomerRepository customerRepository;
@@ -35,25 +58,29 @@ public class PublicController {
     SaleRepository saleRepository;
 
     @Autowired
-    com.tiendario.repository.NotificationRepository notificationRepository;
+    SalesRollupService salesRollupService;
+
+    @Autowired
+    LoyaltyService loyaltyService;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    CheckoutService checkoutService;
 
     @Autowired
     com.tiendario.repository.GlobalConfigRepository globalConfigRepository;
 
     @GetMapping("/products")
-    public List<PublicProductDTO> getAllProducts() {
-        // Return unique products by Name (Normalized) for better unification
-        return productRepository.findAll().stream()
-                .collect(java.util.stream.Collectors.groupingBy(p -> p.getName().trim().toLowerCase()))
-                .values().stream()
-                .map(list -> {
-                    // Find product with minimum price to represent the group
-                    Product bestPriceProduct = list.stream()
-                            .min(java.util.Comparator.comparing(Product::getPrice))
-                            .orElse(list.get(0));
-                    return this.mapToDTO(bestPriceProduct);
-                })
-                .collect(java.util.stream.Collectors.toList());
+    public ResponseEntity<List<PublicProductDTO>> getAllProducts(@RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit, CatalogFilter filter) {
+        // Unique products by normalized name, cheapest offer first, served from the
+        // precomputed listing and paged by normalized name
+        ProductSearchService.ResultPage page = marketplaceListingService.findListings(after, null, filter,
+                pageSize(limit));
+        return pageOf(page.getProducts().stream().map(this::mapToDTO).collect(Collectors.toList()),
+                page.getNextCursor());
     }
 
     @GetMapping("/products/{id}")
@@ -64,55 +91,48 @@ public class PublicController {
     }
 
     @GetMapping("/products/company/{companyId}")
-    public List<PublicProductDTO> getCompanyProducts(@PathVariable Long companyId) {
-        return productRepository.findByCompanyId(companyId).stream()
-                .map(this::mapToDTO)
-                .collect(java.util.stream.Collectors.toList());
+    public ResponseEntity<List<PublicProductDTO>> getCompanyProducts(@PathVariable Long companyId,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int limit, CatalogFilter filter) {
+        int pageSize = pageSize(limit);
+        List<Product> products = productRepository.findCompanyPage(companyId, after != null ? after : 0L,
+                filter.getCategory(), filter.getMinPrice(), filter.getMaxPrice(),
+                filter.getSubscriptionStatus(), filter.isInStock(), PageRequest.of(0, pageSize));
+        return pageOf(products.stream().map(this::mapToDTO).collect(Collectors.toList()),
+                products.size() == pageSize ? String.valueOf(products.get(products.size() - 1).getId()) : null);
     }
 
     @GetMapping("/products/name/{name}/sellers")
     public List<com.tiendario.payload.response.SellerOfferDTO> getSellersByName(@PathVariable String name) {
-        String normalizedName = name.trim().toLowerCase();
-        return productRepository.findAll().stream()
-                .filter(p -> p.getName().trim().toLowerCase().equals(normalizedName))
-                .map(p -> {
-                    com.tiendario.payload.response.SellerOfferDTO offer = new com.tiendario.payload.response.SellerOfferDTO();
-                    offer.setProductId(p.getId());
-                    offer.setCompanyId(p.getCompany().getId());
-                    offer.setCompanyName(p.getCompany().getName());
-                    offer.setPrice(p.getPrice());
-                    offer.setStock(p.getStock());
-                    offer.setSubscriptionStatus(p.getCompany().getSubscriptionStatus().name());
-                    offer.setLatitude(p.getCompany().getLatitude());
-                    offer.setLongitude(p.getCompany().getLongitude());
-                    offer.setDescription(p.getCompany().getDescription());
-                    offer.setImageUrl(p.getCompany().getImageUrl());
-                    return offer;
-                })
-                .sorted(java.util.Comparator.comparing(com.tiendario.payload.response.SellerOfferDTO::getPrice))
-                .collect(java.util.stream.Collectors.toList());
+        // Index seek on normalized_name, projected straight into the DTO
+        return productRepository.findSellerOffersByNormalizedName(Product.normalizeName(name));
     }
 
     @GetMapping("/search")
-    public List<PublicProductDTO> searchProducts(@RequestParam String q) {
-        // Try Elasticsearch first, fallback to database
-        List<Product> results = productIndexService.searchProducts(q);
-
-        // If Elasticsearch returns no results or is not available, search in database
-        if (results.isEmpty()) {
-            results = productRepository.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(q, q);
+    public ResponseEntity<?> searchProducts(@RequestParam String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "100") int limit, CatalogFilter filter) {
+        // Relevance-ranked best offers from Elasticsearch, or the listing when it is not deployed
+        ProductSearchService.ResultPage page;
+        try {
+            page = productSearchService.search(q, filter, after, pageSize(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new com.tiendario.payload.response.MessageResponse(e.getMessage()));
         }
+        return pageOf(page.getProducts().stream().map(this::mapToDTO).collect(Collectors.toList()),
+                page.getNextCursor());
+    }
 
-        return results.stream()
-                .collect(java.util.stream.Collectors.groupingBy(p -> p.getName().trim().toLowerCase()))
-                .values().stream()
-                .map(list -> {
-                    Product bestPriceProduct = list.stream()
-                            .min(java.util.Comparator.comparing(Product::getPrice))
-                            .orElse(list.get(0));
-                    return this.mapToDTO(bestPriceProduct);
-                })
-                .collect(java.util.stream.Collectors.toList());
+    @GetMapping("/search/facets")
+    public Map<String, List<FacetBucketDTO>> getSearchFacets(@RequestParam String q,
+            @RequestParam(defaultValue = "false") boolean inStock) {
+        return productSearchService.facets(q, inStock);
+    }
+
+    @GetMapping("/suggest")
+    public List<SuggestionDTO> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        // Served from an in-memory trie, cheap enough to call on every keystroke
+        return suggestionService.suggest(prefix, limit);
     }
 
     @PostMapping("/order")
@@ -121,9 +141,9 @@ public class PublicController {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
-        if (product.getStock() < request.getQuantity()) {
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
             return ResponseEntity.badRequest()
-                    .body(new com.tiendario.payload.response.MessageResponse("Insufficient stock"));
+                    .body(new com.tiendario.payload.response.MessageResponse("Quantity must be positive"));
         }
 
         Company company = product.getCompany();
@@ -132,6 +152,12 @@ public class PublicController {
                     new com.tiendario.payload.response.MessageResponse("Seller cannot accept orders (FREE Plan)"));
         }
 
+        // Atomic check-and-decrement, so concurrent orders cannot oversell
+        if (productRepository.decrementStock(product.getId(), request.getQuantity()) == 0) {
+            return ResponseEntity.badRequest()
+                    .body(new com.tiendario.payload.response.MessageResponse("Insufficient stock"));
+        }
+
         Customer customer = customerRepository.findByEmailAndCompanyId(request.getCustomerEmail(), company.getId())
                 .orElse(new Customer());
 
@@ -162,30 +188,31 @@ public class PublicController {
         sale.setItems(java.util.List.of(item));
         sale.setTotalAmount(item.getSubtotal());
 
-        product.setStock(product.getStock() - request.getQuantity());
-        productRepository.save(product);
-
         saleRepository.save(sale);
+        // Counted here so it moves in step with later status changes
+        salesRollupService.recordSale(sale);
 
-        // Create Notification for the seller
-        com.tiendario.domain.Notification notification = new com.tiendario.domain.Notification();
-        notification.setCompany(company);
-        notification.setTitle("¡Nueva Venta!");
-        notification.setMessage("Has recibido un pedido de " + customer.getName() + " por $" + sale.getTotalAmount());
-        notification.setCreatedAt(java.time.LocalDateTime.now());
-        notification.setReadStatus(false);
-        notificationRepository.save(notification);
-
-        // Update Loyalty Points (1 point per $1)
-        if (customer.getLoyaltyPoints() == null)
-            customer.setLoyaltyPoints(0);
-        customer.setLoyaltyPoints(customer.getLoyaltyPoints() + sale.getTotalAmount().intValue());
-        customerRepository.save(customer);
+        // Seller notification, loyalty points and search reindex run after commit
+        eventPublisher.publishEvent(new OrderPlacedEvent(sale.getId(), company.getId()));
 
         return ResponseEntity.ok(new com.tiendario.payload.response.MessageResponse(
                 "Order placed successfully! Order ID: " + sale.getId()));
     }
 
+    @PostMapping("/checkout")
+    public ResponseEntity<?> checkout(@RequestBody com.tiendario.payload.request.CartCheckoutRequest request) {
+        // The whole cart in one call: one order per seller, all or nothing
+        try {
+            List<com.tiendario.payload.response.CheckoutOrderDTO> orders = checkoutService.checkout(request);
+            Map<String, Object> response = new java.util.HashMap<>();
+            response.put("message", "Order placed successfully! " + orders.size() + " order(s) created");
+            response.put("orders", orders);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new com.tiendario.payload.response.MessageResponse(e.getMessage()));
+        }
+    }
+
     @GetMapping("/config")
     public ResponseEntity<?> getPublicConfig() {
         return ResponseEntity.ok(globalConfigRepository.findFirstByOrderByIdAsc()
@@ -207,11 +234,8 @@ public class PublicController {
 
     @GetMapping("/customer/points")
     public ResponseEntity<?> getCustomerPoints(@RequestParam String email) {
-        // Simple aggregate of points for this email across all companies
-        Integer totalPoints = customerRepository.findAll().stream()
-                .filter(c -> c.getEmail().equalsIgnoreCase(email))
-                .mapToInt(c -> c.getLoyaltyPoints() != null ? c.getLoyaltyPoints() : 0)
-                .sum();
+        // Points for this email across all companies, one indexed SUM
+        long totalPoints = loyaltyService.getPointsByEmail(email);
 
         java.util.Map<String, Object> response = new java.util.HashMap<>();
         response.put("email", email);
@@ -219,6 +243,18 @@ public class PublicController {
         return ResponseEntity.ok(response);
     }
 
+    private static int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private static ResponseEntity<List<PublicProductDTO>> pageOf(List<PublicProductDTO> items, String nextCursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+
     private PublicProductDTO mapToDTO(Product product) {
         com.tiendario.payload.response.PublicProductDTO dto = new com.tiendario.payload.response.PublicProductDTO();
         dto.setId(product.getId());
@@ -9,15 +9,24 @@ import com.tiendario.repository.ProductRepository;
 import com.tiendario.repository.PurchaseRepository;
 import com.tiendario.repository.SupplierRepository;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.ExportService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -36,6 +45,9 @@ public class PurchaseController {
     @Autowired
     SupplierRepository supplierRepository;
 
+    @Autowired
+    ExportService exportService;
+
     @GetMapping
     @PreAuthorize("hasRole('MANAGER')")
     public List<Purchase> getPurchases() {
@@ -44,6 +56,29 @@ public class PurchaseController {
         return purchaseRepository.findByCompanyIdOrderByDateDesc(userDetails.getCompanyId());
     }
 
+    // Whole history as a file, written while it is read; ?format=csv (default) or ndjson
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('MANAGER')")
+    public ResponseEntity<StreamingResponseBody> exportPurchases(@RequestParam(defaultValue = "csv") String format) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Runs on an MVC async thread once this returns, so the company is resolved here
+        Long companyId = userDetails.getCompanyId();
+        StreamingResponseBody body = out -> exportService.exportPurchases(companyId, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"purchases-" + LocalDate.now() + "."
+                        + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('MANAGER')")
     @Transactional
@@ -64,11 +99,24 @@ public class PurchaseController {
                     .orElseThrow(() -> new RuntimeException("Supplier not found")));
         }
 
-        // Process items
-        for (com.tiendario.payload.request.PurchaseRequest.PurchaseItemRequest itemRequest : request.getItems()) {
-            // Fetch product
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
+        List<com.tiendario.payload.request.PurchaseRequest.PurchaseItemRequest> itemRequests = request
+                .getItems() != null ? request.getItems() : List.of();
+
+        // Load and lock every referenced product in one query; stock is then
+        // updated in memory and flushed as batched UPDATEs at commit
+        Set<Long> productIds = itemRequests.stream()
+                .map(com.tiendario.payload.request.PurchaseRequest.PurchaseItemRequest::getProductId)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productIds.isEmpty() ? Map.of()
+                : productRepository.findAllByIdForUpdate(productIds).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        purchase.setItems(new java.util.ArrayList<>());
+        for (com.tiendario.payload.request.PurchaseRequest.PurchaseItemRequest itemRequest : itemRequests) {
+            Product product = products.get(itemRequest.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
 
             // Security check: ensure product belongs to company
             if (!product.getCompany().getId().equals(userDetails.getCompanyId())) {
@@ -85,12 +133,7 @@ public class PurchaseController {
             // Update product stock and cost
             product.setStock(product.getStock() + itemRequest.getQuantity());
             product.setCostPrice(itemRequest.getUnitCost());
-            productRepository.save(product);
 
-            // Add item to purchase
-            if (purchase.getItems() == null) {
-                purchase.setItems(new java.util.ArrayList<>());
-            }
             purchase.getItems().add(item);
         }
 
@@ -8,15 +8,26 @@ import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.ProductRepository;
 import com.tiendario.repository.SaleRepository;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.ExportService;
+import com.tiendario.service.SalesRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -32,6 +43,12 @@ public class SaleController {
     @Autowired
     CompanyRepository companyRepository;
 
+    @Autowired
+    SalesRollupService salesRollupService;
+
+    @Autowired
+    ExportService exportService;
+
     @GetMapping
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
     public List<Sale> getCompanySales() {
@@ -40,6 +57,29 @@ public class SaleController {
         return saleRepository.findByCompanyIdOrderByDateDesc(userDetails.getCompanyId());
     }
 
+    // Whole history as a file, written while it is read; ?format=csv (default) or ndjson
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportSales(@RequestParam(defaultValue = "csv") String format) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal();
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Runs on an MVC async thread once this returns, so the company is resolved here
+        Long companyId = userDetails.getCompanyId();
+        StreamingResponseBody body = out -> exportService.exportSales(companyId, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sales-" + LocalDate.now() + "."
+                        + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     @PostMapping
     @Transactional
     public ResponseEntity<?> createSale(@RequestBody Sale sale) {
@@ -81,6 +121,9 @@ public class SaleController {
             return ResponseEntity.badRequest().body(new MessageResponse("Error: Sale must have at least one item."));
         }
 
+        // Quantity per product, in id order so concurrent multi-item sales lock rows
+        // in the same order and cannot deadlock
+        Map<Long, Integer> quantities = new TreeMap<>();
         for (SaleItem item : sale.getItems()) {
             item.setSale(sale);
 
@@ -88,30 +131,44 @@ public class SaleController {
                 return ResponseEntity.badRequest()
                         .body(new MessageResponse("Error: Each item must have a product ID."));
             }
-
-            Product product = productRepository.findById(item.getProduct().getId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
-
-            // Check stock and availability
-            if (product.getStock() < item.getQuantity()) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
                 return ResponseEntity.badRequest()
-                        .body(new MessageResponse("Error: Insufficient stock for " + product.getName()));
+                        .body(new MessageResponse("Error: Each item must have a positive quantity."));
             }
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
 
-            // Update Stock
-            product.setStock(product.getStock() - item.getQuantity());
-            productRepository.save(product);
-
+        // One query for every product referenced by the sale
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (SaleItem item : sale.getItems()) {
+            Product product = products.get(item.getProduct().getId());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
             item.setProduct(product);
         }
 
+        // Atomic check-and-decrement, one statement per distinct product
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (productRepository.decrementStock(entry.getKey(), entry.getValue()) == 0) {
+                // Undo the decrements already applied for earlier products
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return ResponseEntity.badRequest()
+                        .body(new MessageResponse(
+                                "Error: Insufficient stock for " + products.get(entry.getKey()).getName()));
+            }
+        }
+
         saleRepository.save(sale);
+        salesRollupService.recordSale(sale);
 
         return ResponseEntity.ok(new MessageResponse("Sale completed and stock updated!"));
     }
 
     @PutMapping("/{id}/status")
     @PreAuthorize("hasRole('MANAGER')")
+    @Transactional
     public ResponseEntity<?> updateSaleStatus(@PathVariable Long id,
             @RequestParam com.tiendario.domain.SaleStatus status) {
         UserDetailsImpl userDetails = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication()
@@ -122,8 +179,10 @@ public class SaleController {
             return ResponseEntity.badRequest().body(new MessageResponse("Error: Sale not found or access denied."));
         }
 
+        com.tiendario.domain.SaleStatus previous = sale.getStatus();
         sale.setStatus(status);
         saleRepository.save(sale);
+        salesRollupService.recordStatusChange(sale, previous);
 
         return ResponseEntity.ok(new MessageResponse("Sale status updated to " + status));
     }
@@ -1,25 +1,26 @@
 package com.tiendario.web;
 
 import com.tiendario.domain.Company;
-import com.tiendario.domain.Sale;
 import com.tiendario.domain.SubscriptionStatus;
 import com.tiendario.domain.User;
 import com.tiendario.payload.response.MessageResponse;
 import com.tiendario.repository.CompanyRepository;
-import com.tiendario.repository.ProductRepository;
-import com.tiendario.repository.SaleRepository;
 import com.tiendario.repository.GlobalConfigRepository;
 import com.tiendario.repository.SubscriptionPaymentRepository;
 import com.tiendario.repository.UserRepository;
+import com.tiendario.security.TokenRevocationList;
+import com.tiendario.service.OrderEventDispatcher;
+import com.tiendario.service.PlatformStatsService;
+import com.tiendario.service.ProductIndexService;
+import com.tiendario.service.ProductReindexService;
+import com.tiendario.service.SalesRollupService;
 import com.tiendario.service.SubscriptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -34,79 +35,96 @@ public class SuperAdminController {
         UserRepository userRepository;
 
         @Autowired
-        ProductRepository productRepository;
+        SubscriptionPaymentRepository paymentRepository;
 
         @Autowired
-        SaleRepository saleRepository;
+        SubscriptionService subscriptionService;
 
         @Autowired
-        SubscriptionPaymentRepository paymentRepository;
+        GlobalConfigRepository configRepository;
 
         @Autowired
-        SubscriptionService subscriptionService;
+        ProductIndexService productIndexService;
+
+        @Autowired(required = false)
+        ProductReindexService productReindexService;
 
         @Autowired
-        GlobalConfigRepository configRepository;
+        TokenRevocationList tokenRevocationList;
+
+        @Autowired
+        SalesRollupService salesRollupService;
+
+        @Autowired
+        PlatformStatsService platformStatsService;
+
+        @Autowired
+        OrderEventDispatcher orderEventDispatcher;
 
         @GetMapping("/stats")
         @PreAuthorize("hasRole('ADMIN')")
-        public ResponseEntity<?> getGlobalStats() {
-                Map<String, Object> stats = new HashMap<>();
-
-                // 1. Total Tenants
-                long totalCompanies = companyRepository.count();
-                stats.put("totalCompanies", totalCompanies);
-
-                // 2. Total Users
-                long totalUsers = userRepository.count();
-                stats.put("totalUsers", totalUsers);
-
-                // 3. Subscription Breakdown
-                List<Company> allCompanies = companyRepository.findAll();
-                long freePlanCount = allCompanies.stream()
-                                .filter(c -> SubscriptionStatus.FREE.equals(c.getSubscriptionStatus()))
-                                .count();
-                long paidPlanCount = allCompanies.stream()
-                                .filter(c -> SubscriptionStatus.PAID.equals(c.getSubscriptionStatus()))
-                                .count();
-
-                stats.put("freePlanCount", freePlanCount);
-                stats.put("paidPlanCount", paidPlanCount);
-
-                // 4. Global Revenue (Sales) - This is GMV (Gross Merchandise Value) of the
-                // platform
-                List<Sale> allSales = saleRepository.findAll();
-                BigDecimal globalGmv = allSales.stream()
-                                .map(Sale::getTotalAmount)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add);
-                stats.put("globalGmv", globalGmv);
-
-                // 5. Total Products in Marketplace
-                long totalProducts = productRepository.count();
-                stats.put("totalProducts", totalProducts);
-
-                // 6. MRR Estimation (Monthly Recurring Revenue)
-                com.tiendario.domain.GlobalConfig config = configRepository.findFirstByOrderByIdAsc()
-                                .orElse(new com.tiendario.domain.GlobalConfig());
-                BigDecimal mrr = config.getPremiumPlanMonthlyPrice().multiply(BigDecimal.valueOf(paidPlanCount));
-                stats.put("mrr", mrr);
-
-                // 7. Active Shops (Last 30 days based on sales)
-                java.time.LocalDateTime thirtyDaysAgo = java.time.LocalDateTime.now().minusDays(30);
-                Long activeShops = saleRepository.countActiveCompaniesSince(thirtyDaysAgo);
-                stats.put("activeShops", activeShops != null ? activeShops : 0);
-
-                // 8. Total Global Orders
-                long totalOrders = saleRepository.count();
-                stats.put("totalOrders", totalOrders);
-
-                // 9. Average Order Value (Global AOV)
-                BigDecimal aov = totalOrders > 0
-                                ? globalGmv.divide(BigDecimal.valueOf(totalOrders), 2, java.math.RoundingMode.HALF_UP)
-                                : BigDecimal.ZERO;
-                stats.put("globalAov", aov);
-
-                return ResponseEntity.ok(stats);
+        public ResponseEntity<?> getGlobalStats(@RequestParam(defaultValue = "false") boolean live) {
+                // Served from the periodic snapshot; live=true recomputes it now
+                return ResponseEntity.ok(platformStatsService.getStats(live));
+        }
+
+        @GetMapping("/search-index")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> getSearchIndexStatus() {
+                // Pending Elasticsearch updates waiting in the outbox
+                return ResponseEntity.ok(productIndexService.getQueueStatus());
+        }
+
+        @PostMapping("/search-index/reindex")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> startReindex() {
+                if (productReindexService == null) {
+                        return ResponseEntity.badRequest()
+                                        .body(new MessageResponse("Elasticsearch is not enabled"));
+                }
+                try {
+                        // Starts a new rebuild or resumes the last unfinished one
+                        return ResponseEntity.ok(productReindexService.start());
+                } catch (IllegalStateException e) {
+                        return ResponseEntity.status(409).body(new MessageResponse(e.getMessage()));
+                }
+        }
+
+        @GetMapping("/search-index/reindex")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> getReindexStatus() {
+                if (productReindexService == null) {
+                        return ResponseEntity.badRequest()
+                                        .body(new MessageResponse("Elasticsearch is not enabled"));
+                }
+                return ResponseEntity.ok(productReindexService.getStatus());
+        }
+
+        @PostMapping("/sales-rollup/backfill")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> backfillSalesRollup() {
+                // Rebuilds daily_sales_rollup from the sales table
+                Map<String, Object> result = new HashMap<>();
+                result.put("rows", salesRollupService.backfill());
+                return ResponseEntity.ok(result);
+        }
+
+        @GetMapping("/order-events")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> getOrderEventStatus() {
+                // Order side effects not yet completed, and those that gave up after their retries
+                Map<String, Object> result = new HashMap<>();
+                result.put("pending", orderEventDispatcher.pendingCount());
+                result.put("deadLetters", orderEventDispatcher.deadLetterCount());
+                return ResponseEntity.ok(result);
+        }
+
+        @PostMapping("/order-events/replay")
+        @PreAuthorize("hasRole('ADMIN')")
+        public ResponseEntity<?> replayOrderEvents() {
+                Map<String, Object> result = new HashMap<>();
+                result.put("replayed", orderEventDispatcher.replayDeadLetters());
+                return ResponseEntity.ok(result);
         }
 
         @GetMapping("/companies")
@@ -189,6 +207,12 @@ public class SuperAdminController {
                                 .orElseThrow(() -> new RuntimeException("User not found"));
                 user.setEnabled(!user.isEnabled());
                 userRepository.save(user);
+                // Tokens carry the principal, so disabling has to be enforced in memory
+                if (user.isEnabled()) {
+                        tokenRevocationList.restore(user.getId());
+                } else {
+                        tokenRevocationList.revoke(user.getId());
+                }
                 return ResponseEntity.ok(new MessageResponse(
                                 "User " + (user.isEnabled() ? "enabled" : "disabled") + " successfully"));
         }
@@ -9,6 +9,9 @@ import com.tiendario.payload.request.LoginRequest;
 import com.tiendario.payload.request.SignupRequest;
 import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.UserRepository;
+import com.tiendario.security.TokenRevocationList;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,10 +22,12 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
 import java.util.HashSet;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -46,6 +51,12 @@ public class AuthControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     private User testUser;
     private Company testCompany;
 
@@ -168,4 +179,47 @@ public class AuthControllerTest {
         assert newAdmin != null;
         assert newAdmin.getRole() == Role.ROLE_ADMIN;
     }
+
+    private String signIn() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setUsername("testuser");
+        loginRequest.setPassword("password123");
+
+        String body = mockMvc.perform(post("/api/auth/signin")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("token").asText();
+    }
+
+    @Test
+    void authenticatedRequest_ShouldNotLoadUser() throws Exception {
+        String token = signIn();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/products").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // Principal (id, role, company) comes from the token claims alone
+        assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void authenticatedRequest_ShouldBeRejected_WhenUserIsDisabled() throws Exception {
+        String token = signIn();
+
+        tokenRevocationList.revoke(testUser.getId());
+        try {
+            mockMvc.perform(get("/api/products").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isUnauthorized());
+        } finally {
+            tokenRevocationList.restore(testUser.getId());
+        }
+
+        mockMvc.perform(get("/api/products").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+    }
 }
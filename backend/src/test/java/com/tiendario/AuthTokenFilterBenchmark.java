@@ -0,0 +1,100 @@
+package com.tiendario;
+
+import com.tiendario.security.AuthTokenFilter;
+import com.tiendario.security.JwtUtils;
+import com.tiendario.security.TokenRevocationList;
+import com.tiendario.security.UserDetailsImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Cost of AuthTokenFilter per authenticated request, with the verified token
+ * cache off (every request checks the HMAC signature and parses the claims,
+ * as before the cache) and on. Not part of the regular test run:
+ * mvn test -Dtest=AuthTokenFilterBenchmark -Dbenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AuthTokenFilterBenchmark {
+
+    private static final String SECRET = "9a2f8c4e6b0d71f3e8b9c0d1a2f3e4d5c6b7a8b9c0d1e2f3a4b5c6d7e8f9a0b1";
+
+    // 0 evicts every entry as soon as it is added, so each request verifies the token again
+    @Param({ "0", "10000" })
+    public int verifiedCacheSize;
+
+    private AuthTokenFilter filter;
+    private String token;
+    private final FilterChain chain = (request, response) -> {
+    };
+
+    @Setup
+    public void setUp() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheSize", verifiedCacheSize);
+        jwtUtils.init();
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "revocationList", new TokenRevocationList());
+
+        UserDetailsImpl user = new UserDetailsImpl(7L, "manager", null,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")), 3L, true);
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Benchmark
+    public Authentication authenticatedRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Test
+    void run() throws Exception {
+        // Sanity check that the benchmarked request is really authenticated
+        verifiedCacheSize = 0;
+        setUp();
+        assertNotNull(authenticatedRequest());
+
+        // In this JVM: surefire's manifest-only classpath jar is not carried over to forked ones
+        new Runner(new OptionsBuilder()
+                .include(AuthTokenFilterBenchmark.class.getSimpleName())
+                .forks(0)
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.PurchaseRequest;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.security.UserDetailsImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts JDBC statements (round trips) for multi-line purchases and sales,
+ * using Hibernate statistics. Before batching, every line cost a SELECT and
+ * an UPDATE for the product plus an INSERT for the item.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class BatchWriteRoundTripTest {
+
+    private static final int LINES = 100;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        Company company = new Company();
+        company.setName("Batch Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        products = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Product p = new Product();
+            p.setName("Batch Product " + i);
+            p.setPrice(new BigDecimal("10.00"));
+            p.setStock(1000);
+            p.setSku("BATCH-" + i);
+            p.setCompany(company);
+            products.add(p);
+        }
+        products = productRepository.saveAll(products);
+        entityManager.flush();
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    @Test
+    void purchase_ShouldUseConstantRoundTrips() throws Exception {
+        PurchaseRequest request = new PurchaseRequest();
+        request.setTotal(new BigDecimal("1000.00"));
+        List<PurchaseRequest.PurchaseItemRequest> items = new ArrayList<>();
+        for (Product product : products) {
+            PurchaseRequest.PurchaseItemRequest item = new PurchaseRequest.PurchaseItemRequest();
+            item.setProductId(product.getId());
+            item.setQuantity(5);
+            item.setUnitCost(new BigDecimal("6.00"));
+            items.add(item);
+        }
+        request.setItems(items);
+
+        Statistics statistics = statistics();
+        mockMvc.perform(post("/api/purchases")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        entityManager.flush();
+
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals(LINES, statistics.getEntityInsertCount() - 1); // items plus the purchase
+        assertTrue(statements <= 15, "expected batched writes, got " + statements + " statements");
+    }
+
+    @Test
+    void sale_ShouldUseOneStatementPerDistinctProduct() throws Exception {
+        Sale sale = new Sale();
+        List<SaleItem> items = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            SaleItem item = new SaleItem();
+            Product ref = new Product();
+            ref.setId(products.get(i % 5).getId());
+            item.setProduct(ref);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        sale.setItems(items);
+
+        Statistics statistics = statistics();
+        mockMvc.perform(post("/api/sales")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sale)))
+                .andExpect(status().isOk());
+        entityManager.flush();
+
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 15, "expected batched writes, got " + statements + " statements");
+        assertEquals(1000 - LINES / 5, productRepository.findById(products.get(0).getId()).orElseThrow().getStock());
+    }
+}
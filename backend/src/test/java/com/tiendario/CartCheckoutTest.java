@@ -0,0 +1,244 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.CartCheckoutRequest;
+import com.tiendario.payload.request.PublicOrderRequest;
+import com.tiendario.repository.*;
+import com.tiendario.service.OrderEventDispatcher;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not @Transactional: a failed checkout has to roll back on its own
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class CartCheckoutTest {
+
+    private static final int BASKET_LINES = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private LoyaltyLedgerRepository ledgerRepository;
+
+    private Company sellerA;
+    private Company sellerB;
+    private List<Product> productsA;
+    private List<Product> productsB;
+
+    @BeforeEach
+    void setUp() {
+        sellerA = saveCompany("Cart Seller A", SubscriptionStatus.PAID);
+        sellerB = saveCompany("Cart Seller B", SubscriptionStatus.PAID);
+        productsA = new ArrayList<>();
+        productsB = new ArrayList<>();
+        for (int i = 0; i < BASKET_LINES / 2; i++) {
+            productsA.add(saveProduct(sellerA, "Cart A" + i, "10.00"));
+            productsB.add(saveProduct(sellerB, "Cart B" + i, "20.00"));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orderEventDispatcher.awaitIdle(10_000);
+        for (Company company : List.of(sellerA, sellerB)) {
+            for (Customer customer : customerRepository.findByCompanyId(company.getId())) {
+                ledgerRepository.deleteAll(ledgerRepository.findByCustomerIdOrderByIdDesc(customer.getId(),
+                        Pageable.unpaged()));
+            }
+            saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+            notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+            customerRepository.deleteAll(customerRepository.findByCompanyId(company.getId()));
+            productRepository.deleteAll(productRepository.findByCompanyId(company.getId()));
+            companyRepository.delete(company);
+        }
+    }
+
+    private Company saveCompany(String name, SubscriptionStatus status) {
+        Company company = new Company();
+        company.setName(name);
+        company.setSubscriptionStatus(status);
+        return companyRepository.save(company);
+    }
+
+    private Product saveProduct(Company company, String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStock(10);
+        product.setSku(name.replace(' ', '-'));
+        product.setCompany(company);
+        return productRepository.save(product);
+    }
+
+    private static CartCheckoutRequest.CartLine line(Product product, int quantity) {
+        CartCheckoutRequest.CartLine line = new CartCheckoutRequest.CartLine();
+        line.setProductId(product.getId());
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private CartCheckoutRequest cart(List<CartCheckoutRequest.CartLine> lines) {
+        CartCheckoutRequest request = new CartCheckoutRequest();
+        request.setItems(lines);
+        request.setCustomerName("Carla");
+        request.setCustomerEmail("carla@example.com");
+        request.setCustomerAddress("Calle 1");
+        return request;
+    }
+
+    private int stockOf(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStock();
+    }
+
+    @Test
+    void checkout_ShouldSplitCartIntoOneSalePerSeller() throws Exception {
+        List<CartCheckoutRequest.CartLine> lines = new ArrayList<>();
+        lines.add(line(productsA.get(0), 2));
+        lines.add(line(productsA.get(1), 1));
+        lines.add(line(productsB.get(0), 3));
+        lines.add(line(productsA.get(0), 1)); // same product again
+
+        mockMvc.perform(post("/api/public/checkout")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cart(lines))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders", hasSize(2)));
+
+        List<Sale> salesA = saleRepository.findByCompanyIdOrderByDateDesc(sellerA.getId());
+        List<Sale> salesB = saleRepository.findByCompanyIdOrderByDateDesc(sellerB.getId());
+        assertEquals(1, salesA.size());
+        assertEquals(1, salesB.size());
+        assertEquals(0, new BigDecimal("40.00").compareTo(salesA.get(0).getTotalAmount()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(salesB.get(0).getTotalAmount()));
+
+        assertEquals(7, stockOf(productsA.get(0)));
+        assertEquals(9, stockOf(productsA.get(1)));
+        assertEquals(7, stockOf(productsB.get(0)));
+        assertEquals(1, customerRepository.findByCompanyId(sellerA.getId()).size());
+        assertEquals(1, customerRepository.findByCompanyId(sellerB.getId()).size());
+
+        assertTrue(orderEventDispatcher.awaitIdle(10_000));
+        assertEquals(1, notificationRepository.findByCompanyIdOrderByCreatedAtDesc(sellerA.getId()).size());
+        assertEquals(1, notificationRepository.findByCompanyIdOrderByCreatedAtDesc(sellerB.getId()).size());
+    }
+
+    @Test
+    void checkout_ShouldReserveAllStockOrNothing() throws Exception {
+        List<CartCheckoutRequest.CartLine> lines = new ArrayList<>();
+        lines.add(line(productsA.get(0), 5));
+        lines.add(line(productsB.get(0), 11)); // more than in stock
+
+        mockMvc.perform(post("/api/public/checkout")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cart(lines))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("Insufficient stock")));
+
+        assertEquals(10, stockOf(productsA.get(0)));
+        assertEquals(10, stockOf(productsB.get(0)));
+        assertTrue(saleRepository.findByCompanyIdOrderByDateDesc(sellerA.getId()).isEmpty());
+        assertTrue(customerRepository.findByCompanyId(sellerA.getId()).isEmpty());
+    }
+
+    @Test
+    void checkout_ShouldRejectFreePlanSellers() throws Exception {
+        sellerB.setSubscriptionStatus(SubscriptionStatus.FREE);
+        companyRepository.save(sellerB);
+
+        mockMvc.perform(post("/api/public/checkout")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cart(List.of(line(productsA.get(0), 1),
+                        line(productsB.get(0), 1))))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("FREE Plan")));
+
+        assertEquals(10, stockOf(productsA.get(0)));
+    }
+
+    @Test
+    void checkout_ShouldUseFarFewerStatementsThanOneOrderPerLine() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // One POST /order per line, as the storefront used to do
+        statistics.clear();
+        for (Product product : productsA) {
+            placeSingleOrder(product);
+        }
+        for (Product product : productsB) {
+            placeSingleOrder(product);
+        }
+        assertTrue(orderEventDispatcher.awaitIdle(10_000));
+        long perLineStatements = statistics.getPrepareStatementCount();
+
+        List<CartCheckoutRequest.CartLine> lines = new ArrayList<>();
+        productsA.forEach(product -> lines.add(line(product, 1)));
+        productsB.forEach(product -> lines.add(line(product, 1)));
+        statistics.clear();
+        mockMvc.perform(post("/api/public/checkout")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cart(lines))))
+                .andExpect(status().isOk());
+        assertTrue(orderEventDispatcher.awaitIdle(10_000));
+        long checkoutStatements = statistics.getPrepareStatementCount();
+
+        assertTrue(checkoutStatements * 3 <= perLineStatements,
+                "checkout used " + checkoutStatements + " statements, single orders " + perLineStatements);
+    }
+
+    private void placeSingleOrder(Product product) throws Exception {
+        PublicOrderRequest order = new PublicOrderRequest();
+        order.setProductId(product.getId());
+        order.setQuantity(1);
+        order.setCustomerName("Carla");
+        order.setCustomerEmail("carla@example.com");
+        mockMvc.perform(post("/api/public/order")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isOk());
+    }
+}
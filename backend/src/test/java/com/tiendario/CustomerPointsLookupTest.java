@@ -0,0 +1,141 @@
+package com.tiendario;
+
+import com.tiendario.domain.Company;
+import com.tiendario.domain.Customer;
+import com.tiendario.domain.SubscriptionStatus;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.CustomerRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The public loyalty lookup used to load every customer on the platform.
+ * Seeds 100k customers and checks each lookup is a single statement answered
+ * from the normalized email index.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@Transactional
+public class CustomerPointsLookupTest {
+
+    private static final int CUSTOMERS = 100_000;
+    private static final int LOOKUPS = 50;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Company storeA;
+    private Company storeB;
+
+    @BeforeEach
+    void setUp() {
+        storeA = saveCompany("Points Store A");
+        storeB = saveCompany("Points Store B");
+
+        // Bulk rows straight through JDBC, spread over both stores
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String email = "shopper" + i + "@example.com";
+            rows.add(new Object[] { "Shopper " + i, email, email, 10, i % 2 == 0 ? storeA.getId() : storeB.getId(),
+                    now });
+            if (rows.size() == 5_000) {
+                insertCustomers(rows);
+                rows.clear();
+            }
+        }
+        insertCustomers(rows);
+
+        // The same shopper in both stores, with inconsistent casing
+        saveCustomer(storeA, "Ana.Loyal@Example.com ", 120);
+        saveCustomer(storeB, "ana.loyal@example.com", 30);
+    }
+
+    private Company saveCompany(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        return companyRepository.save(company);
+    }
+
+    private void saveCustomer(Company company, String email, int points) {
+        Customer customer = new Customer();
+        customer.setName("Ana");
+        customer.setEmail(email);
+        customer.setLoyaltyPoints(points);
+        customer.setCompany(company);
+        customerRepository.saveAndFlush(customer);
+    }
+
+    private void insertCustomers(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO customers (id, name, email, normalized_email, loyalty_points, "
+                    + "company_id, created_at) VALUES (NEXT VALUE FOR customers_seq, ?, ?, ?, ?, ?, ?)", rows);
+        }
+    }
+
+    @Test
+    void customerPoints_ShouldSumAcrossStoresIgnoringCase() throws Exception {
+        mockMvc.perform(get("/api/public/customer/points").param("email", "ANA.LOYAL@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.points", is(150)));
+        mockMvc.perform(get("/api/public/customer/points").param("email", "nobody@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.points", is(0)));
+    }
+
+    @Test
+    void customerPoints_ShouldRunOneStatementPerLookup() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            mockMvc.perform(get("/api/public/customer/points").param("email", "shopper" + (i * 997) + "@example.com"))
+                    .andExpect(jsonPath("$.points", is(10)));
+        }
+
+        // One SUM per lookup, whatever the number of customers; none are loaded as entities
+        assertEquals(LOOKUPS, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityStatistics(Customer.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void customerPoints_ShouldUseNormalizedEmailIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT SUM(loyalty_points) FROM customers WHERE normalized_email = 'ana.loyal@example.com'",
+                String.class);
+
+        assertThat(plan.toUpperCase(), containsString("IDX_CUSTOMERS_NORMALIZED_EMAIL"));
+    }
+}
@@ -0,0 +1,190 @@
+package com.tiendario;
+
+import com.tiendario.domain.*;
+import com.tiendario.repository.*;
+import com.tiendario.security.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class CustomerPortalControllerTest {
+
+    private static final String EMAIL = "portal.buyer@example.com";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CatalogProductRepository catalogProductRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    private Company storeA;
+    private Company storeB;
+    private Product plainProduct;
+    private Product catalogLinkedProduct;
+    private final List<Sale> buyerSales = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        storeA = saveCompany("Portal Store A");
+        storeB = saveCompany("Portal Store B");
+
+        CatalogProduct catalogProduct = new CatalogProduct();
+        catalogProduct.setName("Catalog Coffee 500g");
+        catalogProduct = catalogProductRepository.save(catalogProduct);
+
+        plainProduct = saveProduct(storeA, "Local Bread", null);
+        catalogLinkedProduct = saveProduct(storeB, "coffee", catalogProduct);
+
+        // The same shopper in both stores, with differently cased emails
+        Customer inA = saveCustomer(storeA, EMAIL);
+        Customer inB = saveCustomer(storeB, "Portal.Buyer@Example.com");
+        Customer someoneElse = saveCustomer(storeA, "other@example.com");
+
+        LocalDateTime start = LocalDateTime.now().minusDays(10);
+        for (int i = 0; i < 3; i++) {
+            buyerSales.add(saveSale(storeA, inA, plainProduct, 1 + i, start.plusDays(i)));
+        }
+        buyerSales.add(saveSale(storeB, inB, catalogLinkedProduct, 2, start.plusDays(5)));
+        saveSale(storeA, someoneElse, plainProduct, 7, start.plusDays(6));
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(99L, EMAIL, "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_CLIENT")), null, true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    private Company saveCompany(String name) {
+        Company company = new Company();
+        company.setName(name);
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        return companyRepository.save(company);
+    }
+
+    private Product saveProduct(Company company, String name, CatalogProduct catalogProduct) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal("5.00"));
+        product.setStock(100);
+        product.setSku(name.replace(' ', '-'));
+        product.setCompany(company);
+        product.setCatalogProduct(catalogProduct);
+        return productRepository.save(product);
+    }
+
+    private Customer saveCustomer(Company company, String email) {
+        Customer customer = new Customer();
+        customer.setName("Portal Buyer");
+        customer.setEmail(email);
+        customer.setCompany(company);
+        return customerRepository.save(customer);
+    }
+
+    private Sale saveSale(Company company, Customer customer, Product product, int quantity, LocalDateTime date) {
+        Sale sale = new Sale();
+        sale.setCompany(company);
+        sale.setCustomer(customer);
+        sale.setDate(date);
+        sale.setStatus(SaleStatus.PAID);
+
+        SaleItem item = new SaleItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(product.getPrice());
+        item.setSubtotal(product.getPrice().multiply(new BigDecimal(quantity)));
+        item.setSale(sale);
+        sale.setItems(new ArrayList<>(List.of(item)));
+        sale.setTotalAmount(item.getSubtotal());
+        return saleRepository.save(sale);
+    }
+
+    @Test
+    void getMyOrders_ShouldReturnOrdersFromEveryStoreNewestFirst() throws Exception {
+        mockMvc.perform(get("/api/customer-portal/orders"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].id", is(buyerSales.get(3).getId().intValue())))
+                .andExpect(jsonPath("$[0].company.name", is("Portal Store B")))
+                .andExpect(jsonPath("$[0].items", hasSize(1)))
+                .andExpect(jsonPath("$[0].items[0].name", is("Catalog Coffee 500g")))
+                .andExpect(jsonPath("$[0].items[0].quantity", is(2)))
+                .andExpect(jsonPath("$[3].items[0].name", is("Local Bread")))
+                .andExpect(jsonPath("$[*].totalAmount", everyItem(notNullValue())));
+    }
+
+    @Test
+    void getMyOrders_ShouldPageWithCursor() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/customer-portal/orders").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+        String cursor = first.getResponse().getHeader("X-Next-Cursor");
+        assertEquals(String.valueOf(buyerSales.get(1).getId()), cursor);
+
+        mockMvc.perform(get("/api/customer-portal/orders").param("before", cursor).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(buyerSales.get(0).getId().intValue())))
+                .andExpect(jsonPath("$[0].items[0].quantity", is(1)));
+    }
+
+    @Test
+    void getDashboardStats_ShouldAggregateAcrossStores() throws Exception {
+        // 1, 2 and 3 breads plus 2 coffees at 5.00 each
+        mockMvc.perform(get("/api/customer-portal/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalOrders", is(4)))
+                .andExpect(jsonPath("$.totalSpent", is(40.0)))
+                .andExpect(jsonPath("$.lastOrderDate", notNullValue()));
+    }
+
+    @Test
+    void getDashboardStats_ShouldReturnZerosWithoutOrders() throws Exception {
+        UserDetailsImpl newcomer = new UserDetailsImpl(100L, "newcomer@example.com", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_CLIENT")), null, true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(newcomer, null, newcomer.getAuthorities()));
+
+        mockMvc.perform(get("/api/customer-portal/dashboard"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalOrders", is(0)))
+                .andExpect(jsonPath("$.totalSpent", is(0)))
+                .andExpect(jsonPath("$.lastOrderDate", nullValue()));
+    }
+}
@@ -130,4 +130,35 @@ public class DashboardControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.lowStockCount", greaterThanOrEqualTo(1)));
     }
+
+    @Test
+    void getDashboardSummary_ShouldAggregateExactTotals() throws Exception {
+        mockMvc.perform(get("/api/dashboard/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lowStockCount", is(1)))
+                .andExpect(jsonPath("$.revenueToday", is(200.0)))
+                .andExpect(jsonPath("$.salesCountToday", is(1)))
+                .andExpect(jsonPath("$.averageMargin", is(28.57))) // 100 profit over 350 revenue
+                .andExpect(jsonPath("$.pendingOrders", is(0)))
+                .andExpect(jsonPath("$.processingOrders", is(1)))
+                .andExpect(jsonPath("$.cancelledOrders", is(0)));
+    }
+
+    @Test
+    void getDashboardSummary_ShouldRefreshCachedSummaryAfterSaleWrite() throws Exception {
+        mockMvc.perform(get("/api/dashboard/summary"))
+                .andExpect(jsonPath("$.pendingOrders", is(0)));
+
+        Sale sale = new Sale();
+        sale.setCompany(testCompany);
+        sale.setDate(LocalDateTime.now());
+        sale.setStatus(SaleStatus.PENDING);
+        sale.setTotalAmount(new BigDecimal("50.00"));
+        saleRepository.saveAndFlush(sale);
+
+        mockMvc.perform(get("/api/dashboard/summary"))
+                .andExpect(jsonPath("$.pendingOrders", is(1)))
+                .andExpect(jsonPath("$.salesCountToday", is(2)))
+                .andExpect(jsonPath("$.revenueToday", is(250.0)));
+    }
 }
@@ -0,0 +1,269 @@
+package com.tiendario;
+
+import com.tiendario.domain.*;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.service.EmbeddedSearchIndex;
+import com.tiendario.service.ProductIndexService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not @Transactional: the index is only updated after a commit
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EmbeddedSearchIndexTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EmbeddedSearchIndex embeddedSearchIndex;
+
+    @Autowired
+    private ProductIndexService productIndexService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private Company company;
+    private Product jeans;
+    private Product shorts;
+
+    @BeforeEach
+    void setUp() {
+        company = new Company();
+        company.setName("Embedded Index Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        jeans = saveProduct("Pantalón Vaquero Zeta", "Pantalón de mezclilla azul", "EMB-001");
+        shorts = saveProduct("Bermuda Zeta", "Corto, con bolsillos como un pantalón", "EMB-002");
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Product p : List.of(jeans, shorts)) {
+            productRepository.deleteById(p.getId());
+            productIndexService.deleteProductIndex(p.getId());
+        }
+        companyRepository.delete(company);
+    }
+
+    private Product saveProduct(String name, String description, String sku) {
+        Product p = new Product();
+        p.setName(name);
+        p.setDescription(description);
+        p.setPrice(new BigDecimal("40.00"));
+        p.setStock(5);
+        p.setSku(sku);
+        p.setCompany(company);
+        p = productRepository.save(p);
+        productIndexService.indexProduct(p);
+        return p;
+    }
+
+    @Test
+    void search_ShouldFoldAccentsAndPluralsAndRankNameMatchesFirst() {
+        List<String> names = embeddedSearchIndex.search("pantalones zeta");
+
+        assertEquals(List.of("pantalón vaquero zeta", "bermuda zeta"), names);
+    }
+
+    @Test
+    void search_ShouldMatchLastTermAsPrefix() {
+        assertEquals(List.of("bermuda zeta"), embeddedSearchIndex.search("bermu"));
+        assertTrue(embeddedSearchIndex.search("bermuda zzz").isEmpty());
+    }
+
+    @Test
+    void search_ShouldForgetDeletedProducts() {
+        productIndexService.deleteProductIndex(shorts.getId());
+
+        assertEquals(List.of("pantalón vaquero zeta"), embeddedSearchIndex.search("zeta"));
+    }
+
+    @Test
+    void publicSearch_ShouldServeRankedBestOffers() throws Exception {
+        mockMvc.perform(get("/api/public/search").param("q", "PANTALON zeta"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(jeans.getId().intValue())))
+                .andExpect(jsonPath("$[1].id", is(shorts.getId().intValue())));
+    }
+
+    @Test
+    void publicSearch_ShouldPageWithOpaqueCursors() throws Exception {
+        String cursor = mockMvc.perform(get("/api/public/search").param("q", "pantalon").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(jeans.getId().intValue())))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        assertNotNull(cursor);
+        assertNotEquals("1", cursor);
+
+        mockMvc.perform(get("/api/public/search").param("q", "pantalon").param("limit", "1").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(shorts.getId().intValue())))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        // Not a token prefix: the index answers with no match and the listing is not scanned
+        mockMvc.perform(get("/api/public/search").param("q", "eta"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void publicSearch_ShouldPageTheListingByName_WhenNoIndexIsReady() throws Exception {
+        ReflectionTestUtils.setField(embeddedSearchIndex, "ready", false);
+        try {
+            String nameCursor = mockMvc.perform(get("/api/public/search").param("q", "eta").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id", is(shorts.getId().intValue())))
+                    .andReturn().getResponse().getHeader("X-Next-Cursor");
+            mockMvc.perform(get("/api/public/search").param("q", "eta").param("limit", "1")
+                    .param("after", nameCursor))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id", not(is(shorts.getId().intValue()))));
+        } finally {
+            ReflectionTestUtils.setField(embeddedSearchIndex, "ready", true);
+        }
+    }
+
+    @Test
+    void publicSearch_ShouldRejectInvalidOrStaleCursors() throws Exception {
+        mockMvc.perform(get("/api/public/search").param("q", "zeta").param("after", "1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/public/search").param("q", "zeta").param("after", "not a cursor"))
+                .andExpect(status().isBadRequest());
+
+        String cursor = mockMvc.perform(get("/api/public/search").param("q", "zeta").param("limit", "1"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+        // An offset into the index results cannot be continued from the listing
+        ReflectionTestUtils.setField(embeddedSearchIndex, "ready", false);
+        try {
+            mockMvc.perform(get("/api/public/search").param("q", "zeta").param("limit", "1").param("after", cursor))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            ReflectionTestUtils.setField(embeddedSearchIndex, "ready", true);
+        }
+    }
+
+    private EmbeddedSearchIndex snapshotIndex(Path path) {
+        EmbeddedSearchIndex index = new EmbeddedSearchIndex(path.toString());
+        ReflectionTestUtils.setField(index, "productRepository", productRepository);
+        return index;
+    }
+
+    // Jeans is saved under a name the database does not have, so a loaded snapshot is observable
+    private Path writeSnapshot() {
+        Path path = tempDir.resolve("index").resolve("search-index.bin");
+        EmbeddedSearchIndex index = snapshotIndex(path);
+        index.load();
+        Product renamed = new Product();
+        renamed.setId(jeans.getId());
+        renamed.setName("Marcador Instantánea");
+        renamed.setUpdatedAt(jeans.getUpdatedAt());
+        index.indexAfterCommit(renamed);
+        index.saveSnapshot();
+        assertTrue(Files.exists(path));
+        return path;
+    }
+
+    @Test
+    void snapshot_ShouldRoundTripAndBeDiscardedAfterLoading() throws Exception {
+        Path path = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(path);
+        // Plain data, not a Java serialization stream
+        assertFalse(bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED);
+
+        EmbeddedSearchIndex loaded = snapshotIndex(path);
+        loaded.load();
+
+        assertEquals(List.of("marcador instantánea"), loaded.search("marcador"));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void snapshot_ShouldBeRebuiltWhenAProductWasEditedInPlace() throws Exception {
+        Path path = writeSnapshot();
+        // Same row count and max id; only the latest update moves
+        Thread.sleep(5);
+        jeans.setName("Pantalón Vaquero Marcador");
+        jeans = productRepository.save(jeans);
+
+        EmbeddedSearchIndex loaded = snapshotIndex(path);
+        loaded.load();
+
+        assertEquals(List.of("pantalón vaquero marcador"), loaded.search("marcador"));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void snapshot_ShouldBeRebuiltWhenCorrupted() throws Exception {
+        Path path = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 20] ^= 0x01;
+        Files.write(path, bytes);
+
+        EmbeddedSearchIndex loaded = snapshotIndex(path);
+        loaded.load();
+
+        assertTrue(loaded.search("marcador").isEmpty());
+        assertTrue(loaded.search("vaquero").contains("pantalón vaquero zeta"));
+    }
+
+    @Test
+    void snapshot_ShouldIgnoreJavaSerializedFiles() throws Exception {
+        Path path = tempDir.resolve("search-index.bin");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(path))) {
+            out.writeLong(1L);
+            out.writeObject(new ArrayList<>(List.of("not an index")));
+        }
+
+        EmbeddedSearchIndex loaded = snapshotIndex(path);
+        loaded.load();
+
+        assertTrue(loaded.search("vaquero").contains("pantalón vaquero zeta"));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void snapshot_ShouldIgnoreFilesOtherUsersCanWrite() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path path = writeSnapshot();
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-rw-rw-"));
+
+        EmbeddedSearchIndex loaded = snapshotIndex(path);
+        loaded.load();
+
+        assertTrue(loaded.search("marcador").isEmpty());
+    }
+}
@@ -0,0 +1,217 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.repository.*;
+import com.tiendario.security.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not @Transactional: the export reads on an async thread, in its own transaction
+@SpringBootTest
+@AutoConfigureMockMvc
+public class HistoryExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    private Company company;
+    private Company otherCompany;
+    private Product bread;
+    private Product milk;
+
+    @BeforeEach
+    void setUp() {
+        company = saveCompany("Export Co");
+        otherCompany = saveCompany("Other Export Co");
+        bread = saveProduct(company, "Bread", "2.50");
+        milk = saveProduct(company, "Milk, whole", "1.20");
+        Product foreign = saveProduct(otherCompany, "Foreign", "9.99");
+
+        Customer customer = new Customer();
+        customer.setName("=HYPERLINK(\"x\")");
+        customer.setEmail("export@example.com");
+        customer.setCompany(company);
+        customer = customerRepository.save(customer);
+
+        saveSale(company, customer, List.of(bread, milk), List.of(2, 3));
+        saveSale(company, null, List.of(bread), List.of(1));
+        saveSale(company, null, List.of(), List.of());
+        saveSale(otherCompany, null, List.of(foreign), List.of(1));
+
+        Supplier supplier = new Supplier();
+        supplier.setName("Mill \"Central\"");
+        supplier.setCompany(company);
+        supplier = supplierRepository.save(supplier);
+
+        Purchase purchase = new Purchase();
+        purchase.setCompany(company);
+        purchase.setSupplier(supplier);
+        purchase.setDate(LocalDateTime.now());
+        purchase.setInvoiceNumber("INV-1");
+        PurchaseItem item = new PurchaseItem();
+        item.setProduct(bread);
+        item.setQuantity(10);
+        item.setUnitCost(new BigDecimal("1.10"));
+        item.setPurchase(purchase);
+        purchase.getItems().add(item);
+        purchase.setTotal(new BigDecimal("11.00"));
+        purchaseRepository.save(purchase);
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Company c : List.of(company, otherCompany)) {
+            purchaseRepository.deleteAll(purchaseRepository.findByCompanyIdOrderByDateDesc(c.getId()));
+            supplierRepository.deleteAll(supplierRepository.findByCompanyId(c.getId()));
+            saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(c.getId()));
+            customerRepository.deleteAll(customerRepository.findByCompanyId(c.getId()));
+            productRepository.deleteAll(productRepository.findByCompanyId(c.getId()));
+            companyRepository.delete(c);
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    private Company saveCompany(String name) {
+        Company c = new Company();
+        c.setName(name);
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        return companyRepository.save(c);
+    }
+
+    private Product saveProduct(Company owner, String name, String price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStock(50);
+        product.setSku("EXP-" + name.replaceAll("\\W", ""));
+        product.setCompany(owner);
+        return productRepository.save(product);
+    }
+
+    private void saveSale(Company owner, Customer customer, List<Product> products, List<Integer> quantities) {
+        Sale sale = new Sale();
+        sale.setCompany(owner);
+        sale.setCustomer(customer);
+        sale.setDate(LocalDateTime.now());
+        sale.setStatus(SaleStatus.PAID);
+        sale.setItems(new ArrayList<>());
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < products.size(); i++) {
+            SaleItem item = new SaleItem();
+            item.setProduct(products.get(i));
+            item.setQuantity(quantities.get(i));
+            item.setUnitPrice(products.get(i).getPrice());
+            item.setSubtotal(products.get(i).getPrice().multiply(new BigDecimal(quantities.get(i))));
+            item.setSale(sale);
+            sale.getItems().add(item);
+            total = total.add(item.getSubtotal());
+        }
+        sale.setTotalAmount(total);
+        saleRepository.save(sale);
+    }
+
+    private String export(String url, String format, String contentType) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString(contentType)))
+                .andExpect(header().string("Content-Disposition", containsString("attachment")))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void exportSalesCsv_ShouldWriteOneLinePerItem() throws Exception {
+        String[] lines = export("/api/sales/export", "csv", "text/csv").split("\r\n");
+
+        assertEquals("sale_id,date,status,customer_name,customer_email,total_amount,product_id,sku,"
+                + "product_name,quantity,unit_price,subtotal", lines[0]);
+        // Two items, one item, and a sale without items; nothing from the other company
+        assertEquals(5, lines.length);
+        assertTrue(lines[1].contains(",\"'=HYPERLINK(\"\"x\"\")\",export@example.com,"), lines[1]);
+        assertTrue(lines[2].contains(",\"Milk, whole\",3,1.20,3.60"), lines[2]);
+        assertTrue(lines[4].endsWith(",0.00,,,,,,"), lines[4]);
+        for (int i = 1; i < lines.length; i++) {
+            assertFalse(lines[i].contains("Foreign"));
+        }
+    }
+
+    @Test
+    void exportSalesNdjson_ShouldWriteOneDocumentPerSale() throws Exception {
+        String[] lines = export("/api/sales/export", "ndjson", "application/x-ndjson").split("\n");
+
+        assertEquals(3, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(2, first.get("items").size());
+        assertEquals("Bread", first.get("items").get(0).get("productName").asText());
+        assertEquals(0, new BigDecimal("8.60").compareTo(first.get("totalAmount").decimalValue()));
+        assertEquals(1, objectMapper.readTree(lines[1]).get("items").size());
+        assertEquals(0, objectMapper.readTree(lines[2]).get("items").size());
+    }
+
+    @Test
+    void exportPurchasesCsv_ShouldIncludeSupplierAndLineCost() throws Exception {
+        String[] lines = export("/api/purchases/export", "csv", "text/csv").split("\r\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].contains(",INV-1,\"Mill \"\"Central\"\"\",11.00,"), lines[1]);
+        assertTrue(lines[1].endsWith(",Bread,10,1.10,11.00"), lines[1]);
+    }
+
+    @Test
+    void export_ShouldRejectUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/sales/export").param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+    }
+}
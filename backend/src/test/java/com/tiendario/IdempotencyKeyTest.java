@@ -0,0 +1,244 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.PublicOrderRequest;
+import com.tiendario.repository.*;
+import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.IdempotencyStore;
+import com.tiendario.service.OrderEventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Not @Transactional: the first request has to commit before its response is stored
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotencyKeyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private LoyaltyLedgerRepository ledgerRepository;
+
+    private Company company;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        Company c = new Company();
+        c.setName("Idempotent Co");
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(c);
+
+        Product p = new Product();
+        p.setName("Retry Product");
+        p.setPrice(new BigDecimal("15.00"));
+        p.setStock(20);
+        p.setSku("IDEM-001");
+        p.setCompany(company);
+        product = productRepository.save(p);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orderEventDispatcher.awaitIdle(10_000);
+        for (Customer customer : customerRepository.findByCompanyId(company.getId())) {
+            ledgerRepository.deleteAll(ledgerRepository.findByCustomerIdOrderByIdDesc(customer.getId(),
+                    Pageable.unpaged()));
+        }
+        saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+        notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+        customerRepository.deleteAll(customerRepository.findByCompanyId(company.getId()));
+        productRepository.deleteById(product.getId());
+        companyRepository.delete(company);
+        SecurityContextHolder.clearContext();
+    }
+
+    private String orderBody(int quantity) throws Exception {
+        return orderBody(quantity, "retry@example.com");
+    }
+
+    private String orderBody(int quantity, String email) throws Exception {
+        PublicOrderRequest order = new PublicOrderRequest();
+        order.setProductId(product.getId());
+        order.setQuantity(quantity);
+        order.setCustomerEmail(email);
+        order.setCustomerName("Rita");
+        return objectMapper.writeValueAsString(order);
+    }
+
+    private MockHttpServletResponse postOrder(String key, String body) throws Exception {
+        return mockMvc.perform(post("/api/public/order")
+                .header("Idempotency-Key", key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andReturn().getResponse();
+    }
+
+    private int stock() {
+        return productRepository.findById(product.getId()).orElseThrow().getStock();
+    }
+
+    @Test
+    void retriedOrder_ShouldReplayTheFirstResponse() throws Exception {
+        String body = orderBody(2);
+        MockHttpServletResponse first = postOrder("order-key-1", body);
+        MockHttpServletResponse retry = postOrder("order-key-1", body);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(200, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertNull(first.getHeader("Idempotent-Replayed"));
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+
+        assertEquals(1, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+        assertEquals(18, stock());
+
+        // A new key is a new order
+        assertEquals(200, postOrder("order-key-2", body).getStatus());
+        assertEquals(2, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+    }
+
+    @Test
+    void reusedKeyWithDifferentBody_ShouldBeRejected() throws Exception {
+        assertEquals(200, postOrder("order-key-3", orderBody(1)).getStatus());
+
+        MockHttpServletResponse reused = postOrder("order-key-3", orderBody(5));
+        assertEquals(422, reused.getStatus());
+        assertEquals(19, stock());
+    }
+
+    @Test
+    void sameKeyFromDifferentShoppers_ShouldNotShareResponses() throws Exception {
+        String secondBody = orderBody(1, "beto@example.com");
+        MockHttpServletResponse first = postOrder("checkout-1", orderBody(1, "ana@example.com"));
+        MockHttpServletResponse second = postOrder("checkout-1", secondBody);
+
+        assertEquals(200, first.getStatus());
+        assertEquals(200, second.getStatus());
+        assertNull(second.getHeader("Idempotent-Replayed"));
+        assertNotEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals(2, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+
+        // Each shopper's own retry is still recognized
+        MockHttpServletResponse retried = postOrder("checkout-1", secondBody);
+        assertEquals("true", retried.getHeader("Idempotent-Replayed"));
+        assertEquals(second.getContentAsString(), retried.getContentAsString());
+    }
+
+    @Test
+    void store_ShouldNeverHoldMoreThanMaxEntries() {
+        IdempotencyStore store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(store, "maxEntries", 10);
+
+        for (int i = 0; i < 100; i++) {
+            IdempotencyStore.Reservation reservation = store.reserve("key-" + i, "fingerprint");
+            store.complete(reservation.getEntry(), new IdempotencyStore.StoredResponse(200, null, new byte[0]));
+            assertTrue(store.size() <= 11, "store holds " + store.size());
+        }
+    }
+
+    @Test
+    void concurrentDuplicates_ShouldWaitForTheFirstExecution() throws Exception {
+        String body = orderBody(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return postOrder("burst-key", body);
+                }));
+            }
+            start.countDown();
+
+            Set<String> bodies = new HashSet<>();
+            for (Future<MockHttpServletResponse> result : results) {
+                MockHttpServletResponse response = result.get(30, TimeUnit.SECONDS);
+                assertEquals(200, response.getStatus());
+                bodies.add(response.getContentAsString());
+            }
+            assertEquals(1, bodies.size());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+        assertEquals(19, stock());
+    }
+
+    @Test
+    void retriedSale_ShouldBeRecordedOnce() throws Exception {
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        String sale = "{\"items\":[{\"product\":{\"id\":" + product.getId() + "},\"quantity\":3}]}";
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = mockMvc.perform(post("/api/sales/")
+                    .header("Idempotency-Key", "pos-sale-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(sale))
+                    .andReturn().getResponse();
+            assertEquals(200, response.getStatus());
+        }
+
+        assertEquals(1, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+        assertEquals(17, stock());
+    }
+}
@@ -0,0 +1,68 @@
+package com.tiendario;
+
+import com.tiendario.config.ItemSequenceInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ItemSequenceInitializerTest {
+
+    private static final String SEQUENCE = "catalog_products_seq";
+
+    @Autowired
+    private ItemSequenceInitializer itemSequenceInitializer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long insertedId;
+
+    @AfterEach
+    void tearDown() {
+        if (insertedId != null) {
+            jdbcTemplate.update("DELETE FROM catalog_products WHERE id = ?", insertedId);
+        }
+    }
+
+    private long nextValue() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + SEQUENCE, Long.class);
+    }
+
+    private void forgetAlignment() {
+        jdbcTemplate.update("DELETE FROM sequence_alignments WHERE sequence_name = ?", SEQUENCE);
+    }
+
+    @Test
+    void sequenceAheadOfRows_ShouldNeverMoveBack() {
+        long before = nextValue();
+        forgetAlignment();
+
+        itemSequenceInitializer.alignSequences();
+
+        // Blocks up to 'before' may be held by a running instance; none of them is handed out again
+        assertTrue(nextValue() > before);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sequence_alignments WHERE sequence_name = ?", Integer.class, SEQUENCE));
+    }
+
+    @Test
+    void sequenceBehindRows_ShouldMovePastHighestId() {
+        insertedId = nextValue() + 10_000;
+        jdbcTemplate.update("INSERT INTO catalog_products (id, sku, name) VALUES (?, ?, ?)",
+                insertedId, "SEQ-ALIGN-1", "Legacy row");
+        forgetAlignment();
+
+        itemSequenceInitializer.alignSequences();
+        assertTrue(nextValue() - 49 > insertedId);
+
+        // Recorded: a second boot leaves the sequence alone
+        long afterFirst = nextValue();
+        itemSequenceInitializer.alignSequences();
+        assertEquals(afterFirst + 50, nextValue());
+    }
+}
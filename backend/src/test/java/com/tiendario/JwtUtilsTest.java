@@ -0,0 +1,165 @@
+package com.tiendario;
+
+import com.tiendario.security.JwtUtils;
+import com.tiendario.security.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.jwt.verified-cache-size=" + JwtUtilsTest.CACHE_SIZE)
+public class JwtUtilsTest {
+
+    static final int CACHE_SIZE = 100;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TestClock clock;
+
+    @Value("${app.jwt.secret}")
+    private String jwtSecret;
+
+    private String token(String username, Long companyId) {
+        UserDetailsImpl user = new UserDetailsImpl(7L, username, null,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")), companyId, true);
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Test
+    void getVerifiedClaims_ShouldReturnPrincipalClaims() {
+        Claims claims = jwtUtils.getVerifiedClaims(token("manager", 3L));
+
+        assertNotNull(claims);
+        assertEquals("manager", claims.getSubject());
+        assertEquals(7L, claims.get("userId", Number.class).longValue());
+        assertEquals(3L, claims.get("companyId", Number.class).longValue());
+        assertEquals("ROLE_MANAGER", claims.get("role", String.class));
+    }
+
+    @Test
+    void getVerifiedClaims_ShouldServeRepeatedTokenFromCache() {
+        String token = token("cached", 3L);
+
+        assertSame(jwtUtils.getVerifiedClaims(token), jwtUtils.getVerifiedClaims(token));
+    }
+
+    @Test
+    void getVerifiedClaims_ShouldRejectTamperedToken() {
+        String token = token("tampered", 3L);
+        jwtUtils.getVerifiedClaims(token);
+
+        // Flip the first signature character; the last one carries padding bits
+        int signature = token.lastIndexOf('.') + 1;
+        char first = token.charAt(signature);
+        String tampered = token.substring(0, signature) + (first == 'A' ? 'B' : 'A') + token.substring(signature + 1);
+
+        assertNull(jwtUtils.getVerifiedClaims(tampered));
+    }
+
+    @Test
+    void getVerifiedClaims_ShouldStopServingCachedTokenAfterExpiry() {
+        String token = Jwts.builder()
+                .setSubject("short-lived")
+                .claim("userId", 7L)
+                .claim("role", "ROLE_MANAGER")
+                .setExpiration(new Date(clock.millis() + 1000))
+                .signWith(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS512)
+                .compact();
+        assertNotNull(jwtUtils.getVerifiedClaims(token));
+
+        clock.advance(Duration.ofMillis(2100));
+
+        assertNull(jwtUtils.getVerifiedClaims(token));
+    }
+
+    @Test
+    void getVerifiedClaims_ShouldStayCorrectAndBoundedUnderConcurrentUse() throws Exception {
+        String repeated = token("shared", 3L);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        assertEquals("shared", jwtUtils.getVerifiedClaims(repeated).getSubject());
+                        String own = token("user-" + thread + "-" + i, 3L);
+                        assertEquals("user-" + thread + "-" + i, jwtUtils.getVerifiedClaims(own).getSubject());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 800 distinct tokens went through a cache of 100
+        assertTrue(jwtUtils.verifiedCacheSize() <= CACHE_SIZE + threads,
+                "cache holds " + jwtUtils.verifiedCacheSize());
+    }
+
+    /**
+     * A clock the tests move forward instead of sleeping through token expiry.
+     */
+    static class TestClock extends Clock {
+        private volatile Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @TestConfiguration
+    static class ClockConfig {
+        @Bean
+        TestClock testClock() {
+            return new TestClock();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.LoyaltyRedeemRequest;
+import com.tiendario.payload.request.PublicOrderRequest;
+import com.tiendario.repository.*;
+import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.LoyaltyService;
+import com.tiendario.service.OrderEventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not @Transactional: earns, redemptions and compaction must commit to race each other
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LoyaltyLedgerTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LoyaltyService loyaltyService;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private LoyaltyLedgerRepository ledgerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    private Company company;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        Company c = new Company();
+        c.setName("Loyalty Co");
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(c);
+
+        Customer cu = new Customer();
+        cu.setName("Frequent Shopper");
+        cu.setEmail("frequent@example.com");
+        cu.setCompany(company);
+        customer = customerRepository.save(cu);
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        orderEventDispatcher.awaitIdle(10_000);
+        for (Customer c : customerRepository.findByCompanyId(company.getId())) {
+            ledgerRepository.deleteAll(ledgerRepository.findByCustomerIdOrderByIdDesc(c.getId(), Pageable.unpaged()));
+        }
+        saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+        notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+        customerRepository.deleteAll(customerRepository.findByCompanyId(company.getId()));
+        productRepository.deleteAll(productRepository.findByCompanyId(company.getId()));
+        companyRepository.delete(company);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void concurrentEarns_ShouldNotLosePointsWhileCompacting() throws Exception {
+        int earnsPerThread = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean earning = new AtomicBoolean(true);
+        try {
+            List<Future<?>> earners = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                earners.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < earnsPerThread; i++) {
+                        loyaltyService.earn(customer.getId(), null, 10);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> compactor = pool.submit(() -> {
+                start.await();
+                while (earning.get()) {
+                    loyaltyService.compact();
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> earner : earners) {
+                earner.get(30, TimeUnit.SECONDS);
+            }
+            earning.set(false);
+            compactor.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long expected = THREADS * earnsPerThread * 10L;
+        assertEquals(expected, loyaltyService.getBalance(customer.getId()));
+
+        loyaltyService.compact();
+        assertEquals(expected, customerRepository.findById(customer.getId()).orElseThrow().getLoyaltyPoints());
+        assertEquals(expected, loyaltyService.getBalance(customer.getId()));
+    }
+
+    @Test
+    void concurrentRedemptions_ShouldNeverOverdraw() throws Exception {
+        loyaltyService.earn(customer.getId(), null, 100);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        loyaltyService.redeem(customer.getId(), 30, "Descuento");
+                        return true;
+                    } catch (IllegalStateException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int redeemed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    redeemed++;
+                }
+            }
+            assertEquals(3, redeemed);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(10, loyaltyService.getBalance(customer.getId()));
+    }
+
+    @Test
+    void publicOrder_ShouldEarnPointsRedeemableByTheStore() throws Exception {
+        Product product = new Product();
+        product.setName("Loyalty Product");
+        product.setPrice(new BigDecimal("40.00"));
+        product.setStock(10);
+        product.setSku("LOYAL-001");
+        product.setCompany(company);
+        product = productRepository.save(product);
+
+        PublicOrderRequest order = new PublicOrderRequest();
+        order.setProductId(product.getId());
+        order.setQuantity(2);
+        order.setCustomerEmail("Frequent@Example.com");
+        order.setCustomerName("Frequent Shopper");
+        mockMvc.perform(post("/api/public/order")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isOk());
+        // Points are accrued after the order commits
+        assertTrue(orderEventDispatcher.awaitIdle(10_000));
+
+        mockMvc.perform(get("/api/public/customer/points").param("email", "frequent@example.com"))
+                .andExpect(jsonPath("$.points", is(80)));
+
+        Customer buyer = customerRepository.findByEmailAndCompanyId("Frequent@Example.com", company.getId())
+                .orElseThrow();
+        LoyaltyRedeemRequest redeem = new LoyaltyRedeemRequest();
+        redeem.setPoints(50);
+        mockMvc.perform(post("/api/customers/" + buyer.getId() + "/loyalty/redeem")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(redeem)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance", is(30)));
+        mockMvc.perform(post("/api/customers/" + buyer.getId() + "/loyalty/redeem")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(redeem)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/customers/" + buyer.getId() + "/loyalty"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance", is(30)))
+                .andExpect(jsonPath("$.entries", hasSize(2)))
+                .andExpect(jsonPath("$.entries[0].type", is("REDEEM")));
+    }
+}
@@ -4,6 +4,7 @@ import com.tiendario.domain.*;
 import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.NotificationRepository;
 import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.NotificationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,12 +14,14 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -36,6 +39,9 @@ public class NotificationControllerTest {
     @Autowired
     private CompanyRepository companyRepository;
 
+    @Autowired
+    private NotificationService notificationService;
+
     private Company testCompany;
     private Notification testNotification;
 
@@ -99,4 +105,75 @@ public class NotificationControllerTest {
         mockMvc.perform(put("/api/notifications/99999/read"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void markAsRead_ShouldIgnoreOtherCompaniesNotifications() throws Exception {
+        setupSecurityContext(testCompany.getId() + 1000);
+        mockMvc.perform(put("/api/notifications/" + testNotification.getId() + "/read"))
+                .andExpect(status().isOk());
+
+        assertFalse(notificationRepository.findById(testNotification.getId()).orElseThrow().isReadStatus());
+    }
+
+    @Test
+    void getNotifications_ShouldPageWithKeysetCursor() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            createNotification("Older " + i, false, LocalDateTime.now());
+        }
+
+        MvcResult first = mockMvc.perform(get("/api/notifications").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].message", is("Older 4")))
+                .andExpect(header().exists("X-Next-Cursor"))
+                .andReturn();
+
+        mockMvc.perform(get("/api/notifications").param("limit", "3")
+                .param("before", first.getResponse().getHeader("X-Next-Cursor")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].message", is("Older 1")))
+                .andExpect(jsonPath("$[1].message", is("Test notification message")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void markAllAsRead_ShouldUpdateUpToIdAndRefreshUnreadCount() throws Exception {
+        Notification second = createNotification("Second", false, LocalDateTime.now());
+        Notification third = createNotification("Third", false, LocalDateTime.now());
+
+        mockMvc.perform(get("/api/notifications/unread-count"))
+                .andExpect(content().string("3"));
+
+        mockMvc.perform(put("/api/notifications/read").param("upToId", second.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", is(2)));
+
+        assertTrue(notificationRepository.findById(second.getId()).orElseThrow().isReadStatus());
+        assertFalse(notificationRepository.findById(third.getId()).orElseThrow().isReadStatus());
+        mockMvc.perform(get("/api/notifications/unread-count"))
+                .andExpect(content().string("1"));
+    }
+
+    @Test
+    void purgeRead_ShouldDeleteOnlyOldReadNotifications() {
+        Notification oldRead = createNotification("Old read", true, LocalDateTime.now().minusDays(365));
+        Notification oldUnread = createNotification("Old unread", false, LocalDateTime.now().minusDays(365));
+        Notification recentRead = createNotification("Recent read", true, LocalDateTime.now());
+
+        assertTrue(notificationService.purgeRead() >= 1);
+
+        assertFalse(notificationRepository.existsById(oldRead.getId()));
+        assertTrue(notificationRepository.existsById(oldUnread.getId()));
+        assertTrue(notificationRepository.existsById(recentRead.getId()));
+    }
+
+    private Notification createNotification(String message, boolean read, LocalDateTime createdAt) {
+        Notification notification = new Notification();
+        notification.setMessage(message);
+        notification.setCompany(testCompany);
+        notification.setReadStatus(read);
+        notification.setCreatedAt(createdAt);
+        return notificationRepository.save(notification);
+    }
 }
@@ -0,0 +1,183 @@
+package com.tiendario;
+
+import com.jayway.jsonpath.JsonPath;
+import com.tiendario.domain.Company;
+import com.tiendario.domain.Notification;
+import com.tiendario.domain.SubscriptionStatus;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.NotificationRepository;
+import com.tiendario.security.JwtUtils;
+import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.NotificationStreamRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: events are only published after the notification commits
+@SpringBootTest
+@AutoConfigureMockMvc
+public class NotificationStreamTest {
+
+    private static final int IDLE_STREAMS = 2000;
+    private static final int MAX_EXTRA_THREADS = 16;
+    // Includes the MockMvc request and response each stream holds, so a real connection costs less
+    private static final long HEAP_BUDGET_PER_STREAM = 64 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private NotificationStreamRegistry streamRegistry;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private UserDetailsImpl manager;
+
+    private Company company;
+
+    @BeforeEach
+    void setUp() {
+        Company c = new Company();
+        c.setName("Stream Co");
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(c);
+
+        manager = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(manager, null, manager.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        streamRegistry.closeAll();
+        notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+        companyRepository.delete(company);
+        SecurityContextHolder.clearContext();
+    }
+
+    private MvcResult openStream() throws Exception {
+        return mockMvc.perform(get("/api/notifications/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private Notification notification(String message) {
+        Notification notification = new Notification();
+        notification.setCompany(company);
+        notification.setTitle("¡Nueva Venta!");
+        notification.setMessage(message);
+        notification.setCreatedAt(LocalDateTime.now());
+        return notification;
+    }
+
+    // Events are written on the sender pool once the notification commits
+    private String contentAfterSend(MvcResult stream) throws Exception {
+        assertTrue(streamRegistry.awaitIdle(5000));
+        return stream.getResponse().getContentAsString();
+    }
+
+    @Test
+    void stream_ShouldReceiveCommittedNotificationsOnly() throws Exception {
+        MvcResult stream = openStream();
+
+        // Rolled back: must never reach the stream
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            notificationRepository.save(notification("Pedido cancelado"));
+            status.setRollbackOnly();
+        });
+        notificationRepository.save(notification("Pedido de Ana por $80"));
+
+        String content = contentAfterSend(stream);
+        assertTrue(content.contains("event:notification"), content);
+        assertTrue(content.contains("Pedido de Ana por $80"), content);
+        assertFalse(content.contains("Pedido cancelado"), content);
+    }
+
+    @Test
+    void idleStreams_ShouldStayCheapAndAllReceiveEvents() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = usedHeap();
+        List<MvcResult> streams = new ArrayList<>(IDLE_STREAMS);
+        for (int i = 0; i < IDLE_STREAMS; i++) {
+            streams.add(openStream());
+        }
+
+        assertEquals(IDLE_STREAMS, streamRegistry.connectionCount());
+        long perStream = (usedHeap() - heapBefore) / IDLE_STREAMS;
+        assertTrue(perStream < HEAP_BUDGET_PER_STREAM, "each idle stream holds ~" + perStream + " bytes");
+        // Only the sender pool, whatever the number of streams
+        assertTrue(Thread.activeCount() - threadsBefore <= MAX_EXTRA_THREADS,
+                "threads grew from " + threadsBefore + " to " + Thread.activeCount());
+
+        notificationRepository.save(notification("Broadcast to all"));
+        assertTrue(contentAfterSend(streams.get(0)).contains("Broadcast"));
+        assertTrue(streams.get(IDLE_STREAMS - 1).getResponse().getContentAsString().contains("Broadcast"));
+    }
+
+    @Test
+    void stream_ShouldOpenWithStreamTicketOnly() throws Exception {
+        String loginToken = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(manager, null, manager.getAuthorities()));
+        SecurityContextHolder.clearContext();
+
+        String ticket = JsonPath.read(mockMvc.perform(post("/api/notifications/stream-ticket")
+                .header("Authorization", "Bearer " + loginToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), "$.ticket");
+
+        mockMvc.perform(get("/api/notifications/stream").param("ticket", ticket))
+                .andExpect(request().asyncStarted());
+
+        // The login token is not taken from the URL, and the ticket opens nothing else
+        mockMvc.perform(get("/api/notifications/stream").param("token", loginToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/notifications/stream").param("ticket", loginToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/notifications").header("Authorization", "Bearer " + ticket))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // Heap in use after a few GC requests; noisy for one object, fine averaged over thousands
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,248 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.PublicOrderRequest;
+import com.tiendario.repository.*;
+import com.tiendario.service.OrderEventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not @Transactional: order side effects only run once the order commits
+@SpringBootTest(properties = {
+        "app.orders.events.max-attempts=3",
+        "app.orders.events.retry-backoff-ms=10"
+})
+@AutoConfigureMockMvc
+public class OrderPlacedEventsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderEventDispatcher dispatcher;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private LoyaltyLedgerRepository ledgerRepository;
+
+    @Autowired
+    private OrderEventDeadLetterRepository deadLetterRepository;
+
+    @Autowired
+    private OrderEventOutboxRepository outboxRepository;
+
+    private Company company;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        Company c = new Company();
+        c.setName("Events Co");
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(c);
+
+        Product p = new Product();
+        p.setName("Event Product");
+        p.setPrice(new BigDecimal("25.00"));
+        p.setStock(10);
+        p.setSku("EVT-001");
+        p.setCompany(company);
+        product = productRepository.save(p);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.awaitIdle(10_000);
+        for (Sale sale : saleRepository.findByCompanyIdOrderByDateDesc(company.getId())) {
+            deadLetterRepository.deleteAll(deadLetterRepository.findBySaleId(sale.getId()));
+            outboxRepository.deleteAll(outboxRepository.findBySaleId(sale.getId()));
+        }
+        for (Customer customer : customerRepository.findByCompanyId(company.getId())) {
+            ledgerRepository.deleteAll(ledgerRepository.findByCustomerIdOrderByIdDesc(customer.getId(), Pageable.unpaged()));
+        }
+        saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+        notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+        customerRepository.deleteAll(customerRepository.findByCompanyId(company.getId()));
+        productRepository.deleteById(product.getId());
+        companyRepository.delete(company);
+    }
+
+    private Sale placeOrder() throws Exception {
+        PublicOrderRequest order = new PublicOrderRequest();
+        order.setProductId(product.getId());
+        order.setQuantity(2);
+        order.setCustomerEmail("events@example.com");
+        order.setCustomerName("Eva");
+        mockMvc.perform(post("/api/public/order")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(order)))
+                .andExpect(status().isOk());
+        return saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).get(0);
+    }
+
+    @Test
+    void placedOrder_ShouldNotifySellerAndAccruePointsAfterCommit() throws Exception {
+        Sale sale = placeOrder();
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        List<Notification> notifications = notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId());
+        assertEquals(1, notifications.size());
+        assertTrue(notifications.get(0).getMessage().contains("Eva"));
+
+        Customer buyer = customerRepository.findByEmailAndCompanyId("events@example.com", company.getId())
+                .orElseThrow();
+        List<LoyaltyLedgerEntry> entries = ledgerRepository.findByCustomerIdOrderByIdDesc(buyer.getId(),
+                Pageable.unpaged());
+        assertEquals(1, entries.size());
+        assertEquals(50, entries.get(0).getPoints());
+        assertEquals(sale.getId(), entries.get(0).getSaleId());
+        assertTrue(deadLetterRepository.findBySaleId(sale.getId()).isEmpty());
+        assertTrue(outboxRepository.findBySaleId(sale.getId()).isEmpty());
+    }
+
+    @Test
+    void rolledBackOrder_ShouldNotDispatchAnything() throws Exception {
+        Sale sale = placeOrder();
+        assertTrue(dispatcher.awaitIdle(10_000));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new OrderPlacedEvent(sale.getId(), company.getId()));
+            status.setRollbackOnly();
+        });
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        // Only the committed order notified the seller and earned points
+        assertEquals(1, notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()).size());
+        Long buyerId = sale.getCustomer().getId();
+        assertEquals(1, ledgerRepository.findByCustomerIdOrderByIdDesc(buyerId, Pageable.unpaged()).size());
+    }
+
+    @Test
+    void failingHandler_ShouldRetryThenDeadLetterAndReplay() throws Exception {
+        Sale sale = placeOrder();
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        AtomicBoolean broken = new AtomicBoolean(true);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicReference<CountDownLatch> gate = new AtomicReference<>(new CountDownLatch(0));
+        dispatcher.register("test-flaky", s -> {
+            attempts.incrementAndGet();
+            try {
+                gate.get().await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (broken.get()) {
+                throw new IllegalStateException("Downstream unavailable");
+            }
+        });
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> dispatcher.dispatch("test-flaky", sale.getId()));
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        assertEquals(3, attempts.get());
+        assertTrue(outboxRepository.findBySaleId(sale.getId()).isEmpty());
+        List<OrderEventDeadLetter> letters = deadLetterRepository.findBySaleId(sale.getId());
+        assertEquals(1, letters.size());
+        assertEquals("test-flaky", letters.get(0).getHandler());
+        assertEquals(3, letters.get(0).getAttempts());
+        assertTrue(letters.get(0).getLastError().contains("Downstream unavailable"));
+
+        // Still failing: the letter is kept, not replaced, and released for the next replay
+        assertTrue(dispatcher.replayDeadLetters() >= 1);
+        assertTrue(dispatcher.awaitIdle(10_000));
+        assertEquals(6, attempts.get());
+        List<OrderEventDeadLetter> kept = deadLetterRepository.findBySaleId(sale.getId());
+        assertEquals(1, kept.size());
+        assertEquals(letters.get(0).getId(), kept.get(0).getId());
+        assertEquals(6, kept.get(0).getAttempts());
+        assertNull(kept.get(0).getReplayingSince());
+
+        // While a replay runs its letter is still stored, and a second replay leaves it alone
+        broken.set(false);
+        gate.set(new CountDownLatch(1));
+        assertTrue(dispatcher.replayDeadLetters() >= 1);
+        assertNotNull(deadLetterRepository.findById(kept.get(0).getId()).orElseThrow().getReplayingSince());
+        dispatcher.replayDeadLetters();
+        gate.get().countDown();
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        assertEquals(7, attempts.get());
+        assertTrue(deadLetterRepository.findBySaleId(sale.getId()).isEmpty());
+    }
+
+    @Test
+    void runLostWithItsProcess_ShouldBeRecoveredFromTheOutbox() throws Exception {
+        Sale sale = placeOrder();
+        assertTrue(dispatcher.awaitIdle(10_000));
+        AtomicInteger runs = new AtomicInteger();
+        dispatcher.register("test-recovered", s -> runs.incrementAndGet());
+
+        // Committed with the order, then the process died before running it
+        OrderEventOutboxEntry lost = new OrderEventOutboxEntry();
+        lost.setHandler("test-recovered");
+        lost.setSaleId(sale.getId());
+        lost.setClaimedAt(LocalDateTime.now().minusHours(1));
+        lost = outboxRepository.save(lost);
+        // Taken just now by a live process, so left to it
+        OrderEventOutboxEntry running = new OrderEventOutboxEntry();
+        running.setHandler("test-recovered");
+        running.setSaleId(sale.getId());
+        running = outboxRepository.save(running);
+
+        dispatcher.recoverOutbox();
+        assertTrue(dispatcher.awaitIdle(10_000));
+
+        assertEquals(1, runs.get());
+        assertFalse(outboxRepository.existsById(lost.getId()));
+        assertTrue(outboxRepository.existsById(running.getId()));
+        assertEquals(0, dispatcher.recoverOutbox());
+    }
+}
@@ -0,0 +1,224 @@
+package com.tiendario;
+
+import com.tiendario.domain.*;
+import com.tiendario.repository.*;
+import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.ProductIndexService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Not @Transactional: every chunk commits in its own transaction. A chunk size
+// of 3 spreads these small files over several chunks.
+@SpringBootTest(properties = "app.products.import.chunk-size=3")
+@AutoConfigureMockMvc
+public class ProductImportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CatalogProductRepository catalogProductRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @SpyBean
+    private ProductIndexService productIndexService;
+
+    private Company company;
+
+    @BeforeEach
+    void setUp() {
+        company = new Company();
+        company.setName("Import Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        Product existing = new Product();
+        existing.setName("Already Here");
+        existing.setSku("IMP-EXISTING");
+        existing.setPrice(new BigDecimal("1.00"));
+        existing.setStock(1);
+        existing.setCompany(company);
+        productRepository.save(existing);
+
+        CatalogProduct shared = new CatalogProduct();
+        shared.setSku("IMP-SHARED");
+        shared.setName("Shared Catalog Soap");
+        catalogProductRepository.save(shared);
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<Product> products = productRepository.findByCompanyId(company.getId());
+        productRepository.deleteAll(products);
+        catalogProductRepository.deleteAll(catalogProductRepository.findBySkuIn(
+                products.stream().map(Product::getSku).collect(Collectors.toList())));
+        catalogProductRepository.findBySku("IMP-SHARED").ifPresent(catalogProductRepository::delete);
+        companyRepository.delete(company);
+        SecurityContextHolder.clearContext();
+    }
+
+    private static MockMultipartFile file(String name, String content) {
+        return new MockMultipartFile("file", name, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Product> productsBySku() {
+        return transactionTemplate.execute(status -> productRepository.findByCompanyId(company.getId()).stream()
+                .peek(p -> {
+                    if (p.getCatalogProduct() != null) {
+                        p.getCatalogProduct().getName();
+                    }
+                })
+                .collect(Collectors.toMap(Product::getSku, Function.identity())));
+    }
+
+    @Test
+    void importCsv_ShouldImportValidRowsAndReportTheRest() throws Exception {
+        String csv = "SKU,Name,Description,Price,Cost_Price,Stock,Min Stock,Category\r\n"
+                + "IMP-1,Jabón Azul,\"Barra, 120g\",1.50,0.90,10,2,Limpieza\r\n"
+                + "IMP-2,\"Detergente \"\"Max\"\"\",\"Dos\nlíneas\",4.20,,5,,Limpieza\r\n"
+                + "IMP-EXISTING,Duplicate Of Inventory,,2.00,,1,,\r\n"
+                + "IMP-3,Sin Precio,,,,1,,\r\n"
+                + "IMP-1,Repeated In File,,1.00,,1,,\r\n"
+                + "\r\n"
+                + "IMP-SHARED,Soap,,3.00,,7,,Limpieza\r\n"
+                + "IMP-4,Cepillo,,abc,,1,,\r\n"
+                + "IMP-5,Esponja,,0.80,,-1,,\r\n"
+                + "IMP-6,Trapo,,0.60,,3,,\r\n";
+
+        mockMvc.perform(multipart("/api/products/import").file(file("products.csv", csv)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(4)))
+                .andExpect(jsonPath("$.failed", is(5)))
+                .andExpect(jsonPath("$.errors[*].row", contains(3, 4, 5, 8, 9)))
+                .andExpect(jsonPath("$.errors[0].sku", is("IMP-EXISTING")))
+                .andExpect(jsonPath("$.errors[0].message", containsString("already exists")));
+
+        Map<String, Product> products = productsBySku();
+        assertEquals(5, products.size()); // four imported plus the existing one
+        Product soap = products.get("IMP-1");
+        assertEquals("Barra, 120g", soap.getDescription());
+        assertEquals(0, new BigDecimal("0.90").compareTo(soap.getCostPrice()));
+        assertEquals(2, soap.getMinStock());
+        assertEquals("Limpieza", soap.getCategory());
+        assertEquals("Detergente \"Max\"", products.get("IMP-2").getName());
+        assertEquals("Dos\nlíneas", products.get("IMP-2").getDescription());
+        assertEquals("Already Here", products.get("IMP-EXISTING").getName());
+
+        // Every imported product is linked to the shared catalog; existing entries are reused
+        assertEquals("Shared Catalog Soap", products.get("IMP-SHARED").getCatalogProduct().getName());
+        assertEquals("Trapo", products.get("IMP-6").getCatalogProduct().getName());
+    }
+
+    @Test
+    void importNdjson_ShouldReportMalformedLines() throws Exception {
+        String ndjson = "{\"sku\":\"IMP-J1\",\"name\":\"Café\",\"price\":5.5,\"stock\":3,\"minStock\":1}\n"
+                + "not json\n"
+                + "[1,2]\n"
+                + "{\"sku\":\"IMP-J2\",\"name\":\"Té\",\"price\":\"2.25\",\"variant\":\"Verde\"}\n";
+
+        mockMvc.perform(multipart("/api/products/import").file(file("products.ndjson", ndjson)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(2)))
+                .andExpect(jsonPath("$.errors[*].row", contains(2, 3)));
+
+        Map<String, Product> products = productsBySku();
+        assertEquals(0, new BigDecimal("5.5").compareTo(products.get("IMP-J1").getPrice()));
+        assertEquals(0, products.get("IMP-J2").getStock());
+        assertEquals("Verde", products.get("IMP-J2").getVariant());
+    }
+
+    @Test
+    void importOnFreePlan_ShouldStopAtTheProductLimit() throws Exception {
+        company.setSubscriptionStatus(SubscriptionStatus.FREE);
+        companyRepository.save(company);
+
+        StringBuilder csv = new StringBuilder("sku,name,price\n");
+        for (int i = 1; i <= 12; i++) {
+            csv.append("IMP-F").append(i).append(",Free ").append(i).append(",1.00\n");
+        }
+
+        // One product exists, so nine of the twelve fit
+        mockMvc.perform(multipart("/api/products/import").file(file("products.csv", csv.toString())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(9)))
+                .andExpect(jsonPath("$.failed", is(3)))
+                .andExpect(jsonPath("$.errors[0].message", containsString("GRATUITO")));
+
+        assertEquals(10L, productRepository.countByCompanyId(company.getId()));
+    }
+
+    @Test
+    void importCsv_ShouldRejectFileWithoutRequiredColumns() throws Exception {
+        mockMvc.perform(multipart("/api/products/import").file(file("products.csv", "code,title\nA,B\n")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("sku and name")));
+    }
+
+    @Test
+    void failedChunk_ShouldBeRetriedRowByRowReportingTheCause() throws Exception {
+        doThrow(new IllegalStateException("index queue unavailable")).when(productIndexService)
+                .indexProducts(argThat(products -> products.stream().anyMatch(p -> "IMP-BAD".equals(p.getSku()))));
+
+        String csv = "sku,name,price\n"
+                + "IMP-R1,Uno,1.00\n"
+                + "IMP-BAD,Dos,1.00\n"
+                + "IMP-R3,Tres,1.00\n"
+                + "IMP-R4," + "x".repeat(300) + ",1.00\n";
+
+        mockMvc.perform(multipart("/api/products/import").file(file("products.csv", csv)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.failed", is(2)))
+                .andExpect(jsonPath("$.errors[*].row", containsInAnyOrder(2, 4)))
+                .andExpect(jsonPath("$.errors[?(@.row == 2)].message",
+                        contains("Error: could not save this row: index queue unavailable")))
+                .andExpect(jsonPath("$.errors[?(@.row == 4)].message", contains(containsString("longer than 255"))));
+
+        Map<String, Product> products = productsBySku();
+        assertTrue(products.containsKey("IMP-R1"));
+        assertTrue(products.containsKey("IMP-R3"));
+        assertFalse(products.containsKey("IMP-BAD"));
+        assertNotNull(products.get("IMP-R3").getCatalogProduct());
+    }
+}
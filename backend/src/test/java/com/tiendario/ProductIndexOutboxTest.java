@@ -0,0 +1,135 @@
+package com.tiendario;
+
+import com.tiendario.domain.*;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.IndexOutboxRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.search.ProductSearchRepository;
+import com.tiendario.service.ProductIndexOutboxWorker;
+import com.tiendario.service.ProductIndexService;
+import com.tiendario.service.ProductReindexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@Transactional
+public class ProductIndexOutboxTest {
+
+    @Autowired
+    private ProductIndexService productIndexService;
+
+    @Autowired
+    private IndexOutboxRepository outboxRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private ProductSearchRepository productSearchRepository;
+
+    private ProductIndexOutboxWorker worker;
+    private Product testProduct;
+
+    @BeforeEach
+    void setUp() {
+        worker = new ProductIndexOutboxWorker(outboxRepository, productRepository, productSearchRepository,
+                transactionManager, 50);
+
+        Company company = new Company();
+        company.setName("Outbox Test Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        testProduct = new Product();
+        testProduct.setName("Outbox Product");
+        testProduct.setPrice(new BigDecimal("10.00"));
+        testProduct.setStock(5);
+        testProduct.setSku("OUTBOX-001");
+        testProduct.setCompany(company);
+        testProduct = productRepository.save(testProduct);
+    }
+
+    private List<IndexOutboxEntry> entriesFor(Long productId) {
+        return outboxRepository.findAll().stream()
+                .filter(e -> e.getProductId().equals(productId))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void indexProduct_ShouldQueueAndDrainInOneBulkRequest() {
+        productIndexService.indexProduct(testProduct);
+        productIndexService.indexProduct(testProduct);
+        assertEquals(2, entriesFor(testProduct.getId()).size());
+
+        worker.drain();
+
+        // Both entries collapse into a single bulk save
+        verify(productSearchRepository, times(1)).saveAll(anyList());
+        verify(productSearchRepository, never()).deleteAllById(any());
+        assertTrue(entriesFor(testProduct.getId()).isEmpty());
+    }
+
+    @Test
+    void deleteProductIndex_ShouldRemoveDocument_WhenProductIsGone() {
+        productIndexService.deleteProductIndex(999999L);
+
+        worker.drain();
+
+        verify(productSearchRepository, times(1)).deleteAllById(any());
+        assertTrue(entriesFor(999999L).isEmpty());
+    }
+
+    @Test
+    void drain_ShouldKeepEntryWithBackoff_WhenElasticsearchFails() {
+        when(productSearchRepository.saveAll(anyList())).thenThrow(new RuntimeException("Connection refused"));
+
+        productIndexService.indexProduct(testProduct);
+        worker.drain();
+
+        List<IndexOutboxEntry> entries = entriesFor(testProduct.getId());
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).getAttempts());
+        assertTrue(entries.get(0).getNextAttemptAt().isAfter(LocalDateTime.now()));
+        assertEquals("Connection refused", entries.get(0).getLastError());
+        assertEquals(1L, productIndexService.getQueueStatus().get("queueDepth"));
+    }
+
+    @Test
+    void drain_ShouldStopBetweenBatches_WhenReindexStarts() {
+        ProductIndexOutboxWorker oneByOne = new ProductIndexOutboxWorker(outboxRepository, productRepository,
+                productSearchRepository, transactionManager, 1);
+        ProductReindexService reindexService = mock(ProductReindexService.class);
+        // Idle for the first batch, then a reindex starts
+        when(reindexService.isRunning()).thenReturn(false, true);
+        ReflectionTestUtils.setField(oneByOne, "reindexService", reindexService);
+
+        productIndexService.indexProduct(testProduct);
+        productIndexService.indexProduct(testProduct);
+        oneByOne.drain();
+
+        verify(productSearchRepository, times(1)).saveAll(anyList());
+        assertEquals(1, entriesFor(testProduct.getId()).size());
+    }
+}
@@ -0,0 +1,135 @@
+package com.tiendario;
+
+import com.tiendario.domain.*;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.DailySalesRollupRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import com.tiendario.service.SalesRollupService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: the startup backfill must open its own transaction,
+// which a test transaction around it would hide
+@SpringBootTest
+public class SalesRollupBackfillTest {
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private DailySalesRollupRepository rollupRepository;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    private Company company;
+    private Product product;
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        company = new Company();
+        company.setName("Backfill Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        product = new Product();
+        product.setName("Backfill Product");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStock(100);
+        product.setSku("BACKFILL-001");
+        product.setCompany(company);
+        product = productRepository.save(product);
+
+        // Saved straight through the repository, as sales existed before the rollup table
+        saveSale(today.atTime(10, 0), SaleStatus.PAID, 2);
+        saveSale(today.atTime(11, 0), SaleStatus.PAID, 3);
+        saveSale(today.minusDays(1).atTime(9, 0), SaleStatus.CANCELLED, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rollupRepository.deleteAll(rollupRepository.findByCompanyIdAndDayBetweenOrderByDayAsc(company.getId(),
+                today.minusDays(1), today));
+        saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+        productRepository.deleteById(product.getId());
+        companyRepository.delete(company);
+    }
+
+    private void saveSale(LocalDateTime date, SaleStatus status, int quantity) {
+        Sale sale = new Sale();
+        sale.setCompany(company);
+        sale.setDate(date);
+        sale.setStatus(status);
+        sale.setItems(new ArrayList<>());
+        SaleItem item = new SaleItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(product.getPrice());
+        item.setSubtotal(product.getPrice().multiply(new BigDecimal(quantity)));
+        item.setSale(sale);
+        sale.getItems().add(item);
+        sale.setTotalAmount(item.getSubtotal());
+        saleRepository.save(sale);
+    }
+
+    @Test
+    void startupBackfill_ShouldRebuildEmptyRollupFromExistingSales() {
+        rollupRepository.deleteAllInBatch();
+
+        salesRollupService.backfillIfEmpty();
+
+        List<DailySalesRollup> rows = rollupRepository.findByCompanyIdAndDayBetweenOrderByDayAsc(company.getId(),
+                today.minusDays(1), today);
+        Map<SaleStatus, DailySalesRollup> byStatus = rows.stream()
+                .collect(Collectors.toMap(DailySalesRollup::getStatus, Function.identity()));
+        assertEquals(2, rows.size());
+
+        DailySalesRollup paid = byStatus.get(SaleStatus.PAID);
+        assertEquals(today, paid.getDay());
+        assertEquals(2, paid.getOrderCount());
+        assertEquals(5, paid.getUnits());
+        assertEquals(0, new BigDecimal("50.00").compareTo(paid.getRevenue()));
+
+        DailySalesRollup cancelled = byStatus.get(SaleStatus.CANCELLED);
+        assertEquals(today.minusDays(1), cancelled.getDay());
+        assertEquals(1, cancelled.getOrderCount());
+    }
+
+    @Test
+    void startupBackfill_ShouldLeaveFilledRollupAlone() {
+        rollupRepository.deleteAllInBatch();
+        salesRollupService.backfillIfEmpty();
+        long rows = rollupRepository.count();
+
+        // Not empty any more: a second start does not rebuild
+        saveSale(today.atTime(12, 0), SaleStatus.PAID, 1);
+        salesRollupService.backfillIfEmpty();
+
+        assertEquals(rows, rollupRepository.count());
+        assertEquals(2, rollupRepository.findByCompanyIdAndDayBetweenOrderByDayAsc(company.getId(), today, today)
+                .stream().filter(row -> row.getStatus() == SaleStatus.PAID).findFirst().orElseThrow()
+                .getOrderCount());
+    }
+}
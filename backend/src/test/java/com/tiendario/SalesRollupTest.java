@@ -0,0 +1,196 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.DailySalesRollupRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import com.tiendario.security.UserDetailsImpl;
+import com.tiendario.service.SalesRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class SalesRollupTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private DailySalesRollupRepository rollupRepository;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Company company;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        company = new Company();
+        company.setName("Rollup Co");
+        company.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(company);
+
+        product = new Product();
+        product.setName("Rollup Product");
+        product.setPrice(new BigDecimal("25.00"));
+        product.setStock(100);
+        product.setSku("ROLLUP-001");
+        product.setCompany(company);
+        product = productRepository.save(product);
+
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "manager", "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_MANAGER")),
+                company.getId(), true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
+    private void sell(int quantity, String total) throws Exception {
+        Sale sale = new Sale();
+        sale.setTotalAmount(new BigDecimal(total));
+        SaleItem item = new SaleItem();
+        Product ref = new Product();
+        ref.setId(product.getId());
+        item.setProduct(ref);
+        item.setQuantity(quantity);
+        sale.setItems(new ArrayList<>(List.of(item)));
+
+        mockMvc.perform(post("/api/sales")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sale)))
+                .andExpect(status().isOk());
+    }
+
+    private Map<SaleStatus, DailySalesRollup> todayByStatus() {
+        entityManager.flush();
+        entityManager.clear();
+        LocalDate today = LocalDate.now();
+        return rollupRepository.findByCompanyIdAndDayBetweenOrderByDayAsc(company.getId(), today, today).stream()
+                .collect(Collectors.toMap(DailySalesRollup::getStatus, Function.identity()));
+    }
+
+    @Test
+    void createSale_ShouldAddToTodaysRollup() throws Exception {
+        sell(2, "50.00");
+        sell(3, "75.00");
+
+        DailySalesRollup paid = todayByStatus().get(SaleStatus.PAID);
+        assertEquals(2, paid.getOrderCount());
+        assertEquals(5, paid.getUnits());
+        assertEquals(0, new BigDecimal("125.00").compareTo(paid.getRevenue()));
+    }
+
+    @Test
+    void updateSaleStatus_ShouldMoveSaleBetweenStatuses() throws Exception {
+        sell(2, "50.00");
+        Sale sale = saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).get(0);
+
+        mockMvc.perform(put("/api/sales/" + sale.getId() + "/status").param("status", "DELIVERED"))
+                .andExpect(status().isOk());
+
+        Map<SaleStatus, DailySalesRollup> rollup = todayByStatus();
+        assertEquals(0, rollup.get(SaleStatus.PAID).getOrderCount());
+        assertEquals(0, rollup.get(SaleStatus.PAID).getUnits());
+        assertEquals(1, rollup.get(SaleStatus.DELIVERED).getOrderCount());
+        assertEquals(2, rollup.get(SaleStatus.DELIVERED).getUnits());
+    }
+
+    @Test
+    void backfill_ShouldMatchIncrementalRollup() throws Exception {
+        sell(2, "50.00");
+        sell(1, "25.00");
+        DailySalesRollup incremental = todayByStatus().get(SaleStatus.PAID);
+
+        salesRollupService.backfill();
+
+        DailySalesRollup rebuilt = todayByStatus().get(SaleStatus.PAID);
+        assertEquals(incremental.getOrderCount(), rebuilt.getOrderCount());
+        assertEquals(incremental.getUnits(), rebuilt.getUnits());
+        assertEquals(0, incremental.getRevenue().compareTo(rebuilt.getRevenue()));
+    }
+
+    @Test
+    void timeseries_ShouldBucketRollupsByMonthAndExcludeCancelled() throws Exception {
+        LocalDate march = LocalDate.of(2024, 3, 1);
+        saveRollup(march.withDayOfMonth(5), SaleStatus.PAID, "100.00", 2, 4);
+        saveRollup(march.withDayOfMonth(20), SaleStatus.DELIVERED, "50.00", 1, 1);
+        saveRollup(march.withDayOfMonth(20), SaleStatus.CANCELLED, "30.00", 1, 3);
+
+        mockMvc.perform(get("/api/dashboard/timeseries")
+                .param("from", "2024-02-01")
+                .param("to", "2024-04-30")
+                .param("granularity", "month"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].period", is("2024-02-01")))
+                .andExpect(jsonPath("$[0].orders", is(0)))
+                .andExpect(jsonPath("$[1].period", is("2024-03-01")))
+                .andExpect(jsonPath("$[1].revenue", is(150.0)))
+                .andExpect(jsonPath("$[1].orders", is(3)))
+                .andExpect(jsonPath("$[1].units", is(5)))
+                .andExpect(jsonPath("$[1].cancelledOrders", is(1)));
+    }
+
+    @Test
+    void timeseries_ShouldRejectInvalidParameters() throws Exception {
+        mockMvc.perform(get("/api/dashboard/timeseries").param("granularity", "hour"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/dashboard/timeseries").param("from", "2024-05-01").param("to", "2024-04-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void saveRollup(LocalDate day, SaleStatus status, String revenue, long orders, long units) {
+        DailySalesRollup row = new DailySalesRollup();
+        row.setCompanyId(company.getId());
+        row.setDay(day);
+        row.setStatus(status);
+        row.setRevenue(new BigDecimal(revenue));
+        row.setOrderCount(orders);
+        row.setUnits(units);
+        rollupRepository.save(row);
+    }
+}
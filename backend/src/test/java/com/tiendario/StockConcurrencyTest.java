@@ -0,0 +1,148 @@
+package com.tiendario;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tiendario.domain.*;
+import com.tiendario.payload.request.PublicOrderRequest;
+import com.tiendario.repository.CompanyRepository;
+import com.tiendario.repository.CustomerRepository;
+import com.tiendario.repository.NotificationRepository;
+import com.tiendario.repository.ProductRepository;
+import com.tiendario.repository.SaleRepository;
+import com.tiendario.service.OrderEventDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Not @Transactional: every order has to commit in its own transaction to race the others
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StockConcurrencyTest {
+
+    private static final int INITIAL_STOCK = 10;
+    private static final int BUYERS = 40;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompanyRepository companyRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    private Company company;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        Company c = new Company();
+        c.setName("Concurrency Co");
+        c.setSubscriptionStatus(SubscriptionStatus.PAID);
+        company = companyRepository.save(c);
+
+        Product p = new Product();
+        p.setName("Last Units");
+        p.setPrice(new BigDecimal("10.00"));
+        p.setStock(INITIAL_STOCK);
+        p.setSku("RACE-001");
+        p.setCompany(company);
+        product = productRepository.save(p);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        // Order side effects run after commit; let them finish before deleting
+        orderEventDispatcher.awaitIdle(10_000);
+        saleRepository.deleteAll(saleRepository.findByCompanyIdOrderByDateDesc(company.getId()));
+        notificationRepository.deleteAll(notificationRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId()));
+        customerRepository.deleteAll(customerRepository.findByCompanyId(company.getId()));
+        productRepository.deleteById(product.getId());
+        companyRepository.delete(company);
+    }
+
+    @Test
+    void parallelOrders_ShouldNeverOversell() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < BUYERS; i++) {
+                PublicOrderRequest order = new PublicOrderRequest();
+                order.setProductId(product.getId());
+                order.setQuantity(1);
+                order.setCustomerEmail("buyer" + i + "@example.com");
+                order.setCustomerName("Buyer " + i);
+                String body = objectMapper.writeValueAsString(order);
+
+                Callable<Integer> buyer = () -> {
+                    start.await();
+                    return mockMvc.perform(post("/api/public/order")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                            .andReturn().getResponse().getStatus();
+                };
+                results.add(pool.submit(buyer));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            int rejected = 0;
+            for (Future<Integer> result : results) {
+                int status = result.get(30, TimeUnit.SECONDS);
+                if (status == 200) {
+                    accepted++;
+                } else if (status == 400) {
+                    rejected++;
+                }
+            }
+
+            assertEquals(INITIAL_STOCK, accepted);
+            assertEquals(BUYERS - INITIAL_STOCK, rejected);
+            assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStock());
+            assertEquals(INITIAL_STOCK, saleRepository.findByCompanyIdOrderByDateDesc(company.getId()).size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void decrementStock_ShouldRejectQuantityAboveStock() {
+        assertEquals(0, productRepository.decrementStock(product.getId(), INITIAL_STOCK + 1));
+        assertEquals(1, productRepository.decrementStock(product.getId(), INITIAL_STOCK));
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getStock());
+    }
+}
@@ -94,4 +94,25 @@ public class SuperAdminControllerTest {
         mockMvc.perform(get("/api/superadmin/payments"))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void getGlobalStats_ShouldServeSnapshotUntilLiveRecompute() throws Exception {
+        String body = mockMvc.perform(get("/api/superadmin/stats").param("live", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.freePlanCount", greaterThanOrEqualTo(1)))
+                .andExpect(jsonPath("$.computedAt", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+        int freePlans = objectMapper.readTree(body).get("freePlanCount").asInt();
+
+        Company another = new Company();
+        another.setName("Another Free Co");
+        another.setSubscriptionStatus(SubscriptionStatus.FREE);
+        companyRepository.save(another);
+
+        mockMvc.perform(get("/api/superadmin/stats"))
+                .andExpect(jsonPath("$.freePlanCount", is(freePlans)));
+        mockMvc.perform(get("/api/superadmin/stats").param("live", "true"))
+                .andExpect(jsonPath("$.freePlanCount", is(freePlans + 1)));
+    }
 }
@@ -7,6 +7,7 @@ import com.tiendario.repository.CompanyRepository;
 import com.tiendario.repository.CustomerRepository;
 import com.tiendario.repository.ProductRepository;
 import com.tiendario.repository.SaleRepository;
+import com.tiendario.service.OrderEventDispatcher;
 import com.tiendario.service.ProductIndexService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.MethodOrderer;
@@ -21,11 +22,10 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -55,6 +55,21 @@ public class SystemIntegrationTest {
     @Autowired
     private com.tiendario.repository.CategoryRepository categoryRepository;
 
+    @Autowired
+    private com.tiendario.service.SuggestionService suggestionService;
+
+    @Autowired
+    private com.tiendario.service.MarketplaceListingService marketplaceListingService;
+
+    @Autowired
+    private com.tiendario.repository.MarketplaceListingRepository listingRepository;
+
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    @Autowired
+    private org.springframework.transaction.PlatformTransactionManager transactionManager;
+
     @MockBean
     private ProductIndexService productIndexService; // Mock Elasticsearch to avoid connectivity issues during basic
                                                      // tests
@@ -85,9 +100,6 @@ public class SystemIntegrationTest {
         p.setCompany(supplierCompany);
         p.setSku("TEST-001");
         product = productRepository.save(p);
-
-        // Mock elasticsearch behavior
-        when(productIndexService.searchProducts(anyString())).thenReturn(new ArrayList<>());
     }
 
     @Test
@@ -157,14 +169,276 @@ public class SystemIntegrationTest {
         // 3. Verify Stock Reduction
         Product updatedProduct = productRepository.findById(product.getId()).get();
         assert (updatedProduct.getStock() == initialStock - 1);
+
+        // Seller notification and loyalty points follow after commit
+        assert orderEventDispatcher.awaitIdle(10_000);
+    }
+
+    @Test
+    void testPublicProducts_ShouldListCheapestOfferPerName() throws Exception {
+        Company otherSeller = new Company();
+        otherSeller.setName("Cheaper Seller");
+        otherSeller.setSubscriptionStatus(SubscriptionStatus.PAID);
+        otherSeller = companyRepository.save(otherSeller);
+
+        // Same product name with different spacing/case must be unified
+        Product cheaper = new Product();
+        cheaper.setName("  test PRODUCT ");
+        cheaper.setPrice(new BigDecimal("80.00"));
+        cheaper.setStock(5);
+        cheaper.setCompany(otherSeller);
+        cheaper.setSku("TEST-002");
+        cheaper = productRepository.save(cheaper);
+
+        mockMvc.perform(get("/api/public/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(cheaper.getId().intValue())))
+                .andExpect(jsonPath("$[0].companyName", is("Cheaper Seller")));
+
+        // Once the cheaper offer is gone the listing falls back to the remaining seller
+        productRepository.delete(cheaper);
+
+        mockMvc.perform(get("/api/public/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(product.getId().intValue())));
+    }
+
+    @Test
+    void testPublicProducts_ShouldPageWithCursorAndFilter() throws Exception {
+        supplierCompany.setSubscriptionStatus(SubscriptionStatus.PAID);
+        companyRepository.save(supplierCompany);
+
+        for (String name : new String[] { "Alpha Item", "Beta Item" }) {
+            Product p = new Product();
+            p.setName(name);
+            p.setPrice(new BigDecimal("10.00"));
+            p.setStock(0); // Out of stock
+            p.setCompany(supplierCompany);
+            p.setSku("PAGE-" + name.charAt(0));
+            productRepository.save(p);
+        }
+
+        mockMvc.perform(get("/api/public/products").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("Alpha Item")))
+                .andExpect(header().string("X-Next-Cursor", "beta item"));
+
+        mockMvc.perform(get("/api/public/products").param("limit", "2").param("after", "beta item"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Test Product")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        mockMvc.perform(get("/api/public/products").param("inStock", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(product.getId().intValue())));
+
+        mockMvc.perform(get("/api/public/products/company/" + supplierCompany.getId())
+                .param("maxPrice", "50").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Alpha Item")))
+                .andExpect(header().exists("X-Next-Cursor"));
+    }
+
+    @Test
+    void testPublicProducts_ShouldMatchFiltersAgainstEveryOffer() throws Exception {
+        // The cheapest offer (100.00) is from a FREE seller; a PAID seller has it in stock for more
+        Company paidSeller = new Company();
+        paidSeller.setName("Paid Seller");
+        paidSeller.setSubscriptionStatus(SubscriptionStatus.PAID);
+        paidSeller = companyRepository.save(paidSeller);
+
+        Product pricier = new Product();
+        pricier.setName("Test Product");
+        pricier.setPrice(new BigDecimal("120.00"));
+        pricier.setStock(4);
+        pricier.setCompany(paidSeller);
+        pricier.setSku("TEST-004");
+        pricier = productRepository.save(pricier);
+
+        product.setStock(0);
+        productRepository.save(product);
+
+        mockMvc.perform(get("/api/public/products").param("inStock", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(pricier.getId().intValue())));
+
+        mockMvc.perform(get("/api/public/products").param("subscriptionStatus", "PAID"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(pricier.getId().intValue())));
+
+        mockMvc.perform(get("/api/public/products").param("minPrice", "110"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(pricier.getId().intValue())));
+
+        // Unfiltered, the cheapest offer is still shown
+        mockMvc.perform(get("/api/public/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(product.getId().intValue())));
+
+        mockMvc.perform(get("/api/public/search/facets").param("q", "test product").param("inStock", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.priceRanges[3].count", is(1)));
+    }
+
+    @Test
+    void testSellersByName_ShouldMatchNormalizedName() throws Exception {
+        Company otherSeller = new Company();
+        otherSeller.setName("Second Seller");
+        otherSeller.setSubscriptionStatus(SubscriptionStatus.PAID);
+        otherSeller = companyRepository.save(otherSeller);
+
+        Product offer = new Product();
+        offer.setName("TEST Product ");
+        offer.setPrice(new BigDecimal("95.00"));
+        offer.setStock(3);
+        offer.setCompany(otherSeller);
+        offer.setSku("TEST-003");
+        productRepository.save(offer);
+
+        mockMvc.perform(get("/api/public/products/name/ Test product/sellers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].companyName", is("Second Seller")))
+                .andExpect(jsonPath("$[0].subscriptionStatus", is("PAID")))
+                .andExpect(jsonPath("$[1].companyName", is("Test Supplier")));
     }
 
     @Test
     void testPublicSearchFallback() throws Exception {
-        // Test backup database search when elasticsearch returns empty (mocked
-        // behavior)
+        // Elasticsearch is not configured in tests, so search uses the embedded index
         mockMvc.perform(get("/api/public/search").param("q", "Product"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(greaterThanOrEqualTo(1))));
     }
+
+    @Test
+    void testPublicSearchFacets_ShouldCountCategoriesAndPriceRanges() throws Exception {
+        product.setCategory("Herramientas");
+        productRepository.save(product);
+
+        mockMvc.perform(get("/api/public/search/facets").param("q", "test product"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories", hasSize(1)))
+                .andExpect(jsonPath("$.categories[0].key", is("Herramientas")))
+                .andExpect(jsonPath("$.categories[0].count", is(1)))
+                .andExpect(jsonPath("$.priceRanges", hasSize(4)))
+                .andExpect(jsonPath("$.priceRanges[3].key", is("100-*")))
+                .andExpect(jsonPath("$.priceRanges[3].count", is(1)));
+    }
+
+    @Test
+    void testSuggest_ShouldCompleteAnyWordOfProductNames() throws Exception {
+        product.setCategory("Herramientas");
+        productRepository.save(product);
+        suggestionService.rebuild();
+
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "PROD"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].text", is("Test Product")))
+                .andExpect(jsonPath("$[0].type", is("PRODUCT")))
+                .andExpect(jsonPath("$[0].weight", is(1)));
+
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "hérr"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text", is("Herramientas")))
+                .andExpect(jsonPath("$[0].type", is("CATEGORY")));
+    }
+
+    @Test
+    void testSuggest_ShouldFollowListingChangesAndLongPrefixes() throws Exception {
+        suggestionService.rebuild();
+
+        Product longName = new Product();
+        longName.setName("Pantalón vaquero azul marino de algodón orgánico talla 42");
+        longName.setPrice(new BigDecimal("30.00"));
+        longName.setStock(3);
+        longName.setCompany(supplierCompany);
+        longName.setSku("TEST-LONG");
+        longName = productRepository.save(longName);
+        suggestionService.applyChanges();
+
+        // Longer than any fixed key cut: the whole prefix is matched
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "vaquero azul marino de algodón orgánico t"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].text", is("Pantalón vaquero azul marino de algodón orgánico talla 42")));
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "vaquero azul marino de algodón orgánico x"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        productRepository.delete(longName);
+        suggestionService.applyChanges();
+
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "vaq"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/public/suggest").param("prefix", "prod"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].text", is("Test Product")));
+    }
+
+    @Test
+    void testListingRebuild_ShouldRepairGroupsInPlace() {
+        Product cheaper = new Product();
+        cheaper.setName("test product ");
+        cheaper.setPrice(new BigDecimal("90.00"));
+        cheaper.setStock(1);
+        cheaper.setCompany(supplierCompany);
+        cheaper.setSku("TEST-REBUILD");
+        cheaper = productRepository.save(cheaper);
+
+        // Drift the listing as a failed refresh would: wrong offer and count, plus an orphan group
+        MarketplaceListing listing = listingRepository.findAll().stream()
+                .filter(l -> l.getNormalizedName().equals("test product")).findFirst().orElseThrow();
+        listing.setProduct(product);
+        listing.setSellerCount(5);
+        listingRepository.save(listing);
+        MarketplaceListing orphan = new MarketplaceListing();
+        orphan.setNormalizedName("discontinued product");
+        orphan.setProduct(product);
+        orphan.setSellerCount(1);
+        listingRepository.save(orphan);
+        suggestionService.rebuild();
+        assertFalse(suggestionService.suggest("discontinued", 5).isEmpty());
+
+        assertEquals(1, marketplaceListingService.rebuild());
+        // Suggestions follow the rebuilt listing
+        assertTrue(suggestionService.suggest("discontinued", 5).isEmpty());
+
+        List<MarketplaceListing> listings = listingRepository.findAll();
+        assertEquals(1, listings.size());
+        // Updated in place rather than deleted and inserted again
+        assertEquals(listing.getId(), listings.get(0).getId());
+        assertEquals(2, listings.get(0).getSellerCount());
+        assertEquals(cheaper.getId(), listingRepository.findByNormalizedNameIn(List.of("test product")).get(0)
+                .getProduct().getId());
+    }
+
+    @Test
+    void testBackfill_ShouldNormalizeOldRowsLikeNewOnes() {
+        Product old = new Product();
+        old.setName("\tTEST PRODUCT ");
+        old.setPrice(new BigDecimal("80.00"));
+        old.setStock(1);
+        old.setCompany(supplierCompany);
+        old.setSku("TEST-BACKFILL");
+        Long oldId = productRepository.save(old).getId();
+        // A row written before normalized_name existed
+        new org.springframework.transaction.support.TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> productRepository.setNormalizedName(oldId, null));
+
+        marketplaceListingService.backfill();
+
+        // Same key as Product.normalizeName, which SQL LOWER(TRIM()) would not give for the tab
+        assertEquals("test product", productRepository.findById(oldId).orElseThrow().getNormalizedName());
+    }
 }
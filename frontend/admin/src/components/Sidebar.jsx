@@ -23,30 +23,29 @@ const Sidebar = () => {
 
     useEffect(() => {
         let isMounted = true;
-        if (user) {
-            NotificationService.getUnreadCount()
+        if (user && !isSuperAdmin) {
+            const loadUnreadCount = () => NotificationService.getUnreadCount()
                 .then(res => {
                     if (isMounted && typeof res.data === 'number') {
                         setUnreadCount(res.data);
                     }
                 })
                 .catch(err => console.error("Notification Fetch Error:", err));
-
-            const interval = setInterval(() => {
-                NotificationService.getUnreadCount()
-                    .then(res => {
-                        if (isMounted && typeof res.data === 'number') {
-                            setUnreadCount(res.data);
-                        }
-                    })
-                    .catch(() => { });
-            }, 30000);
+            loadUnreadCount();
+
+            // New notifications arrive over the stream instead of polling the count;
+            // after a reconnect the count is reloaded in case events were missed
+            const unsubscribe = NotificationService.subscribe(() => {
+                if (isMounted) {
+                    setUnreadCount(count => count + 1);
+                }
+            }, loadUnreadCount);
             return () => {
                 isMounted = false;
-                clearInterval(interval);
+                unsubscribe();
             };
         }
-    }, [user]);
+    }, [user?.token, isSuperAdmin]);
 
     const handleLogout = () => {
         AuthService.logout();
@@ -6,16 +6,18 @@ import NotificationService from '../services/notification.service';
 
 const NotificationsPage = () => {
     const [notifications, setNotifications] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
     const [loading, setLoading] = useState(true);
 
     useEffect(() => {
         loadNotifications();
     }, []);
 
-    const loadNotifications = () => {
-        NotificationService.getNotifications().then(
+    const loadNotifications = (before) => {
+        NotificationService.getNotifications(before).then(
             res => {
-                setNotifications(res.data);
+                setNotifications(prev => before ? [...prev, ...res.data] : res.data);
+                setNextCursor(res.headers['x-next-cursor'] || null);
                 setLoading(false);
             },
             err => {
@@ -27,10 +29,20 @@ const NotificationsPage = () => {
 
     const markAsRead = (id) => {
         NotificationService.markAsRead(id).then(() => {
-            loadNotifications();
+            setNotifications(prev => prev.map(n => n.id === id ? { ...n, readStatus: true } : n));
         });
     };
 
+    const markAllAsRead = () => {
+        if (notifications.length === 0) return;
+        const upToId = notifications[0].id;
+        NotificationService.markAllAsRead(upToId).then(() => {
+            setNotifications(prev => prev.map(n => n.id <= upToId ? { ...n, readStatus: true } : n));
+        });
+    };
+
+    const hasUnread = notifications.some(n => !n.readStatus);
+
     return (
         <div className="d-flex admin-content-area overflow-hidden">
             <Sidebar />
@@ -44,7 +56,14 @@ const NotificationsPage = () => {
                         <Card.Header className="bg-white py-3 border-0">
                             <div className="d-flex justify-content-between align-items-center">
                                 <h5 className="mb-0 fw-bold">Alertas del Sistema</h5>
-                                <Badge bg="primary">{notifications.length} Totales</Badge>
+                                <div className="d-flex align-items-center gap-2">
+                                    {hasUnread && (
+                                        <Button variant="outline-success" size="sm" onClick={markAllAsRead}>
+                                            <FaCheck className="me-1" /> Marcar todas como leídas
+                                        </Button>
+                                    )}
+                                    <Badge bg="primary">{notifications.length} Cargadas</Badge>
+                                </div>
                             </div>
                         </Card.Header>
                         <ListGroup variant="flush">
@@ -82,6 +101,13 @@ const NotificationsPage = () => {
                                 ))
                             )}
                         </ListGroup>
+                        {nextCursor && (
+                            <Card.Footer className="bg-white border-0 text-center py-3">
+                                <Button variant="link" onClick={() => loadNotifications(nextCursor)}>
+                                    Cargar más antiguas
+                                </Button>
+                            </Card.Footer>
+                        )}
                     </Card>
                 </Container>
             </div>
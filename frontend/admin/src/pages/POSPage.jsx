@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { Container, Row, Col, Card, Form, Button, ListGroup, InputGroup, Table, Modal, Alert } from 'react-bootstrap';
 import { FaSearch, FaPlus, FaTrash, FaShoppingCart, FaEdit, FaLock, FaExclamationTriangle } from 'react-icons/fa';
 import Sidebar from '../components/Sidebar';
@@ -9,6 +9,11 @@ import AuthService from '../services/auth.service';
 const POSPage = () => {
     const [products, setProducts] = useState([]);
     const [cart, setCart] = useState([]);
+    // One key per cart: resending the same cart after a network error cannot record it twice
+    const saleKeyRef = useRef(null);
+    useEffect(() => {
+        saleKeyRef.current = null;
+    }, [cart]);
     const [searchTerm, setSearchTerm] = useState("");
     const [message, setMessage] = useState("");
 
@@ -102,7 +107,10 @@ const POSPage = () => {
             }))
         };
 
-        SaleService.createSale(saleData).then(
+        if (!saleKeyRef.current) {
+            saleKeyRef.current = crypto.randomUUID();
+        }
+        SaleService.createSale(saleData, saleKeyRef.current).then(
             () => {
                 setMessage("¡Venta realizada con éxito!");
                 setCart([]);
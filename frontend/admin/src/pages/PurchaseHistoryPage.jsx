@@ -60,6 +60,20 @@ const PurchaseHistoryPage = () => {
         setFilteredPurchases(filtered);
     };
 
+    const handleExport = () => {
+        PurchaseService.exportAll('csv').then(
+            (response) => {
+                const url = URL.createObjectURL(response.data);
+                const link = document.createElement('a');
+                link.href = url;
+                link.download = `compras-${new Date().toISOString().slice(0, 10)}.csv`;
+                link.click();
+                URL.revokeObjectURL(url);
+            },
+            (error) => alert("Error al exportar las compras")
+        );
+    };
+
     const toggleExpand = (id) => {
         setExpandedId(expandedId === id ? null : id);
     };
@@ -77,6 +91,9 @@ const PurchaseHistoryPage = () => {
                 <Container fluid>
                     <div className="d-flex justify-content-between align-items-center mb-4">
                         <h2 className="fw-bold"><FaHistory className="me-2" />Historial de Compras</h2>
+                        <Button variant="outline-secondary" onClick={handleExport}>
+                            Exportar CSV
+                        </Button>
                     </div>
 
                     {/* Filters */}
@@ -43,6 +43,20 @@ const SalesHistoryPage = () => {
         }
     };
 
+    const handleExport = () => {
+        SaleService.exportSales('csv').then(
+            (response) => {
+                const url = URL.createObjectURL(response.data);
+                const link = document.createElement('a');
+                link.href = url;
+                link.download = `ventas-${new Date().toISOString().slice(0, 10)}.csv`;
+                link.click();
+                URL.revokeObjectURL(url);
+            },
+            (error) => alert("Error al exportar las ventas")
+        );
+    };
+
     const openDetail = (sale) => {
         setSelectedSale(sale);
         setShowDetail(true);
@@ -85,6 +99,9 @@ const SalesHistoryPage = () => {
                         <Button variant="outline-primary" onClick={loadSales} className="rounded-3 shadow-sm">
                             Actualizar
                         </Button>
+                        <Button variant="outline-secondary" onClick={handleExport} className="rounded-3 shadow-sm">
+                            Exportar CSV
+                        </Button>
                     </div>
                 </div>
 
@@ -1,10 +1,13 @@
 import axios from 'axios';
 import authHeader from './auth-header';
+import AuthService from './auth.service';
 
 const API_URL = import.meta.env.VITE_API_URL + '/notifications/';
 
-const getNotifications = () => {
-    return axios.get(API_URL, { headers: authHeader() });
+// Newest first, one page at a time; the X-Next-Cursor header is the `before` of the next page
+const getNotifications = (before) => {
+    const params = before ? { before } : {};
+    return axios.get(API_URL, { headers: authHeader(), params });
 };
 
 const getUnreadCount = () => {
@@ -15,8 +18,69 @@ const markAsRead = (id) => {
     return axios.put(API_URL + id + '/read', {}, { headers: authHeader() });
 };
 
+const markAllAsRead = (upToId) => {
+    return axios.put(API_URL + 'read', {}, { headers: authHeader(), params: { upToId } });
+};
+
+const RECONNECT_DELAY_MS = 3000;
+
+// Server-sent events for new notifications. EventSource cannot send headers, so every
+// connection is opened with a short-lived stream ticket fetched with the login token.
+// The server closes streams that fall behind; on reconnect onReconnect lets the caller
+// reload what it may have missed. Returns a function that closes the stream.
+const subscribe = (onNotification, onReconnect) => {
+    const user = AuthService.getCurrentUser();
+    if (!user || !user.token) {
+        return () => { };
+    }
+    let source = null;
+    let retry = null;
+    let closed = false;
+    let connected = false;
+
+    const reconnectLater = () => {
+        if (!closed) {
+            retry = setTimeout(connect, RECONNECT_DELAY_MS);
+        }
+    };
+
+    const connect = () => {
+        axios.post(API_URL + 'stream-ticket', {}, { headers: authHeader() })
+            .then((res) => {
+                if (closed) {
+                    return;
+                }
+                source = new EventSource(API_URL + 'stream?ticket=' + encodeURIComponent(res.data.ticket));
+                source.addEventListener('open', () => {
+                    if (connected && onReconnect) {
+                        onReconnect();
+                    }
+                    connected = true;
+                });
+                source.addEventListener('notification', (event) => onNotification(JSON.parse(event.data)));
+                // The ticket has expired by the time the stream ends, so reconnect with a new one
+                source.addEventListener('error', () => {
+                    source.close();
+                    reconnectLater();
+                });
+            })
+            .catch(reconnectLater);
+    };
+
+    connect();
+    return () => {
+        closed = true;
+        clearTimeout(retry);
+        if (source) {
+            source.close();
+        }
+    };
+};
+
 export default {
     getNotifications,
     getUnreadCount,
-    markAsRead
+    markAsRead,
+    markAllAsRead,
+    subscribe
 };
@@ -20,9 +20,15 @@ const create = (data) => {
     return axios.post(API_URL, data, { headers: getAuthHeader() });
 };
 
+// Whole purchase history as a file ('csv' or 'ndjson'), streamed by the server
+const exportAll = (format = 'csv') => {
+    return axios.get(API_URL + 'export', { params: { format }, responseType: 'blob', headers: getAuthHeader() });
+};
+
 const PurchaseService = {
     getAll,
     create,
+    exportAll,
 };
 
 export default PurchaseService;
@@ -10,11 +10,14 @@ const getSales = () => {
     });
 };
 
-const createSale = (saleData) => {
+// Retries of the same sale should reuse its idempotencyKey, so the server records it only once
+const createSale = (saleData, idempotencyKey) => {
     const user = AuthService.getCurrentUser();
-    return axios.post(API_URL, saleData, {
-        headers: { Authorization: 'Bearer ' + user.token }
-    });
+    const headers = { Authorization: 'Bearer ' + user.token };
+    if (idempotencyKey) {
+        headers['Idempotency-Key'] = idempotencyKey;
+    }
+    return axios.post(API_URL, saleData, { headers });
 };
 
 const updateStatus = (id, status) => {
@@ -25,10 +28,21 @@ const updateStatus = (id, status) => {
     });
 };
 
+// Whole sales history as a file ('csv' or 'ndjson'), streamed by the server
+const exportSales = (format = 'csv') => {
+    const user = AuthService.getCurrentUser();
+    return axios.get(API_URL + "export", {
+        params: { format },
+        responseType: 'blob',
+        headers: { Authorization: 'Bearer ' + user.token }
+    });
+};
+
 const SaleService = {
     getSales,
     createSale,
-    updateStatus
+    updateStatus,
+    exportSales
 };
 
 export default SaleService;
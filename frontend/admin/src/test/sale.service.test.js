@@ -65,6 +65,21 @@ describe('SaleService', () => {
         });
     });
 
+    describe('createSale with idempotency key', () => {
+        it('should send the Idempotency-Key header', async () => {
+            const newSale = { items: [{ productId: 1, quantity: 2 }] };
+            axios.post.mockResolvedValue({ data: { message: 'Sale completed!' } });
+
+            await SaleService.createSale(newSale, 'key-123');
+
+            expect(axios.post).toHaveBeenCalledWith(
+                expect.stringContaining('/sales/'),
+                newSale,
+                { headers: { Authorization: 'Bearer test-jwt-token', 'Idempotency-Key': 'key-123' } }
+            );
+        });
+    });
+
     describe('updateStatus', () => {
         it('should update sale status with auth header', async () => {
             axios.put.mockResolvedValue({ data: { message: 'Status updated' } });
@@ -81,4 +96,21 @@ describe('SaleService', () => {
             );
         });
     });
+
+    describe('exportSales', () => {
+        it('should download the export as a blob', async () => {
+            axios.get.mockResolvedValue({ data: new Blob(['sale_id\r\n']) });
+
+            await SaleService.exportSales();
+
+            expect(axios.get).toHaveBeenCalledWith(
+                expect.stringMatching(/\/sales\/export$/),
+                {
+                    params: { format: 'csv' },
+                    responseType: 'blob',
+                    headers: { Authorization: 'Bearer test-jwt-token' },
+                }
+            );
+        });
+    });
 });
@@ -8,6 +8,7 @@ import Navbar from "../components/Navbar";
 const CustomerDashboard = () => {
     const [stats, setStats] = useState({ totalOrders: 0, totalSpent: 0, lastOrderDate: null });
     const [orders, setOrders] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
     const [loading, setLoading] = useState(true);
     const navigate = useNavigate();
 
@@ -22,6 +23,7 @@ const CustomerDashboard = () => {
             .then(([statsRes, ordersRes]) => {
                 setStats(statsRes.data);
                 setOrders(ordersRes.data);
+                setNextCursor(ordersRes.headers['x-next-cursor'] || null);
                 setLoading(false);
             })
             .catch(err => {
@@ -30,6 +32,15 @@ const CustomerDashboard = () => {
             });
     }, [navigate]);
 
+    const loadMoreOrders = () => {
+        CustomerService.getMyOrders(nextCursor)
+            .then(res => {
+                setOrders(prev => [...prev, ...res.data]);
+                setNextCursor(res.headers['x-next-cursor'] || null);
+            })
+            .catch(err => console.error("Error loading orders", err));
+    };
+
     return (
         <div className="bg-light min-vh-100">
             <Navbar />
@@ -133,8 +144,8 @@ const CustomerDashboard = () => {
                                         <td className="py-3 text-end fw-bold text-success">${order.totalAmount.toFixed(2)}</td>
                                         <td className="px-4 py-3">
                                             {order.items?.map(item => (
-                                                <div key={item.id} className="small text-muted border-bottom py-1 last-child-border-0">
-                                                    {item.quantity}x {item.product?.name}
+                                                <div key={`${order.id}-${item.id}`} className="small text-muted border-bottom py-1 last-child-border-0">
+                                                    {item.quantity}x {item.name}
                                                 </div>
                                             ))}
                                         </td>
@@ -151,6 +162,13 @@ const CustomerDashboard = () => {
                                 )}
                             </tbody>
                         </Table>
+                        {nextCursor && (
+                            <div className="text-center py-3">
+                                <Button variant="link" onClick={loadMoreOrders}>
+                                    Ver pedidos anteriores
+                                </Button>
+                            </div>
+                        )}
                     </Card.Body>
                 </Card>
             </Container>
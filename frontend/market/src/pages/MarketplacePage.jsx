@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { Container, Row, Col, Card, Form, InputGroup, Button, Badge, Spinner, Modal, Alert, Nav, Tab } from 'react-bootstrap';
 import { FaSearch, FaShoppingCart, FaLock, FaStore, FaCreditCard, FaTruck, FaInfoCircle, FaStar, FaGem, FaBitcoin, FaMobileAlt } from 'react-icons/fa';
 import { Link } from 'react-router-dom';
@@ -26,6 +26,11 @@ const MarketplacePage = () => {
     const [userPoints, setUserPoints] = useState(0);
     const [showLoyaltyModal, setShowLoyaltyModal] = useState(false);
     const [cart, setCart] = useState([]);
+    // One key per cart and buyer details: resubmitting after a network error cannot order twice
+    const checkoutKeyRef = useRef(null);
+    useEffect(() => {
+        checkoutKeyRef.current = null;
+    }, [cart, customerData]);
     const [showCartModal, setShowCartModal] = useState(false);
     const [platformConfig, setPlatformConfig] = useState(null);
     const [sellers, setSellers] = useState([]);
@@ -257,40 +262,20 @@ const MarketplacePage = () => {
         });
 
         try {
-            // Process each item in the cart as a separate order
-            const orderPromises = cart.map(item =>
-                SearchService.createOrder({
-                    productId: item.id,
-                    quantity: item.quantity,
-                    customerName: customerData.name,
-                    customerEmail: customerData.email,
-                    customerPhone: customerData.phone || '',
-                    customerAddress: customerData.address
-                })
-            );
-
-            const results = await Promise.allSettled(orderPromises);
-
-            // Check for any failures
-            const failures = results.filter(r => r.status === 'rejected' || (r.value && r.value.data && r.value.data.message && r.value.data.message.includes('Error')));
-            const failedResponses = results.filter(r => r.status === 'fulfilled' && r.value?.response?.status >= 400);
-
-            if (failures.length > 0 || failedResponses.length > 0) {
-                const errorMessages = results
-                    .filter(r => r.status === 'rejected')
-                    .map(r => r.reason?.response?.data?.message || r.reason?.message || 'Error desconocido');
-
-                if (errorMessages.length > 0) {
-                    setOrderStatus({
-                        loading: false,
-                        success: false,
-                        error: `Error en algunos productos: ${errorMessages.join(', ')}`
-                    });
-                    return;
-                }
+            // The whole cart in one request; nothing is ordered if any item fails
+            if (!checkoutKeyRef.current) {
+                checkoutKeyRef.current = crypto.randomUUID();
             }
+            const response = await SearchService.checkout({
+                items: cart.map(item => ({ productId: item.id, quantity: item.quantity })),
+                customerName: customerData.name,
+                customerEmail: customerData.email,
+                customerPhone: customerData.phone || '',
+                customerAddress: customerData.address
+            }, checkoutKeyRef.current);
+            const orderIds = response.data.orders.map(order => order.saleId);
 
-            const orderNumber = 'ORD-' + Date.now().toString().slice(-8);
+            const orderNumber = 'ORD-' + orderIds.join('-');
             const orderData = {
                 orderNumber,
                 customerName: customerData.name,
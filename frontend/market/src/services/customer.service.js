@@ -1,10 +1,12 @@
 import axios from 'axios';
 import authHeader from './auth-header';
 
-const API_URL = 'import.meta.env.VITE_API_URL + '/'customer-portal/';
+const API_URL = import.meta.env.VITE_API_URL + '/customer-portal/';
 
-const getMyOrders = () => {
-    return axios.get(API_URL + 'orders', { headers: authHeader() });
+// Newest first, one page at a time; the X-Next-Cursor header is the `before` of the next page
+const getMyOrders = (before) => {
+    const params = before ? { before } : {};
+    return axios.get(API_URL + 'orders', { headers: authHeader(), params });
 };
 
 const getDashboardStats = () => {
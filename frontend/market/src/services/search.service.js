@@ -18,6 +18,15 @@ const createOrder = (orderData) => {
     return axios.post(API_URL + 'order', orderData);
 };
 
+// Whole cart in one request; the backend creates one order per store, all or nothing.
+// Retries of the same cart should reuse its idempotencyKey so it is only ordered once
+const checkout = (cartData, idempotencyKey) => {
+    if (!idempotencyKey) {
+        return axios.post(API_URL + 'checkout', cartData);
+    }
+    return axios.post(API_URL + 'checkout', cartData, { headers: { 'Idempotency-Key': idempotencyKey } });
+};
+
 const getPlatformConfig = () => {
     return axios.get(API_URL + 'config');
 };
@@ -35,6 +44,7 @@ const SearchService = {
     getAllProducts,
     getProductDetail,
     createOrder,
+    checkout,
     getPlatformConfig,
     getSellersByName,
     getCustomerPoints
@@ -0,0 +1,42 @@
+import { describe, it, expect, beforeEach, vi } from 'vitest';
+import CustomerService from '../services/customer.service';
+
+// Mock axios
+vi.mock('axios', () => ({
+    default: {
+        get: vi.fn(),
+    },
+}));
+
+import axios from 'axios';
+
+describe('CustomerService', () => {
+    beforeEach(() => {
+        vi.clearAllMocks();
+    });
+
+    describe('getMyOrders', () => {
+        it('should fetch the first page without a cursor', async () => {
+            axios.get.mockResolvedValue({ data: [{ id: 9 }], headers: { 'x-next-cursor': '9' } });
+
+            const result = await CustomerService.getMyOrders();
+
+            expect(axios.get).toHaveBeenCalledWith(
+                expect.stringContaining('/customer-portal/orders'),
+                expect.objectContaining({ params: {} })
+            );
+            expect(result.headers['x-next-cursor']).toBe('9');
+        });
+
+        it('should pass the cursor of the previous page', async () => {
+            axios.get.mockResolvedValue({ data: [], headers: {} });
+
+            await CustomerService.getMyOrders(9);
+
+            expect(axios.get).toHaveBeenCalledWith(
+                expect.stringContaining('/customer-portal/orders'),
+                expect.objectContaining({ params: { before: 9 } })
+            );
+        });
+    });
+});
@@ -83,6 +83,38 @@ describe('SearchService', () => {
         });
     });
 
+    describe('checkout', () => {
+        it('should post the whole cart in one request', async () => {
+            const cartData = {
+                customerEmail: 'john@example.com',
+                items: [{ productId: 1, quantity: 2 }, { productId: 7, quantity: 1 }],
+            };
+            axios.post.mockResolvedValue({ data: { orders: [{ saleId: 10 }, { saleId: 11 }] } });
+
+            const result = await SearchService.checkout(cartData);
+
+            expect(axios.post).toHaveBeenCalledTimes(1);
+            expect(axios.post).toHaveBeenCalledWith(
+                expect.stringContaining('/public/checkout'),
+                cartData
+            );
+            expect(result.data.orders).toHaveLength(2);
+        });
+
+        it('should send the Idempotency-Key header when given', async () => {
+            const cartData = { customerEmail: 'john@example.com', items: [{ productId: 1, quantity: 1 }] };
+            axios.post.mockResolvedValue({ data: { orders: [] } });
+
+            await SearchService.checkout(cartData, 'cart-key-1');
+
+            expect(axios.post).toHaveBeenCalledWith(
+                expect.stringContaining('/public/checkout'),
+                cartData,
+                { headers: { 'Idempotency-Key': 'cart-key-1' } }
+            );
+        });
+    });
+
     describe('getPlatformConfig', () => {
         it('should fetch platform configuration', async () => {
             const mockConfig = { platformFee: 5, currency: 'USD' };
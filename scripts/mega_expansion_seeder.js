@@ -148,6 +148,37 @@ async function doRequest(path, method, data, token = null) {
     });
 }
 
+// Sends one file as multipart/form-data under the "file" field
+async function doUpload(path, filename, content, token) {
+    const boundary = '----tiendario' + Date.now().toString(16);
+    const body = Buffer.concat([
+        Buffer.from(`--${boundary}\r\nContent-Disposition: form-data; name="file"; filename="${filename}"\r\n`
+            + 'Content-Type: application/x-ndjson\r\n\r\n'),
+        Buffer.from(content, 'utf8'),
+        Buffer.from(`\r\n--${boundary}--\r\n`)
+    ]);
+    return new Promise((resolve, reject) => {
+        const options = {
+            hostname: HOST, port: PORT, path: API_BASE + path, method: 'POST',
+            headers: {
+                'Content-Type': `multipart/form-data; boundary=${boundary}`,
+                'Content-Length': body.length,
+                'Authorization': 'Bearer ' + token
+            }
+        };
+        const req = http.request(options, (res) => {
+            let resBody = ''; res.on('data', chunk => resBody += chunk);
+            res.on('end', () => {
+                try { resolve({ status: res.statusCode, data: resBody ? JSON.parse(resBody) : {} }); }
+                catch (e) { resolve({ status: res.statusCode, data: resBody }); }
+            });
+        });
+        req.on('error', reject);
+        req.write(body);
+        req.end();
+    });
+}
+
 async function run() {
     console.log("🚀 Iniciando Gran Expansión del Catálogo (100 Productos)...");
     for (let i = 1; i <= 10; i++) {
@@ -168,16 +199,21 @@ async function run() {
                 updatedCats.data.forEach(c => catMap[c.name] = c.id);
             }
         }
+        // The whole store goes up as one NDJSON file instead of one request per product
+        const lines = [];
         for (const [catName, products] of Object.entries(SECTORS)) {
-            const categoryId = catMap[catName];
             for (const p of products) {
                 const variance = (Math.random() * (p.basePrice * 0.2)) - (p.basePrice * 0.1);
                 const finalPrice = Math.max(0.5, p.basePrice + variance).toFixed(2);
-                const prodData = { name: p.name, sku: p.sku, price: finalPrice, stock: Math.floor(Math.random() * 80) + 10, description: p.description, category: { id: categoryId } };
-                const prodRes = await doRequest('/products', 'POST', prodData, managerToken);
-                if (prodRes.status === 200) process.stdout.write(".");
+                lines.push(JSON.stringify({ name: p.name, sku: p.sku, price: finalPrice, stock: Math.floor(Math.random() * 80) + 10, description: p.description, category: catName }));
             }
         }
+        const importRes = await doUpload('/products/import', 'products.ndjson', lines.join('\n') + '\n', managerToken);
+        if (importRes.status === 200) {
+            console.log(`   ✅ ${importRes.data.imported} importados, ${importRes.data.failed} con error`);
+        } else {
+            console.log(`   ❌ Importación fallida (${importRes.status})`);
+        }
     }
     console.log("\n🎉 Expansión finalizada con éxito.");
 }